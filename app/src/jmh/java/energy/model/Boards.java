@@ -0,0 +1,47 @@
+package energy.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * The levels the benchmarks run on. A board is either a bundled test level,
+ * named as its resource without extension (Base1/level4), or a synthetic
+ * level made by LevelGenerator, named SHAPE:SIZE (SQUARE:100 for a 100x100
+ * level of squares). Synthetic levels are generated with a fixed seed, so
+ * they are the same from one run to the other.
+ */
+public final class Boards {
+
+    // Seed of the synthetic levels
+    private static final long SEED = 20230101L;
+
+    private Boards() {}
+
+    /**
+     * {@return the level of the given board name}
+     */
+    public static LevelConfig load(String board) {
+        int colon = board.indexOf(':');
+        if (colon != -1) {
+            TileShape shape = TileShape.valueOf(board.substring(0, colon));
+            int size = Integer.parseInt(board.substring(colon + 1));
+            return LevelGenerator.of(size, size, shape)
+                                 .withHotspotPairs(size / 10)
+                                 .generate(1, new Random(SEED));
+        }
+        String resource = "/" + board + LevelConfig.FILE_FORMAT;
+        try (InputStream in = Boards.class.getResourceAsStream(resource)) {
+            if (in == null)
+                throw new IllegalArgumentException("No board " + board);
+            int id = LevelConfig.idOf(resource.substring(
+                resource.lastIndexOf('/') + 1));
+            return LevelConfig.fromBytes(ByteBuffer.wrap(in.readAllBytes()),
+                                         id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
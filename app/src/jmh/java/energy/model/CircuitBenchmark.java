@@ -0,0 +1,86 @@
+package energy.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the operations of a Circuit run on each move of the player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircuitBenchmark {
+
+    @Param({"Base1/level4", "Base1/level6",
+            "SQUARE:10", "SQUARE:50", "SQUARE:100", "SQUARE:500",
+            "HEXAGON:10", "HEXAGON:50", "HEXAGON:100", "HEXAGON:500"})
+    public String board;
+
+    // Circuit of the board, and its tiles and their positions
+    private Circuit circuit;
+    private Tile[] tiles;
+    private Position[] positions;
+    private TileShape shape;
+
+    // Index of the next tile to use, so that every tile is visited in turn
+    private int next;
+
+    @Setup
+    public void setUp() {
+        LevelConfig lc = Boards.load(this.board);
+        this.circuit = Level.fromLevelConfig(lc).getCircuit();
+        this.tiles = this.circuit.getTiles().toArray(new Tile[0]);
+        this.positions = new Position[this.tiles.length];
+        for (int k = 0; k < this.tiles.length; k++)
+            this.positions[k] = this.tiles[k].position();
+        this.shape = lc.shape();
+        this.circuit.propagateElectricity();
+    }
+
+    // Returns the index of the next tile, cycling over all the tiles
+    private int nextIndex() {
+        int res = this.next;
+        this.next = res + 1 == this.tiles.length ? 0 : res + 1;
+        return res;
+    }
+
+    @Benchmark
+    public boolean propagateElectricity() {
+        this.circuit.blackout();
+        this.circuit.propagateElectricity();
+        return this.circuit.allLampsArePoweredOn();
+    }
+
+    @Benchmark
+    public List<Tile> getNeighbors() {
+        return this.circuit.getNeighbors(this.tiles[this.nextIndex()]);
+    }
+
+    @Benchmark
+    public Tile getTileAt() {
+        return this.circuit.getTileAt(this.positions[this.nextIndex()]);
+    }
+
+    @Benchmark
+    public Tile rotateTile() {
+        Tile t = this.tiles[this.nextIndex()];
+        t.rotate();
+        return t;
+    }
+
+    @Benchmark
+    public boolean rotateTileAt() {
+        return this.circuit.rotateTileAt(this.positions[this.nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Position> neighborPositions() {
+        return Position.neighborPositions(this.positions[this.nextIndex()],
+                                          this.shape);
+    }
+}
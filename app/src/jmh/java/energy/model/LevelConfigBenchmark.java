@@ -0,0 +1,82 @@
+package energy.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the reading and writing of level files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelConfigBenchmark {
+
+    @Param({"Base1/level4", "Base1/level6",
+            "SQUARE:10", "SQUARE:50", "SQUARE:100", "SQUARE:500",
+            "HEXAGON:10", "HEXAGON:50", "HEXAGON:100", "HEXAGON:500"})
+    public String board;
+
+    // Level of the board, and files holding it in both formats
+    private LevelConfig level;
+    private Path directory;
+    private Path textFile;
+    private Path binaryFile;
+    private Path savedFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.level = Boards.load(this.board);
+        this.directory = Files.createTempDirectory("energy-jmh");
+        this.textFile = this.directory.resolve("level1.nrg");
+        this.binaryFile = this.directory.resolve("level1.nrgb");
+        this.savedFile = this.directory.resolve("level2.nrg");
+        this.level.saveTo(this.textFile);
+        this.level.saveTo(this.binaryFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path p: new Path[] {this.textFile, this.binaryFile,
+                                 this.savedFile})
+            Files.deleteIfExists(p);
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Benchmark
+    public LevelConfig fromFile() {
+        return LevelConfig.fromFile(this.textFile.toString());
+    }
+
+    @Benchmark
+    public LevelConfig fromBinaryFile() {
+        return LevelConfig.fromFile(this.binaryFile.toString());
+    }
+
+    @Benchmark
+    public LevelConfig fromLevel() {
+        return LevelConfig.fromLevel(
+            Level.fromLevelConfig(this.level));
+    }
+
+    @Benchmark
+    public String writeTo() throws IOException {
+        StringWriter out = new StringWriter();
+        this.level.writeTo(out);
+        return out.toString();
+    }
+
+    // Writes to a temporary file rather than with save, which writes to the
+    // installation directory
+    @Benchmark
+    public void saveTo() throws IOException {
+        this.level.saveTo(this.savedFile);
+    }
+}
@@ -0,0 +1,46 @@
+package energy.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Solver on scrambled levels, the time to beat being well
+ * under a second on 100x100 levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"Base1/level8",
+            "SQUARE:20", "SQUARE:50", "SQUARE:100",
+            "HEXAGON:20", "HEXAGON:50", "HEXAGON:100"})
+    public String board;
+
+    // Circuit of the board, its tiles rotated at random with a fixed seed
+    private Circuit circuit;
+
+    @Setup
+    public void setUp() {
+        this.circuit = Level.fromLevelConfig(Boards.load(this.board))
+                            .getCircuit();
+        Random random = new Random(this.board.hashCode());
+        for (Tile t: this.circuit.getTiles()) {
+            if (!t.canRotate())
+                continue;
+            for (int k = random.nextInt(t.length()); k > 0; k--)
+                this.circuit.rotateTileAt(t.position());
+        }
+    }
+
+    @Benchmark
+    public Map<Position, Integer> solve() {
+        return Solver.of(this.circuit).solve();
+    }
+}
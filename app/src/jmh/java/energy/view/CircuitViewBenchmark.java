@@ -0,0 +1,84 @@
+package energy.view;
+
+import energy.model.Boards;
+import energy.model.Circuit;
+import energy.model.Level;
+import energy.model.ReadOnlyCircuit;
+import energy.model.Tile;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the painting of a CircuitView into an offscreen image, as
+ * done after each move of the player. Must run with java.awt.headless set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CircuitViewBenchmark {
+
+    @Param({"Base1/level4", "Base1/level6",
+            "SQUARE:10", "SQUARE:50", "SQUARE:100", "SQUARE:500",
+            "HEXAGON:10", "HEXAGON:50", "HEXAGON:100", "HEXAGON:500"})
+    public String board;
+
+    // Size of the view, as in the game window
+    private static final int VIEW_SIZE = 800;
+
+    private CircuitView view;
+    private Circuit circuit;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    // Area around the center of a single tile, as repainted after a
+    // rotation
+    private Rectangle tileClip;
+
+    @Setup
+    public void setUp() {
+        this.circuit = Level.fromLevelConfig(Boards.load(this.board))
+                            .getCircuit();
+        this.circuit.propagateElectricity();
+        this.view = new CircuitView();
+        this.view.setModel(new ReadOnlyCircuit(this.circuit));
+        this.view.setSize(VIEW_SIZE, VIEW_SIZE);
+        this.image = new BufferedImage(VIEW_SIZE, VIEW_SIZE,
+                                       BufferedImage.TYPE_INT_ARGB);
+        this.graphics = this.image.createGraphics();
+
+        // First paint, loading the centers and the images of the tiles
+        this.view.paintComponent(this.graphics);
+        Tile first = this.circuit.getTiles().get(0);
+        Point center = this.view.getPoints()[first.getLine()]
+                                            [first.getColumn()];
+        this.tileClip = new Rectangle(center.x - 1, center.y - 1, 2, 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintComponent() {
+        this.graphics.setClip(null);
+        this.view.paintComponent(this.graphics);
+        return this.image;
+    }
+
+    @Benchmark
+    public BufferedImage paintSingleTile() {
+        this.graphics.setClip(this.tileClip);
+        this.view.paintComponent(this.graphics);
+        return this.image;
+    }
+}
@@ -11,6 +11,7 @@ import energy.view.ScreenSwitch;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.*;
 
 /**
@@ -24,6 +25,13 @@ public class App extends JFrame implements ScreenSwitch {
         App.INSTALL_DIR + "/" + LevelConfig.EDITABLE_LEVEL_PATH_PREFIX;
     public static final String playableLevelsPath = 
         App.INSTALL_DIR + "/" + LevelConfig.PLAYABLE_LEVEL_PATH_PREFIX;
+    public static final String autosavedLevelsPath =
+        App.INSTALL_DIR + "/" + LevelConfig.AUTOSAVE_PATH_PREFIX;
+
+    // Levels last opened, so that reopening a level does not parse its file,
+    // and level packs, mapped once per directory
+    private static final LevelCache LEVELS =
+        LevelCache.of(LevelCache.DEFAULT_CAPACITY);
 
     public App() {
         super("Energy");
@@ -36,21 +44,30 @@ public class App extends JFrame implements ScreenSwitch {
 
     // If displayGame is true, displays game screen, editor screen otherwise
     @Override public void next(int id, boolean displayGame) {
-        String path;
-        if (displayGame) {
-            path = App.playableLevelsPath
-                + "/"
-                + LevelConfig.LEVEL_FILE_BASE_NAME
-                + id
-                + LevelConfig.FILE_FORMAT;
-        } else {
-            path = App.editableLevelsPath
-                + "/"
-                + LevelConfig.LEVEL_FILE_BASE_NAME
-                + id
-                + LevelConfig.FILE_FORMAT;
+        String dir = displayGame ? App.playableLevelsPath
+                                 : App.editableLevelsPath;
+        String path = App.levelFilePath(dir, id);
+        Path draft = Paths.get(App.autosavedLevelsPath + "/"
+                               + LevelConfig.LEVEL_FILE_BASE_NAME + id
+                               + LevelConfig.FILE_FORMAT);
+        LevelConfig lc;
+        boolean restored = false;
+        try {
+            lc = displayGame ? null : this.restoreDraft(draft);
+            restored = lc != null;
+            if (lc == null)
+                lc = App.LEVELS.get(Paths.get(path));
+            if (lc == null)
+                lc = App.fromLevelPack(dir, id);
+        } catch (LevelFormatException e) {
+            JOptionPane.showMessageDialog(this,
+                                          "Invalid level file " + path
+                                          + "\n" + e.getMessage(),
+                                          "Invalid level",
+                                          JOptionPane.ERROR_MESSAGE);
+            this.back();
+            return;
         }
-        LevelConfig lc = LevelConfig.fromFile(path);
         if (lc == null) { // Level not found
             if (!displayGame) { // editor mode + level not found => new level
                 TileShape shape = this.askTileShape();
@@ -79,17 +96,80 @@ public class App extends JFrame implements ScreenSwitch {
             model.addObserver(levelview);
             GameController gc = new GameController(model);
             levelview.getCircuitView().addMouseListener(gc);
+            levelview.setGameController(gc);
         } else {
             EditableLevel model = Level.fromLevelConfig(lc);
             model.addObserver(levelview);
             EditorController ec = new EditorController(model);
             levelview.getCircuitView().addMouseListener(ec);
             levelview.setEditorController(ec);
+            ec.setAutosave(AutosaveService.of(
+                draft, AutosaveService.DEFAULT_DELAY_MILLIS), restored);
             levelview.getCircuitView().addMouseMotionListener(ec);
         }
         this.changeScreen(levelview);
     }
 
+    // Returns the level written to the given file by the autosave of an
+    // edition that was not saved, if the user wants to restore it, null
+    // otherwise. The file is deleted if the user does not want it.
+    private LevelConfig restoreDraft(Path draft) {
+        if (Files.notExists(draft))
+            return null;
+        int answer = JOptionPane.showConfirmDialog(
+            this,
+            "Changes of this level were not saved. Do you want to restore "
+            + "them ?",
+            "Restore changes",
+            JOptionPane.YES_NO_OPTION);
+        if (answer == JOptionPane.YES_OPTION) {
+            try {
+                LevelConfig res = LevelConfig.fromFile(draft.toString());
+                if (res != null)
+                    return res;
+            } catch (LevelFormatException e) {
+                // The draft is replaced by the saved level
+            }
+        }
+        try {
+            Files.deleteIfExists(draft);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Returns the path of the file of the level of given id in the given
+    // directory. The .nrg file is preferred since it is the one saved by the
+    // editor, the binary .nrgb file is used if there is no .nrg file.
+    private static String levelFilePath(String dir, int id) {
+        String base = dir + "/" + LevelConfig.LEVEL_FILE_BASE_NAME + id;
+        String text = base + LevelConfig.FILE_FORMAT;
+        String binary = base + LevelConfig.BINARY_FILE_FORMAT;
+        if (Files.notExists(Paths.get(text)) && Files.exists(Paths.get(binary)))
+            return binary;
+        return text;
+    }
+
+    // Returns the level of given id from the pack of the given directory, that
+    // is the file named as the directory with the level pack extension, null
+    // if there is no such pack or level
+    private static LevelConfig fromLevelPack(String dir, int id) {
+        LevelPack pack = App.levelPackOf(dir);
+        return pack == null ? null : pack.get(id);
+    }
+
+    /**
+     * {@return the pack of the given directory of levels, that is the file
+     * named as the directory with the level pack extension, null if there is
+     * none}
+     * The pack is opened once and shared by every screen.
+     * @throws LevelFormatException if the file is not a valid level pack
+     */
+    public static LevelPack levelPackOf(String dir) {
+        return App.LEVELS.packOf(Paths.get(dir + LevelPack.FILE_FORMAT));
+    }
+
     // Displays a dialog where the user is asked to choose a tile shape
     // for the new circuit to create
     private TileShape askTileShape() {
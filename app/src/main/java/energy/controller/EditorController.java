@@ -3,6 +3,7 @@ package energy.controller;
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
 
+import energy.model.AutosaveService;
 import energy.model.Component;
 import energy.model.EditableLevel;
 import energy.model.Position;
@@ -18,6 +19,9 @@ public class EditorController extends LevelController {
     private Position pointingTilePosition = null;
     private boolean hasChanged = false;
 
+    // Writes the edited level in the background, null if none
+    private AutosaveService autosave = null;
+
     public EditorController(EditableLevel model) {
         this.model = model;
         updateModel();
@@ -37,21 +41,24 @@ public class EditorController extends LevelController {
 
         if (componentEditionMode) {
             if (this.model.setTileComponentTo(tilePos, componentEdit)) {
-                updateModel();
+                this.model.notifyObservers();
                 // this.clearTileMode = false;
-                this.hasChanged = true;
+                this.changed();
             }
         } else if (clearTileMode) {
             if (this.model.clearTileAt(tilePos)) {
-                updateModel();
+                this.model.notifyObservers();
                 // this.clearTileMode = false;
-                this.hasChanged = true;
+                this.changed();
             }
         }
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        // the whole drag is undone at once
+        if (this.pointingTilePosition != null)
+            this.model.endStep();
         this.pointingTilePosition = null;
     }
 
@@ -66,6 +73,9 @@ public class EditorController extends LevelController {
 
         if (pointingTilePosition == null) {
             pointingTilePosition = newMousePointingPosition;
+            // the edits of the drag form a single step, ended on release
+            if (pointingTilePosition != null)
+                this.model.beginStep();
         } else {
             // Pointing tile changed, a border need to be connected
             if (!pointingTilePosition.equals(newMousePointingPosition)) {
@@ -84,23 +94,28 @@ public class EditorController extends LevelController {
                     // contact
                     int contact = initialTile.touchingSide(newPointingTile);
                     if (contact != -1) {
-                        int neighBorder = (contact + initialTile.shape().sides() / 2)
-                                % initialTile.shape().sides();
+                        int neighBorder = initialTile.shape().opposite(contact);
 
                         int modifiers = e.getModifiersEx();
 
                         // Connect these borders
                         if ((modifiers & InputEvent.BUTTON1_DOWN_MASK) != 0) {
-                            initialTile.connect(contact);
-                            newPointingTile.connect(neighBorder);
+                            this.model.connectSideOfTileAt(
+                                pointingTilePosition, contact);
+                            this.model.connectSideOfTileAt(
+                                newMousePointingPosition, neighBorder);
                         }
                         // Disconnect these borders
                         if ((modifiers & InputEvent.BUTTON3_DOWN_MASK) != 0) {
-                            initialTile.disconnect(contact);
-                            newPointingTile.disconnect(neighBorder);
+                            this.model.disconnectSideOfTileAt(
+                                pointingTilePosition, contact);
+                            this.model.disconnectSideOfTileAt(
+                                newMousePointingPosition, neighBorder);
                         }
-                        this.updateModel();
-                        this.hasChanged = true;
+                        // the model already updated the electricity around
+                        // both tiles
+                        this.model.notifyObservers();
+                        this.changed();
                     }
 
                     // Change the pointingTilePosition
@@ -114,35 +129,78 @@ public class EditorController extends LevelController {
     public void clearCircuit() {
         this.model.clearCircuit();
         this.updateModel();
-        this.hasChanged = true;
+        this.changed();
     }
 
     // Remove a column from circuit
     public void removeColumn() {
         this.model.removeColumn();
         this.updateModel();
-        this.hasChanged = true;
+        this.changed();
     }
 
     // Add a column to circuit
     public void addColumn() {
         this.model.addColumn();
         this.updateModel();
-        this.hasChanged = true;
+        this.changed();
     }
 
     // Adds a line to the Circuit of this EditableLevel
     public void addLine() {
         this.model.addLine();
         updateModel();
-        this.hasChanged = true;
+        this.changed();
     }
 
     // Removes the last line of the Circuit of this EditableLevel
     public void removeLine() {
         this.model.removeLine();
         updateModel();
+        this.changed();
+    }
+
+    // Undoes the last edit of the Circuit, if any
+    public void undo() {
+        if (this.model.undo()) {
+            this.model.notifyObservers();
+            this.changed();
+        }
+    }
+
+    // Redoes the last undone edit of the Circuit, if any
+    public void redo() {
+        if (this.model.redo()) {
+            this.model.notifyObservers();
+            this.changed();
+        }
+    }
+
+    // Writes the edited level in the background with the given service
+    // after each edit. If restored is true, the model was read from the file
+    // of the service and differs from the saved level.
+    public void setAutosave(AutosaveService autosave, boolean restored) {
+        this.autosave = autosave;
+        this.hasChanged |= restored;
+    }
+
+    // Stops writing the edited level, keeping what was written if keep is
+    // true, deleting it otherwise
+    public void stopAutosave(boolean keep) {
+        if (this.autosave == null)
+            return;
+        if (keep)
+            this.autosave.close();
+        else
+            this.autosave.discard();
+        this.autosave = null;
+    }
+
+    // Records that the model was edited
+    private void changed() {
         this.hasChanged = true;
+        if (this.autosave != null)
+            this.autosave.schedule(this.model.getId(), this.model.snapshot());
     }
 
     private void updateModel() {
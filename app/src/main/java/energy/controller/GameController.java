@@ -1,6 +1,8 @@
 package energy.controller;
 
 import java.awt.event.MouseEvent;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
 import energy.model.*;
 import energy.view.*;
 
@@ -11,6 +13,8 @@ public class GameController extends LevelController {
         this.model = model;
         this.model.randomRotations();
         this.updateModel();
+        // the first hint does not wait for the level to be solved
+        this.model.prepareHints();
     }
 
     private void updateModel() {
@@ -19,14 +23,36 @@ public class GameController extends LevelController {
         this.model.notifyObservers();
     }
 
+    // Gives to show a tile to rotate towards a solution of the level, null
+    // if there is none. While the level is being solved, show is called
+    // later on the event dispatch thread, which never waits for the search.
+    public void hint(Consumer<Hint> show) {
+        Hint hint = this.model.hint();
+        if (hint != null) {
+            show.accept(hint);
+            return;
+        }
+        this.model.whenHintsReady(() -> SwingUtilities.invokeLater(
+            () -> show.accept(this.model.hint())));
+    }
+
+    // Gives up the search of a solution, once the level is left
+    public void leave() {
+        this.model.cancelHints();
+    }
+
     @Override public void mouseClicked(MouseEvent e) {
         Object src = e.getSource();
         if (!(src instanceof CircuitView))
             return;
 
         Position tilePos = LevelController.getTileAtClick((CircuitView)src, e);
+        if (tilePos == null)
+            return;
+
+        // the rotation already updated the electricity around the tile
         if (model.rotateTileAt(tilePos)) {
-            this.updateModel();
+            this.model.notifyObservers();
         }
     }
 }
@@ -0,0 +1,196 @@
+package energy.model;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes the state of a level being edited to a file, in the background.
+ * <p>
+ * The edits scheduled within a delay are coalesced: only the last state is
+ * written once the delay is over, so that a burst of edits costs a single
+ * write. The state is taken as a CircuitSnapshot, which is immutable, and is
+ * serialized and written on a thread of the service, so that scheduling a
+ * write never blocks the caller. The file is replaced atomically, and is not
+ * written again if its content would not change.
+ */
+public final class AutosaveService implements AutoCloseable {
+
+    /**
+     * The delay used by default between an edit and its write, in
+     * milliseconds.
+     */
+    public static final long DEFAULT_DELAY_MILLIS = 1000;
+
+    // A state to write: the id of the level and its tiles
+    private static final class Draft {
+        private final int id;
+        private final CircuitSnapshot snapshot;
+
+        private Draft(int id, CircuitSnapshot snapshot) {
+            this.id = id;
+            this.snapshot = snapshot;
+        }
+    }
+
+    // File written by this service
+    private final Path file;
+
+    // Delay between the first of coalesced edits and their write
+    private final long delayMillis;
+
+    // Thread writing the file
+    private final ScheduledExecutorService executor;
+
+    // Last scheduled state, null if it was written. A write is scheduled
+    // when it goes from null to a state.
+    private final AtomicReference<Draft> pending = new AtomicReference<>();
+
+    // Content of the file as last written by the thread of this service,
+    // null if none
+    private String written;
+
+    // Number of times the file was written
+    private volatile int writes;
+
+    // Initializes an AutosaveService from given parameters
+    private AutosaveService(Path file, long delayMillis) {
+        this.file = file;
+        this.delayMillis = delayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "autosave");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * {@return a new AutosaveService writing to the file at the given path,
+     * the given number of milliseconds after an edit}
+     * The directories of the path are created as needed.
+     * @throws IllegalArgumentException if the delay is negative
+     */
+    public static AutosaveService of(Path file, long delayMillis) {
+        if (file == null)
+            throw new IllegalArgumentException("File can not be null");
+        if (delayMillis < 0)
+            throw new IllegalArgumentException("Delay must be positive");
+        return new AutosaveService(file, delayMillis);
+    }
+
+    /**
+     * {@return the file written by this service}
+     */
+    public Path file() {
+        return this.file;
+    }
+
+    /**
+     * Schedules the write of the level of given id, in the given state. The
+     * state replaces the one of a write scheduled but not done yet.
+     */
+    public void schedule(int id, CircuitSnapshot snapshot) {
+        if (this.pending.getAndSet(new Draft(id, snapshot)) == null) {
+            this.executor.schedule(this::write,
+                                   this.delayMillis,
+                                   TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the scheduled state now, if any, and waits for the end of the
+     * write.
+     */
+    public void flush() {
+        this.await(this::write);
+    }
+
+    /**
+     * Cancels the scheduled write, if any, and deletes the file. The
+     * service can not be used anymore.
+     */
+    public void discard() {
+        this.pending.set(null);
+        this.await(() -> {
+            try {
+                Files.deleteIfExists(this.file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        this.executor.shutdown();
+    }
+
+    /**
+     * Writes the scheduled state, if any, and stops the service.
+     */
+    @Override
+    public void close() {
+        this.flush();
+        this.executor.shutdown();
+    }
+
+    // Returns the number of times the file was written
+    int writes() {
+        return this.writes;
+    }
+
+    // Runs the given task on the thread of this service, after the scheduled
+    // writes, and waits for its end
+    private void await(Runnable task) {
+        try {
+            this.executor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Writes the pending state, if any and if it differs from the content of
+    // the file. Failures are reported and the state is written at the next
+    // edit.
+    private void write() {
+        Draft draft = this.pending.getAndSet(null);
+        if (draft == null)
+            return;
+        String content = toFileContent(draft);
+        if (content.equals(this.written))
+            return;
+        try {
+            LevelConfig.writeAtomically(
+                this.file, content.getBytes(StandardCharsets.UTF_8));
+            this.written = content;
+            this.writes++;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Returns the given state in the .nrg format
+    private static String toFileContent(Draft draft) {
+        CircuitSnapshot snapshot = draft.snapshot;
+        Dimension dim = snapshot.dimension();
+        TileShape shape = snapshot.areAllHexagonalTiles() ? TileShape.HEXAGON
+                                                          : TileShape.SQUARE;
+        LevelConfig lc = LevelConfig.of(dim.height, dim.width, draft.id,
+                                        shape,
+                                        new ArrayList<>(snapshot.tiles()));
+        StringWriter res = new StringWriter();
+        try {
+            lc.writeTo(res);
+        } catch (IOException e) {
+            throw new AssertionError(e); // a StringWriter never fails
+        }
+        return res.toString();
+    }
+}
@@ -0,0 +1,287 @@
+package energy.model;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+// A board of fixed dimension stored cell by cell, the cell at line i and
+// column j having index i * width + j. Subclasses store the component, the
+// border mask and the powered state of each cell, in arrays or in buffers,
+// through the abstract methods below; the queries, the rotations and the
+// propagation of electricity are shared.
+//
+// Electricity is propagated by a breadth-first walk from the sources over the
+// cells linked by facing connected sides, all the hotspots being linked to
+// one another.
+abstract class CellBoard {
+
+    // Shape of the tiles and dimension of the board
+    final TileShape shape;
+    final int height;
+    final int width;
+
+    // Cells of the sources and of the hotspots, and number of tiles and lamps
+    private int[] sources;
+    private int[] hotspots;
+    private int tileCount;
+    private int lampCount;
+
+    // Number of powered lamps, -1 if electricity was not propagated since the
+    // last blackout or rotation
+    private int poweredLamps = -1;
+
+    // Initializes a CellBoard of given shape and dimension
+    CellBoard(TileShape shape, int height, int width) {
+        this.shape = shape;
+        this.height = height;
+        this.width = width;
+    }
+
+    // Returns true if there is a tile on the given cell
+    abstract boolean hasTile(int cell);
+
+    // Returns the component of the tile on the given cell
+    abstract Component component(int cell);
+
+    // Returns the border mask of the tile on the given cell
+    abstract int border(int cell);
+
+    // Sets the border mask of the tile on the given cell
+    abstract void setBorder(int cell, int border);
+
+    // Returns true if the given cell is powered
+    abstract boolean isPowered(int cell);
+
+    // Powers on the given cell
+    abstract void power(int cell);
+
+    // Powers off every cell
+    abstract void clearPower();
+
+    // Makes room for the given number of cells in the queue of the
+    // propagation
+    abstract void ensureQueue(int size);
+
+    // Puts the given cell at the given index of the queue
+    abstract void setQueued(int index, int cell);
+
+    // Returns the cell at the given index of the queue
+    abstract int queued(int index);
+
+    // Finds the sources, the hotspots and the lamps, and powers the sources.
+    // Called by the constructors of the subclasses once the cells can be
+    // read.
+    final void indexCells() {
+        int[] sources = new int[16];
+        int[] hotspots = new int[16];
+        int sourceCount = 0;
+        int hotspotCount = 0;
+        int tileCount = 0;
+        int lampCount = 0;
+        for (int cell = 0; cell < this.cells(); cell++) {
+            if (!this.hasTile(cell))
+                continue;
+            tileCount++;
+            switch (this.component(cell)) {
+                case SOURCE:
+                    if (sourceCount == sources.length)
+                        sources = Arrays.copyOf(sources, 2 * sourceCount);
+                    sources[sourceCount++] = cell;
+                    break;
+                case HOTSPOT:
+                    if (hotspotCount == hotspots.length)
+                        hotspots = Arrays.copyOf(hotspots, 2 * hotspotCount);
+                    hotspots[hotspotCount++] = cell;
+                    break;
+                case LAMP:
+                    lampCount++;
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.sources = Arrays.copyOf(sources, sourceCount);
+        this.hotspots = Arrays.copyOf(hotspots, hotspotCount);
+        this.tileCount = tileCount;
+        this.lampCount = lampCount;
+        this.blackout();
+    }
+
+    // Returns the number of cells of the board
+    final int cells() {
+        return this.height * this.width;
+    }
+
+    // Returns the cell of the tile at the given position, -1 if none
+    final int cellAt(Position position) {
+        Objects.requireNonNull(position);
+        int i = position.getLine();
+        int j = position.getColumn();
+        if (i < 0 || j < 0 || i >= this.height || j >= this.width)
+            return -1;
+        int cell = i * this.width + j;
+        return this.hasTile(cell) ? cell : -1;
+    }
+
+    // Returns the cell of the tile at the given position
+    // Throws NoSuchElementException if there is no tile at this position
+    final int cellOf(Position position) {
+        int cell = this.cellAt(position);
+        if (cell == -1)
+            throw new NoSuchElementException("No tile at " + position);
+        return cell;
+    }
+
+    // Returns true if the tile on the given cell can rotate
+    final boolean canRotate(int cell) {
+        return this.hasTile(cell) && this.component(cell).canRotate();
+    }
+
+    // Records that borders changed, electricity having to be propagated
+    // again
+    final void bordersChanged() {
+        this.poweredLamps = -1;
+    }
+
+    /**
+     * {@return the shape of the tiles}
+     */
+    public final TileShape shape() {
+        return this.shape;
+    }
+
+    /**
+     * {@return the dimension of the board}
+     */
+    public final Dimension dimension() {
+        return new Dimension(this.width, this.height);
+    }
+
+    /**
+     * {@return the number of tiles}
+     */
+    public final int tileCount() {
+        return this.tileCount;
+    }
+
+    /**
+     * {@return true if there is a tile at the given position}
+     */
+    public final boolean hasTileAt(Position position) {
+        return this.cellAt(position) != -1;
+    }
+
+    /**
+     * {@return the component of the tile at the given position}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public final Component componentAt(Position position) {
+        return this.component(this.cellOf(position));
+    }
+
+    /**
+     * {@return the border mask of the tile at the given position, as in
+     * Tile.borderMask}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public final int borderMaskAt(Position position) {
+        return this.border(this.cellOf(position));
+    }
+
+    /**
+     * {@return true if the tile at the given position is powered}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public final boolean isPoweredAt(Position position) {
+        return this.isPowered(this.cellOf(position));
+    }
+
+    /**
+     * {@return true if the tile at the given position rotated}
+     * The powered states are left as they were: electricity must be
+     * propagated again.
+     */
+    public final boolean rotateTileAt(Position position) {
+        int cell = this.cellAt(position);
+        if (cell == -1 || !this.canRotate(cell))
+            return false;
+        this.setBorder(cell, this.shape.rotate(this.border(cell)));
+        this.bordersChanged();
+        return true;
+    }
+
+    /**
+     * Powers off every tile but the sources.
+     */
+    public final void blackout() {
+        this.clearPower();
+        for (int cell: this.sources)
+            this.power(cell);
+        this.poweredLamps = -1;
+    }
+
+    /**
+     * Powers on every tile linked to a source, and off every other one.
+     */
+    public final void propagateElectricity() {
+        this.blackout();
+        this.ensureQueue(this.tileCount);
+        int head = 0;
+        int tail = 0;
+        for (int cell: this.sources)
+            this.setQueued(tail++, cell);
+        boolean hotspotsPowered = false;
+        int lamps = 0;
+        while (head < tail) {
+            int cell = this.queued(head++);
+            Component c = this.component(cell);
+            if (c == Component.LAMP) {
+                lamps++;
+            } else if (c == Component.HOTSPOT && !hotspotsPowered) {
+                hotspotsPowered = true;
+                for (int hotspot: this.hotspots) {
+                    if (!this.isPowered(hotspot)) {
+                        this.power(hotspot);
+                        this.setQueued(tail++, hotspot);
+                    }
+                }
+            }
+            int i = cell / this.width;
+            int j = cell % this.width;
+            int mask = this.border(cell);
+            for (int side = 0; mask != 0; side++, mask >>>= 1) {
+                if ((mask & 1) == 0)
+                    continue;
+                int ni = i + this.shape.lineOffset(side, j);
+                int nj = j + this.shape.columnOffset(side, j);
+                if (ni < 0 || nj < 0 || ni >= this.height || nj >= this.width)
+                    continue;
+                int neighbor = ni * this.width + nj;
+                if (!this.hasTile(neighbor)
+                    || this.isPowered(neighbor)
+                    || (this.border(neighbor)
+                        & 1 << this.shape.opposite(side)) == 0)
+                    continue;
+                this.power(neighbor);
+                this.setQueued(tail++, neighbor);
+            }
+        }
+        this.poweredLamps = lamps;
+    }
+
+    /**
+     * {@return true if every lamp is powered and there is at least one tile}
+     */
+    public final boolean allLampsArePoweredOn() {
+        if (this.poweredLamps != -1)
+            return this.poweredLamps == this.lampCount && this.tileCount != 0;
+        for (int cell = 0; cell < this.cells(); cell++) {
+            if (this.hasTile(cell)
+                && this.component(cell) == Component.LAMP
+                && !this.isPowered(cell))
+                return false;
+        }
+        return this.tileCount != 0;
+    }
+}
@@ -1,25 +1,77 @@
 package energy.model;
 
 import java.awt.Dimension;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
 
 /**
  * Electrical parts linked together via cable or Wi-Fi.
  */
 public class Circuit {
 
-	// Tiles of this Circuit.
+	// Tiles of this Circuit, in insertion order.
 	private final ArrayList<Tile> tiles;
+
+    // Row-major index of the tiles: the Tile at (i, j) is stored at
+    // grid[i * gridWidth + j], null if none
+    private Tile[] grid;
+
+    // Number of lines and columns the grid can currently hold
+    private int gridHeight;
+    private int gridWidth;
+
+    // Number of tiles on each line and on each column of the grid
+    private int[] tilesPerLine;
+    private int[] tilesPerColumn;
+
+    // Number of lines and columns actually occupied by tiles
+    private int height;
+    private int width;
+
+    // Positions of the tiles whose border, component or powered state changed
+    // since the last call to clearChanges
+    private final Set<Position> changes;
+
+    // Indicates if tiles were added or removed, or if every tile may have
+    // changed, since the last call to clearChanges
+    private boolean allChanged;
+
+    // Cells touching each side of each cell of the grid, null until needed
+    // once the grid was resized
+    private GridAdjacency adjacency;
+
+    // Groups of linked tiles, null until needed once tiles were added or
+    // removed or every tile may have changed
+    private ConnectivityIndex connectivity;
+
+    // Lines of the grid holding a tile that changed since the last published
+    // snapshot, and the last published snapshot
+    private final BitSet changedLines;
+    private volatile CircuitSnapshot snapshot;
+
+    // Indicates if the powered state of every tile follows connectivity,
+    // that is if electricity was propagated since the last blackout or
+    // change of the whole Circuit
+    private boolean electricityUpToDate;
 	
 	// Initializes empty tiles and links lists
 	private Circuit() {
 		this.tiles = new ArrayList<>();
+        this.grid = new Tile[0];
+        this.tilesPerLine = new int[0];
+        this.tilesPerColumn = new int[0];
+        this.changes = new HashSet<>();
+        this.changedLines = new BitSet();
+        this.snapshot = CircuitSnapshot.EMPTY;
 	}
 	
 	/**
@@ -29,15 +81,33 @@ public class Circuit {
 		return new Circuit();
 	}
 	
+	/**
+     * {@return a new Circuit of the given tiles}
+     * Unlike successive calls to addTile, a single snapshot is published.
+     */
+	public static Circuit of(Collection<Tile> tiles) {
+		Circuit res = new Circuit();
+		for (Tile t: tiles) {
+			res.insert(t);
+		}
+		res.publish();
+		return res;
+	}
+
 	/**
      * {@return true if the connexion was made}.
      * @param tile The {@code Tile} we want the connexion to change.
      */
 	public boolean connectSideOfTileAt(Position p, int index) {
 		Tile t = getTileAt(p);
-        if (!this.tiles.
-        contains(t)) return false;
-		return t.connect(index);
+        if (t == null) return false;
+        int[] group = this.connectivity().dissolve(t);
+		boolean res = t.connect(index);
+        if (res)
+            this.changed(p);
+        this.updateElectricityOf(group);
+        this.publish();
+        return res;
 	}
 
 	/**
@@ -46,8 +116,14 @@ public class Circuit {
      */
 	public boolean disconnectSideOfTileAt(Position p, int index) {
 		Tile t = getTileAt(p);
-        if (!this.tiles.contains(t)) return false;
-		return t.disconnect(index);
+        if (t == null) return false;
+        int[] group = this.connectivity().dissolve(t);
+		boolean res = t.disconnect(index);
+        if (res)
+            this.changed(p);
+        this.updateElectricityOf(group);
+        this.publish();
+        return res;
 	}
 	
 	/**
@@ -56,8 +132,12 @@ public class Circuit {
      */
 	public boolean setTileComponentTo(Position p, Component c) {
 		Tile t = getTileAt(p);
-        if (!this.tiles.contains(t)) return false;
+        if (t == null) return false;
+        int[] group = this.connectivity().dissolve(t);
 		t.setComponent(c);
+        this.changed(p);
+        this.updateElectricityOf(group);
+        this.publish();
 		return true;
 	}
 	
@@ -66,9 +146,26 @@ public class Circuit {
      * @param tile The {@code Tile} to add.
      */
 	public boolean addTile(Tile t) {
-		if (this.tiles.contains(this.getTileAt(t.position()))){
+		boolean res = this.insert(t);
+		this.publish();
+		return res;
+	}
+
+	// Adds the given tile without publishing a snapshot
+	private boolean insert(Tile t) {
+		if (this.getTileAt(t.position()) != null) {
             return false;
         }
+        int i = t.getLine();
+        int j = t.getColumn();
+        this.ensureGridCapacity(i + 1, j + 1);
+        this.grid[i * this.gridWidth + j] = t;
+        this.tilesPerLine[i]++;
+        this.tilesPerColumn[j]++;
+        this.height = Math.max(this.height, i + 1);
+        this.width = Math.max(this.width, j + 1);
+        this.changedLines.set(i);
+        this.wholeCircuitChanged();
 		return tiles.add(t);
 	}
 	
@@ -78,11 +175,58 @@ public class Circuit {
      */
 	public boolean removeTile(Position p) {
 		Tile t = getTileAt(p);
-        if (!this.tiles.contains(t) || p.equals(Position.origin())) {
+        if (t == null || p.equals(Position.origin())) {
             return false;            
         }
-		return tiles.remove(t);
+        int i = p.getLine();
+        int j = p.getColumn();
+        this.grid[i * this.gridWidth + j] = null;
+        this.tilesPerLine[i]--;
+        this.tilesPerColumn[j]--;
+        while (this.height > 0 && this.tilesPerLine[this.height - 1] == 0)
+            this.height--;
+        while (this.width > 0 && this.tilesPerColumn[this.width - 1] == 0)
+            this.width--;
+        this.changedLines.set(i);
+        this.wholeCircuitChanged();
+		boolean res = tiles.remove(t);
+		this.publish();
+		return res;
 	}
+
+    // Grows the grid so that it holds at least the given number of lines and
+    // columns. The capacity is doubled to keep successive additions amortized
+    private void ensureGridCapacity(int lines, int columns) {
+        if (lines <= this.gridHeight && columns <= this.gridWidth)
+            return;
+        int newHeight = Math.max(lines, this.gridHeight);
+        int newWidth = Math.max(columns, this.gridWidth);
+        if (newHeight > this.gridHeight)
+            newHeight = Math.max(newHeight, 2 * this.gridHeight);
+        if (newWidth > this.gridWidth)
+            newWidth = Math.max(newWidth, 2 * this.gridWidth);
+        Tile[] newGrid = new Tile[newHeight * newWidth];
+        for (int i = 0; i < this.gridHeight; i++) {
+            System.arraycopy(this.grid, i * this.gridWidth,
+                             newGrid, i * newWidth,
+                             this.gridWidth);
+        }
+        this.grid = newGrid;
+        this.tilesPerLine = Arrays.copyOf(this.tilesPerLine, newHeight);
+        this.tilesPerColumn = Arrays.copyOf(this.tilesPerColumn, newWidth);
+        this.gridHeight = newHeight;
+        this.gridWidth = newWidth;
+        this.adjacency = null;
+    }
+
+    // Returns the cells touching each cell of the grid, computing them if
+    // they are not known
+    private GridAdjacency adjacency() {
+        if (this.adjacency == null)
+            this.adjacency = GridAdjacency.of(this.gridHeight,
+                                              this.gridWidth);
+        return this.adjacency;
+    }
 	
 	/**
      * {@return the list of all tiles}
@@ -152,82 +296,167 @@ public class Circuit {
      * {@return the dimension of this Circuit}
      */
     public Dimension dimension() {
-        if (this.tiles.isEmpty())
-            return new Dimension();
-        int maxRow = 0;
-        int maxCol = 0;
-        for (Tile tile: this.tiles) {
-            if (tile.getLine() > maxRow)
-                maxRow = tile.getLine();
-            if (tile.getColumn() > maxCol)
-                maxCol = tile.getColumn();
-        }
-        return new Dimension(maxCol + 1, maxRow + 1);
+        return new Dimension(this.width, this.height);
     }
 
     // Eteint toutes les tuiles, sauf les sources, peu importe la configuration.
     public void blackout() {
         for (Tile tile: this.tiles) {
-            tile.setIsPowered(false);
+            this.setPowered(tile, false);
         }
+        this.electricityUpToDate = false;
+        this.publish();
     }
 
-    // Propage l'électricité à partir des sources de ce circuit
+    // Propage l'électricité à partir des sources de ce circuit. Every tile
+    // linked to a source, through cables or hotspots, is powered on and every
+    // other one is powered off.
     public void propagateElectricity() {
-        Deque<Tile> toExplore = new ArrayDeque<>(this.getSources());
-        while (!toExplore.isEmpty()) {
-            Tile cur = toExplore.pop();
-            cur.setIsPowered(true);
-            List<Tile> neighs = this.getNeighbors(cur);
-            for (Tile tile: neighs) {
-                if (!tile.isPowered() && !toExplore.contains(tile)) {
-                    toExplore.push(tile);
-                }
-            }
+        this.connectivity = ConnectivityIndex.of(this.grid, this.gridWidth,
+                                                 this.adjacency());
+        for (Tile tile: this.tiles) {
+            this.setPowered(tile, this.connectivity.isPowered(tile));
         }
+        this.electricityUpToDate = true;
+        this.publish();
     }
 
-    // Returns true if the Tile at the given Position rotated.
-    public boolean rotateTileAt(Position position) {
-        for (Tile tile: this.tiles) {
-            if (tile.isAt(position) && tile.canRotate()) {
-                tile.rotate();
-                return true;
-            }
+    // Returns the groups of linked tiles of this Circuit, computing them if
+    // they are not known
+    private ConnectivityIndex connectivity() {
+        if (this.connectivity == null)
+            this.connectivity = ConnectivityIndex.of(this.grid,
+                                                     this.gridWidth,
+                                                     this.adjacency());
+        return this.connectivity;
+    }
+
+    // Joins again the given nodes of the connectivity, dissolved before a
+    // change of one of their tiles, and recomputes the powered state of the
+    // groups they now belong to only. The rest of this Circuit is left
+    // untouched.
+    private void updateElectricityOf(int[] group) {
+        this.connectivity.rejoin(group);
+        for (Tile tile: this.connectivity.groupsOf(group)) {
+            this.setPowered(tile, this.connectivity.isPowered(tile));
         }
-        return false;
+    }
+
+    // Forgets the connectivity and the powered state after tiles were added
+    // or removed, or every tile may have changed
+    private void wholeCircuitChanged() {
+        this.allChanged = true;
+        this.connectivity = null;
+        this.electricityUpToDate = false;
+    }
+
+    // Sets the powered state of the given tile, recording its position if the
+    // state changed
+    private void setPowered(Tile tile, boolean powered) {
+        if (tile.isPowered() != powered) {
+            tile.setIsPowered(powered);
+            if (tile.isPowered() == powered)
+                this.changed(tile.position());
+        }
+    }
+
+    // Records a change of the tile at the given position
+    private void changed(Position position) {
+        this.changes.add(position);
+        this.changedLines.set(position.getLine());
+    }
+
+    // Publishes a snapshot of this Circuit if tiles changed since the last
+    // one. Only the changed lines are copied.
+    private void publish() {
+        if (this.changedLines.isEmpty()
+            && this.snapshot.dimension().equals(this.dimension()))
+            return;
+        this.snapshot = this.snapshot.next(this.grid,
+                                           this.gridWidth,
+                                           this.dimension(),
+                                           this.changedLines);
+        this.changedLines.clear();
+    }
+
+    /**
+     * {@return the last snapshot of this Circuit}
+     * A snapshot is published after each change made through this Circuit,
+     * and can be read from any thread.
+     */
+    public CircuitSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * {@return the positions of the tiles whose border, component or powered
+     * state changed since the last call to clearChanges}
+     * Changes of the whole Circuit are reported by allTilesChanged instead.
+     */
+    public Set<Position> getChanges() {
+        return Collections.unmodifiableSet(this.changes);
+    }
+
+    /**
+     * {@return true if tiles were added or removed, or if every tile may have
+     * changed, since the last call to clearChanges}
+     */
+    public boolean allTilesChanged() {
+        return this.allChanged;
+    }
+
+    // Forgets the changes recorded so far
+    public void clearChanges() {
+        this.changes.clear();
+        this.allChanged = false;
+    }
+
+    // Returns true if the Tile at the given Position rotated. The electricity
+    // is then updated in the part of this Circuit the Tile touches.
+    public boolean rotateTileAt(Position position) {
+        Tile tile = this.getTileAt(position);
+        if (tile == null || !tile.canRotate())
+            return false;
+        int[] group = this.connectivity().dissolve(tile);
+        tile.rotate();
+        this.changed(position);
+        this.updateElectricityOf(group);
+        this.publish();
+        return true;
     }
 
     // Returns the linked neighbors of the given tile
     public List<Tile> getNeighbors(Tile tile) {
         Objects.requireNonNull(tile);
-        if (!this.tiles.contains(tile))
+        if (!tile.equals(this.getTileAt(tile.position())))
             throw new NoSuchElementException("Tile is not in Circuit");
         List<Tile> res = new ArrayList<>();
-        List<Position> neighPos = Position.neighborPositions(tile.position(),
-                                                             tile.shape());
-        List<Tile> neighbors = new ArrayList<>();
-        for (Position position: neighPos) {
-            Tile t = this.getTileAt(position);
-            if (t != null && !neighbors.contains(t)) {
-                neighbors.add(t);
-            }
-        }
+        TileShape shape = tile.shape();
+        int[] adjacent = this.adjacency().of(shape);
+        int base = (tile.getLine() * this.gridWidth + tile.getColumn())
+            * shape.sides();
         // keep linked neighbors
-        for (Tile t: neighbors) {
-            if (tile.isLinkedTo(t)) {
+        for (int side = 0; side < shape.sides(); side++) {
+            if (!tile.side(side))
+                continue;
+            int neighbor = adjacent[base + side];
+            Tile t = neighbor == -1 ? null : this.grid[neighbor];
+            if (t != null
+                && t.shape() == shape
+                && t.side(shape.opposite(side))) {
                 res.add(t);
             }
         }
-        // add other hotspots if not already linked
+        // add other hotspots if not already linked, only the few tiles linked
+        // by cable being compared
         if (tile.component() == Component.HOTSPOT) {
-            List<Tile> hotspots = this.getHotspots();
-            for (Tile hotspot: hotspots) {
-                if (!res.contains(hotspot)) {
+            int linked = res.size();
+            for (Tile hotspot: this.getHotspots()) {
+                if (hotspot != tile
+                    && !res.subList(0, linked).contains(hotspot)) {
                     res.add(hotspot);
                 }
             }
-            res.remove(tile); // remove itself
         }
         return res;
     }
@@ -235,12 +464,15 @@ public class Circuit {
     // Returns the tile at the given position, null if none
     public Tile getTileAt(Position position) {
         Objects.requireNonNull(position);
-        for (Tile tile: this.tiles) {
-            if (tile.position().equals(position)) {
-                return tile;
-            }
-        }
-        return null;
+        return this.tileAt(position.getLine(), position.getColumn());
+    }
+
+    // Returns the tile at the given coordinates, null if none or if they are
+    // outside of the grid
+    private Tile tileAt(int i, int j) {
+        if (i < 0 || j < 0 || i >= this.gridHeight || j >= this.gridWidth)
+            return null;
+        return this.grid[i * this.gridWidth + j];
     }
 
     // Returns the sources of this Circuit
@@ -266,8 +498,11 @@ public class Circuit {
     }
 
     // Returns true if all the lamps in this Circuit are powered on and this
-    // Circuit is not empty
+    // Circuit is not empty. Once electricity was propagated, the lamps are
+    // counted by group of linked tiles rather than checked one by one.
     public boolean allLampsArePoweredOn() {
+        if (this.electricityUpToDate)
+            return this.connectivity.allLampsPowered() && !this.isEmpty();
         for (Tile tile: this.tiles) {
             if (tile.component() == Component.LAMP && !tile.isPowered()) {
                 return false;
@@ -296,6 +531,9 @@ public class Circuit {
                 }
             }
         }
+        this.changedLines.set(0, this.height);
+        this.wholeCircuitChanged();
+        this.publish();
     }
 
     // Clears all the Tiles of this Circuit
@@ -303,17 +541,62 @@ public class Circuit {
         for (Tile tile: this.tiles) {
             tile.clear();
         }
+        this.changedLines.set(0, this.height);
+        this.wholeCircuitChanged();
+        this.publish();
+    }
+
+    // Sets the tile at the given position to the given component and border
+    // mask, adding a tile of the given shape if there is none, or removes the
+    // tile if the component is null. Electricity is updated around the tile
+    // if incremental is true and no tile is added or removed; returns false
+    // if it must be propagated again instead.
+    boolean restoreTile(Position p,
+                        TileShape shape,
+                        Component c,
+                        int mask,
+                        boolean incremental) {
+        Tile tile = this.getTileAt(p);
+        if (c == null) {
+            if (tile != null)
+                this.removeTile(p);
+            return false;
+        }
+        int[] group = null;
+        if (tile == null) {
+            tile = Tile.of(shape, p, c);
+            this.insert(tile);
+        } else if (incremental) {
+            group = this.connectivity().dissolve(tile);
+        } else {
+            this.connectivity = null;
+            this.electricityUpToDate = false;
+        }
+        tile.setComponent(c);
+        for (int side = 0; side < tile.length(); side++) {
+            if ((mask & 1 << side) != 0)
+                tile.connect(side);
+            else
+                tile.disconnect(side);
+        }
+        this.changed(p);
+        if (group != null)
+            this.updateElectricityOf(group);
+        this.publish();
+        return group != null;
     }
 
     // Clears the Tile at the given Position if any
     public boolean clearTileAt(Position position) {
-        for (Tile tile: this.tiles) {
-            if (tile.position().equals(position)) {
-                tile.clear();
-                return true;
-            }
-        }
-        return false;
+        Tile tile = this.getTileAt(position);
+        if (tile == null)
+            return false;
+        int[] group = this.connectivity().dissolve(tile);
+        tile.clear();
+        this.changed(position);
+        this.updateElectricityOf(group);
+        this.publish();
+        return true;
     }
 
     private void addOrRemoveLine(boolean add) {
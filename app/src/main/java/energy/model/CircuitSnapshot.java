@@ -0,0 +1,287 @@
+package energy.model;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable state of a Circuit, published by the Circuit after each of
+ * its changes. A snapshot can be read from any thread without locking while
+ * the Circuit keeps changing.
+ * <p>
+ * The tiles are stored line by line, each tile being encoded in an int. The
+ * lines a change of the Circuit did not touch are shared with the previous
+ * snapshot, so publishing a snapshot only copies the changed lines.
+ */
+public final class CircuitSnapshot {
+
+    // Encoding of a tile: its border mask in the low bits, followed by its
+    // powered state, component and shape. A cell without tile is 0.
+    private static final int MASK_BITS = 6;
+    private static final int POWERED = 1 << MASK_BITS;
+    private static final int COMPONENT_SHIFT = MASK_BITS + 1;
+    private static final int SHAPE_SHIFT = COMPONENT_SHIFT + 2;
+    private static final int PRESENT = 1 << (SHAPE_SHIFT + 1);
+
+    private static final Component[] COMPONENTS = Component.values();
+    private static final TileShape[] SHAPES = TileShape.values();
+
+    // The snapshot of an empty Circuit
+    static final CircuitSnapshot EMPTY =
+        new CircuitSnapshot(new Line[0], 0, 0);
+
+    // A line of tiles, shared by the snapshots in which it did not change
+    private static final class Line {
+
+        // Encoded tiles, by column; columns past the end hold no tile
+        private final int[] cells;
+
+        // Number of tiles of each shape on this line, by shape ordinal
+        private final int[] shapes;
+
+        // Tiles of this line, created at the first call to tiles
+        private volatile List<Tile> tiles;
+
+        private Line(int[] cells) {
+            this.cells = cells;
+            this.shapes = new int[SHAPES.length];
+            for (int cell: cells) {
+                if (cell != 0)
+                    this.shapes[cell >>> SHAPE_SHIFT & 1]++;
+            }
+        }
+    }
+
+    // Lines of tiles
+    private final Line[] lines;
+
+    // Dimension of the Circuit
+    private final int width;
+
+    // Number of changes of the Circuit published before this snapshot
+    private final long version;
+
+    // Number of tiles of each shape, by shape ordinal
+    private final int[] shapes;
+
+    // All the tiles, created at the first call to tiles
+    private volatile List<Tile> tiles;
+
+    // Initializes a CircuitSnapshot from given parameters
+    private CircuitSnapshot(Line[] lines, int width, long version) {
+        this.lines = lines;
+        this.width = width;
+        this.version = version;
+        this.shapes = new int[SHAPES.length];
+        for (Line line: lines) {
+            for (int s = 0; s < SHAPES.length; s++)
+                this.shapes[s] += line.shapes[s];
+        }
+    }
+
+    // Returns the snapshot following this one, once the tiles of the given
+    // lines of the grid changed. The other lines are shared with this one.
+    CircuitSnapshot next(Tile[] grid,
+                         int gridWidth,
+                         Dimension dim,
+                         BitSet changedLines) {
+        Line[] res = new Line[dim.height];
+        for (int i = 0; i < dim.height; i++) {
+            if (i < this.lines.length && !changedLines.get(i)) {
+                res[i] = this.lines[i];
+                continue;
+            }
+            int[] cells = new int[dim.width];
+            for (int j = 0; j < dim.width; j++)
+                cells[j] = encode(grid[i * gridWidth + j]);
+            res[i] = new Line(cells);
+        }
+        return new CircuitSnapshot(res, dim.width, this.version + 1);
+    }
+
+    // Returns the int encoding the given tile
+    private static int encode(Tile tile) {
+        if (tile == null)
+            return 0;
+        return PRESENT
+            | tile.shape().ordinal() << SHAPE_SHIFT
+            | tile.component().ordinal() << COMPONENT_SHIFT
+            | (tile.isPowered() ? POWERED : 0)
+            | tile.borderMask();
+    }
+
+    // Returns the encoded tile at the given coordinates, 0 if none
+    private int cellAt(int i, int j) {
+        if (i < 0 || i >= this.lines.length)
+            return 0;
+        int[] cells = this.lines[i].cells;
+        return j < 0 || j >= cells.length ? 0 : cells[j];
+    }
+
+    // Returns the encoded tile at the given position
+    // Throws NoSuchElementException if there is no tile at this position
+    private int cellAt(Position position) {
+        Objects.requireNonNull(position);
+        int cell = this.cellAt(position.getLine(), position.getColumn());
+        if (cell == 0)
+            throw new NoSuchElementException("No tile at " + position);
+        return cell;
+    }
+
+    /**
+     * {@return the number of changes of the Circuit published before this
+     * snapshot}
+     * A later snapshot of the same Circuit has a greater version.
+     */
+    public long version() {
+        return this.version;
+    }
+
+    /**
+     * {@return the dimension of the Circuit}
+     */
+    public Dimension dimension() {
+        return new Dimension(this.width, this.lines.length);
+    }
+
+    /**
+     * {@return true if all the tiles are hexagonal and there is at least one}
+     * @throws IllegalStateException if there are hexagonal and squared tiles
+     */
+    public boolean areAllHexagonalTiles() {
+        return this.areAllTilesOf(TileShape.HEXAGON);
+    }
+
+    /**
+     * {@return true if all the tiles are squared and there is at least one}
+     * @throws IllegalStateException if there are hexagonal and squared tiles
+     */
+    public boolean areAllSquaredTiles() {
+        return this.areAllTilesOf(TileShape.SQUARE);
+    }
+
+    // Returns true if all the tiles are of the given shape and there is at
+    // least one
+    private boolean areAllTilesOf(TileShape shape) {
+        int count = this.shapes[shape.ordinal()];
+        if (count != 0 && count != this.tileCount())
+            throw new IllegalStateException(
+                "Circuit with squared and hexagonal tiles");
+        return count != 0;
+    }
+
+    /**
+     * {@return the number of tiles}
+     */
+    public int tileCount() {
+        int res = 0;
+        for (int count: this.shapes)
+            res += count;
+        return res;
+    }
+
+    /**
+     * {@return true if there is a tile at the given position}
+     */
+    public boolean hasTileAt(Position position) {
+        Objects.requireNonNull(position);
+        return this.cellAt(position.getLine(), position.getColumn()) != 0;
+    }
+
+    /**
+     * {@return the shape of the tile at the given position}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public TileShape shapeAt(Position position) {
+        return SHAPES[this.cellAt(position) >>> SHAPE_SHIFT & 1];
+    }
+
+    /**
+     * {@return the component of the tile at the given position}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public Component componentAt(Position position) {
+        return COMPONENTS[this.cellAt(position) >>> COMPONENT_SHIFT & 3];
+    }
+
+    /**
+     * {@return the border mask of the tile at the given position, as in
+     * Tile.borderMask}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public int borderMaskAt(Position position) {
+        return this.cellAt(position) & (POWERED - 1);
+    }
+
+    /**
+     * {@return true if the tile at the given position is powered}
+     * @throws NoSuchElementException if there is no tile there
+     */
+    public boolean isPoweredAt(Position position) {
+        return (this.cellAt(position) & POWERED) != 0;
+    }
+
+    /**
+     * {@return true if every lamp is powered and there is at least one tile}
+     */
+    public boolean allLampsArePoweredOn() {
+        for (Line line: this.lines) {
+            for (int cell: line.cells) {
+                if (cell != 0
+                    && COMPONENTS[cell >>> COMPONENT_SHIFT & 3]
+                       == Component.LAMP
+                    && (cell & POWERED) == 0)
+                    return false;
+            }
+        }
+        return this.tileCount() != 0;
+    }
+
+    /**
+     * {@return copies of the tiles, line by line}
+     * The copies are detached from the Circuit: they are created once per
+     * snapshot and line, and must not be modified.
+     */
+    public List<Tile> tiles() {
+        List<Tile> res = this.tiles;
+        if (res == null) {
+            res = new ArrayList<>(this.tileCount());
+            for (int i = 0; i < this.lines.length; i++)
+                res.addAll(tilesOf(i, this.lines[i]));
+            res = Collections.unmodifiableList(res);
+            this.tiles = res;
+        }
+        return res;
+    }
+
+    // Returns copies of the tiles of the given line, of index i
+    private static List<Tile> tilesOf(int i, Line line) {
+        List<Tile> res = line.tiles;
+        if (res == null) {
+            res = new ArrayList<>();
+            for (int j = 0; j < line.cells.length; j++) {
+                if (line.cells[j] != 0)
+                    res.add(decode(Position.at(i, j), line.cells[j]));
+            }
+            line.tiles = res;
+        }
+        return res;
+    }
+
+    // Returns a new Tile at the given position, from the given int
+    private static Tile decode(Position position, int cell) {
+        Tile res = Tile.of(SHAPES[cell >>> SHAPE_SHIFT & 1],
+                           position,
+                           COMPONENTS[cell >>> COMPONENT_SHIFT & 3]);
+        for (int side = 0; side < MASK_BITS; side++) {
+            if ((cell & 1 << side) != 0)
+                res.connect(side);
+        }
+        res.setIsPowered((cell & POWERED) != 0);
+        return res;
+    }
+}
@@ -0,0 +1,193 @@
+package energy.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * The state of a board of fixed dimension, stored in primitive arrays rather
+ * than in Tile objects, for boards too large to be played through a Circuit.
+ * <p>
+ * The cell at line i and column j has index i * width + j in each array: its
+ * component code and its border mask take a byte each, and its powered state
+ * a bit. A board of a million cells takes about 2 MB, plus 4 MB for the queue
+ * of cells walked when electricity is propagated. The components are
+ * fixed, only the tiles that can rotate change. Tiles are created on demand
+ * by tileAt, as copies of the state of a cell.
+ * <p>
+ * Electricity is propagated by a breadth-first walk from the sources over the
+ * cells linked by facing connected sides, all the hotspots being linked to one
+ * another.
+ */
+public final class CircuitState extends CellBoard {
+
+    private static final Component[] COMPONENTS = Component.values();
+
+    // Code of the cells without tile, the other codes being component
+    // ordinals
+    private static final byte NO_TILE = (byte) COMPONENTS.length;
+
+    // Component code and border mask of each cell
+    private final byte[] components;
+    private final byte[] masks;
+
+    // Powered state of each cell
+    private final BitSet powered;
+
+    // Queue of cells to visit during a propagation, kept between propagations
+    private int[] queue = new int[0];
+
+    // Initializes a CircuitState from given parameters
+    private CircuitState(TileShape shape,
+                         int height,
+                         int width,
+                         byte[] components,
+                         byte[] masks) {
+        super(shape, height, width);
+        this.components = components;
+        this.masks = masks;
+        this.powered = new BitSet(components.length);
+        this.indexCells();
+    }
+
+    /**
+     * {@return the CircuitState of the tiles of the given LevelConfig, with
+     * no tile powered but the sources}
+     * As in Level.fromLevelConfig, the tiles outside of the cells of the
+     * board, as given by TileShape.hasCell, are left out.
+     * @throws IllegalArgumentException if tiles are not of the shape of the
+     * level or outside of its declared dimension
+     */
+    public static CircuitState of(LevelConfig lc) {
+        int height = lc.height();
+        int width = lc.width();
+        byte[] components = new byte[height * width];
+        byte[] masks = new byte[height * width];
+        Arrays.fill(components, NO_TILE);
+        for (Tile t: lc.tiles()) {
+            if (t.shape() != lc.shape())
+                throw new IllegalArgumentException(
+                    "Tiles must be of the shape of the level");
+            if (t.getLine() >= height || t.getColumn() >= width)
+                throw new IllegalArgumentException(
+                    "Tiles must be inside the dimension of the level");
+            if (!lc.shape().hasCell(t.getLine(), t.getColumn(), height))
+                continue;
+            int cell = t.getLine() * width + t.getColumn();
+            components[cell] = (byte) t.component().ordinal();
+            masks[cell] = (byte) t.borderMask();
+        }
+        return new CircuitState(lc.shape(), height, width, components, masks);
+    }
+
+    // Returns a copy of this CircuitState, with no tile powered but the
+    // sources. The components, which never change, are shared.
+    CircuitState copy() {
+        return new CircuitState(this.shape, this.height, this.width,
+                                this.components, this.masks.clone());
+    }
+
+    @Override
+    boolean hasTile(int cell) {
+        return this.components[cell] != NO_TILE;
+    }
+
+    @Override
+    Component component(int cell) {
+        return COMPONENTS[this.components[cell]];
+    }
+
+    @Override
+    int border(int cell) {
+        return this.masks[cell];
+    }
+
+    @Override
+    void setBorder(int cell, int border) {
+        this.masks[cell] = (byte) border;
+    }
+
+    @Override
+    boolean isPowered(int cell) {
+        return this.powered.get(cell);
+    }
+
+    @Override
+    void power(int cell) {
+        this.powered.set(cell);
+    }
+
+    @Override
+    void clearPower() {
+        this.powered.clear();
+    }
+
+    @Override
+    void ensureQueue(int size) {
+        if (this.queue.length < size)
+            this.queue = new int[size];
+    }
+
+    @Override
+    void setQueued(int index, int cell) {
+        this.queue[index] = cell;
+    }
+
+    @Override
+    int queued(int index) {
+        return this.queue[index];
+    }
+
+    /**
+     * {@return a new Tile in the state of the tile at the given position,
+     * null if there is none}
+     * The Tile is detached from this CircuitState.
+     */
+    public Tile tileAt(Position position) {
+        int cell = this.cellAt(position);
+        if (cell == -1)
+            return null;
+        Tile res = Tile.of(this.shape, position, this.component(cell));
+        int mask = this.masks[cell];
+        for (int side = 0; mask != 0; side++, mask >>>= 1) {
+            if ((mask & 1) != 0)
+                res.connect(side);
+        }
+        res.setIsPowered(this.powered.get(cell));
+        return res;
+    }
+
+    /**
+     * {@return the LevelConfig of given id holding the tiles of this
+     * CircuitState}
+     */
+    public LevelConfig toLevelConfig(int id) {
+        ArrayList<Tile> tiles = new ArrayList<>(this.tileCount());
+        for (int i = 0; i < this.height; i++) {
+            for (int j = 0; j < this.width; j++) {
+                Tile t = this.tileAt(Position.at(i, j));
+                if (t != null)
+                    tiles.add(t);
+            }
+        }
+        return LevelConfig.of(this.height, this.width, id, this.shape, tiles);
+    }
+
+    /**
+     * Rotates each tile that can rotate, at least once and less than a full
+     * turn, using the given Random.
+     */
+    public void randomRotations(Random random) {
+        int sides = this.shape.sides();
+        for (int cell = 0; cell < this.masks.length; cell++) {
+            if (!this.canRotate(cell))
+                continue;
+            int mask = this.masks[cell];
+            for (int r = 1 + random.nextInt(sides - 1); r > 0; r--)
+                mask = this.shape.rotate(mask);
+            this.masks[cell] = (byte) mask;
+        }
+        this.bordersChanged();
+    }
+}
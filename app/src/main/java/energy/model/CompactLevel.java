@@ -0,0 +1,153 @@
+package energy.model;
+
+import energy.view.Observer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A PlayableLevel backed by a CircuitState rather than by a Circuit, for
+ * levels too large to hold a Tile per cell, such as huge generated puzzles or
+ * levels played by simulations. Each rotation propagates electricity again
+ * over the primitive arrays of the state.
+ */
+public final class CompactLevel implements PlayableLevel {
+
+    // Id of this CompactLevel
+    private final int id;
+
+    // State of the board
+    private final CircuitState state;
+
+    // Random used to rotate the tiles
+    private final Random random;
+
+    // Observers of this CompactLevel
+    private final List<Observer> observers = new ArrayList<>();
+
+    // Tiles differing from a solution of the board
+    private final Hints hints = new Hints();
+
+    // Initializes a CompactLevel from given parameters
+    private CompactLevel(int id, CircuitState state, Random random) {
+        this.id = id;
+        this.state = state;
+        this.random = random;
+    }
+
+    /**
+     * {@return a new CompactLevel holding the tiles of the given LevelConfig,
+     * rotated randomly with the given Random}
+     * @throws IllegalArgumentException if tiles are not of the shape of the
+     * level
+     */
+    public static CompactLevel fromLevelConfig(LevelConfig lc, Random random) {
+        return new CompactLevel(lc.id(), CircuitState.of(lc), random);
+    }
+
+    /**
+     * {@return a new CompactLevel holding the tiles of the given LevelConfig}
+     * @throws IllegalArgumentException if tiles are not of the shape of the
+     * level
+     */
+    public static CompactLevel fromLevelConfig(LevelConfig lc) {
+        return CompactLevel.fromLevelConfig(lc, new Random());
+    }
+
+    /**
+     * {@return the id of this CompactLevel}
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * {@return the state of the board of this CompactLevel}
+     */
+    public CircuitState state() {
+        return this.state;
+    }
+
+    @Override
+    public void notifyObservers() {
+        for (Observer observer: this.observers)
+            observer.update(this);
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        this.observers.add(observer);
+    }
+
+    // Returns true if the tile at the given Position rotated, electricity
+    // being then propagated again
+    @Override
+    public boolean rotateTileAt(Position position) {
+        if (!this.state.rotateTileAt(position))
+            return false;
+        this.state.propagateElectricity();
+        this.hints.update(position, this.state.borderMaskAt(position));
+        return true;
+    }
+
+    @Override
+    public void randomRotations() {
+        this.state.randomRotations(this.random);
+        this.hints.updateAll(this::updateHints);
+    }
+
+    // Records the border mask of every tile in the given HintTracker
+    private void updateHints(HintTracker tracker) {
+        for (int cell = 0; cell < this.state.cells(); cell++) {
+            if (this.state.hasTile(cell))
+                tracker.update(cell, this.state.border(cell));
+        }
+    }
+
+    @Override
+    public void blackout() {
+        this.state.blackout();
+    }
+
+    @Override
+    public void propagateElectricity() {
+        this.state.propagateElectricity();
+    }
+
+    // The search works on a copy of the arrays of the board, so that tiles
+    // can rotate meanwhile
+    @Override
+    public void prepareHints() {
+        if (!this.hints.isStarted()) {
+            CircuitState copy = this.state.copy();
+            this.hints.start(stop -> HintTracker.of(copy, stop));
+        }
+    }
+
+    @Override
+    public void whenHintsReady(Runnable action) {
+        this.prepareHints();
+        this.hints.whenReady(action);
+    }
+
+    @Override
+    public void cancelHints() {
+        this.hints.reset();
+    }
+
+    @Override
+    public Hint hint() {
+        if (this.isFinished())
+            return null;
+        this.prepareHints();
+        // Tiles may have rotated since the search started
+        HintTracker tracker = this.hints.tracker(this::updateHints);
+        return tracker == null ? null : tracker.next();
+    }
+
+    // Returns true if all the lamps are powered on
+    public boolean isFinished() {
+        return this.state.allLampsArePoweredOn();
+    }
+}
@@ -0,0 +1,216 @@
+package energy.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// The groups of linked tiles of a Circuit, as a disjoint-set forest over the
+// cells of its grid. Tiles are in the same group if a path of linked sides
+// joins them; all the hotspots are joined to one virtual node, so that they
+// form a single group without being linked to one another. Each group counts
+// its sources and lamps, which makes the powered state of a tile and of all
+// the lamps available in near-constant time.
+//
+// Links are added by union as they form. A broken link may split a group,
+// which union-find can not undo: the group is then dissolved and its tiles
+// are joined again from their current links, in time linear in its size.
+final class ConnectivityIndex {
+
+    // Tiles of the indexed Circuit, as stored in its grid, and the cells
+    // touching each cell of the grid
+    private final Tile[] grid;
+    private final int gridWidth;
+    private final GridAdjacency adjacency;
+
+    // Index of the virtual node joining the hotspots
+    private final int hotspotNode;
+
+    // Parent of each node, itself for the roots
+    private final int[] parent;
+
+    // Number of nodes of each group, by root
+    private final int[] size;
+
+    // Next node of the same group: each group is a circular list, so that
+    // two groups are merged by swapping two links
+    private final int[] next;
+
+    // Number of sources and lamps of each group, by root
+    private final int[] sources;
+    private final int[] lamps;
+
+    // Number of lamps in the whole Circuit, and in the groups holding a source
+    private int lampCount;
+    private int poweredLamps;
+
+    // Initializes a ConnectivityIndex of the given grid, with no link yet
+    private ConnectivityIndex(Tile[] grid,
+                              int gridWidth,
+                              GridAdjacency adjacency) {
+        this.grid = grid;
+        this.gridWidth = gridWidth;
+        this.adjacency = adjacency;
+        this.hotspotNode = grid.length;
+        int n = grid.length + 1;
+        this.parent = new int[n];
+        this.size = new int[n];
+        this.next = new int[n];
+        this.sources = new int[n];
+        this.lamps = new int[n];
+    }
+
+    // Returns the ConnectivityIndex of the tiles of the given grid, of the
+    // given width and adjacency
+    static ConnectivityIndex of(Tile[] grid,
+                                int gridWidth,
+                                GridAdjacency adjacency) {
+        ConnectivityIndex res =
+            new ConnectivityIndex(grid, gridWidth, adjacency);
+        for (int node = 0; node <= grid.length; node++)
+            res.reset(node);
+        for (int node = 0; node < grid.length; node++) {
+            if (grid[node] != null)
+                res.joinLinks(node);
+        }
+        return res;
+    }
+
+    // Returns the node of the given tile
+    int nodeOf(Tile tile) {
+        return tile.getLine() * this.gridWidth + tile.getColumn();
+    }
+
+    // Returns true if the group of the given tile holds a source
+    boolean isPowered(Tile tile) {
+        return this.sources[this.find(this.nodeOf(tile))] > 0;
+    }
+
+    // Returns true if every lamp is in a group holding a source
+    boolean allLampsPowered() {
+        return this.poweredLamps == this.lampCount;
+    }
+
+    // Dissolves the group of the given tile before a change of its links or
+    // component, and returns the nodes of the group. The group must be joined
+    // again by rejoin once the change is made.
+    int[] dissolve(Tile tile) {
+        int root = this.find(this.nodeOf(tile));
+        int[] res = new int[this.size[root]];
+        int node = root;
+        for (int k = 0; k < res.length; k++) {
+            res[k] = node;
+            node = this.next[node];
+        }
+        this.lampCount -= this.lamps[root];
+        if (this.sources[root] > 0)
+            this.poweredLamps -= this.lamps[root];
+        for (int member: res) {
+            this.parent[member] = member;
+            this.size[member] = 1;
+            this.next[member] = member;
+            this.sources[member] = 0;
+            this.lamps[member] = 0;
+        }
+        return res;
+    }
+
+    // Counts again the tiles of the given nodes, returned by dissolve, and
+    // joins them to the tiles they are linked to after the change
+    void rejoin(int[] nodes) {
+        for (int node: nodes)
+            this.reset(node);
+        for (int node: nodes) {
+            if (node != this.hotspotNode && this.grid[node] != null)
+                this.joinLinks(node);
+        }
+    }
+
+    // Returns the tiles of the groups of the given nodes, each group once
+    List<Tile> groupsOf(int[] nodes) {
+        List<Tile> res = new ArrayList<>();
+        Set<Integer> roots = new HashSet<>();
+        for (int node: nodes) {
+            int root = this.find(node);
+            if (!roots.add(root))
+                continue;
+            int member = root;
+            do {
+                if (member != this.hotspotNode)
+                    res.add(this.grid[member]);
+                member = this.next[member];
+            } while (member != root);
+        }
+        return res;
+    }
+
+    // Makes the given node a group of its own, counting its tile. The node
+    // must not be counted yet.
+    private void reset(int node) {
+        this.parent[node] = node;
+        this.size[node] = 1;
+        this.next[node] = node;
+        Tile tile = node == this.hotspotNode ? null : this.grid[node];
+        Component c = tile == null ? Component.EMPTY : tile.component();
+        this.sources[node] = c == Component.SOURCE ? 1 : 0;
+        this.lamps[node] = c == Component.LAMP ? 1 : 0;
+        this.lampCount += this.lamps[node];
+    }
+
+    // Joins the tile of the given node to its linked neighbors, and to the
+    // virtual node if it is a hotspot. Links are as in Circuit.getNeighbors.
+    private void joinLinks(int node) {
+        Tile tile = this.grid[node];
+        TileShape shape = tile.shape();
+        int[] adjacent = this.adjacency.of(shape);
+        int base = node * shape.sides();
+        int mask = tile.borderMask();
+        for (int side = 0; mask != 0; side++, mask >>>= 1) {
+            if ((mask & 1) == 0)
+                continue;
+            int neighbor = adjacent[base + side];
+            Tile t = neighbor == -1 ? null : this.grid[neighbor];
+            if (t != null
+                && t.shape() == shape
+                && t.side(shape.opposite(side)))
+                this.union(node, neighbor);
+        }
+        if (tile.component() == Component.HOTSPOT)
+            this.union(node, this.hotspotNode);
+    }
+
+    // Returns the root of the group of the given node, halving the path
+    private int find(int node) {
+        while (this.parent[node] != node) {
+            this.parent[node] = this.parent[this.parent[node]];
+            node = this.parent[node];
+        }
+        return node;
+    }
+
+    // Merges the groups of the given nodes, the smaller under the larger
+    private void union(int a, int b) {
+        int ra = this.find(a);
+        int rb = this.find(b);
+        if (ra == rb)
+            return;
+        if (this.size[ra] < this.size[rb]) {
+            int tmp = ra;
+            ra = rb;
+            rb = tmp;
+        }
+        if (this.sources[ra] > 0)
+            this.poweredLamps -= this.lamps[ra];
+        if (this.sources[rb] > 0)
+            this.poweredLamps -= this.lamps[rb];
+        this.parent[rb] = ra;
+        this.size[ra] += this.size[rb];
+        this.sources[ra] += this.sources[rb];
+        this.lamps[ra] += this.lamps[rb];
+        if (this.sources[ra] > 0)
+            this.poweredLamps += this.lamps[ra];
+        int tmp = this.next[ra];
+        this.next[ra] = this.next[rb];
+        this.next[rb] = tmp;
+    }
+}
@@ -0,0 +1,219 @@
+package energy.model;
+
+import java.awt.Dimension;
+
+// The edits of a Circuit that can be undone and redone. Each edit is stored
+// as the change of a single tile, packed in a long: its position, shape, and
+// component and border mask before and after the change. The edits made
+// between two calls to endStep form a step, undone or redone at once.
+//
+// The edits are kept in a ring buffer of fixed capacity: once it is full,
+// the oldest steps are forgotten, so the history never takes more memory
+// than the buffer.
+final class EditHistory {
+
+    // Number of edits kept by default, 8 bytes each
+    static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Steps of more edits are applied without updating electricity tile by
+    // tile, which is then propagated once
+    private static final int INCREMENTAL_STEP_LIMIT = 32;
+
+    // Layout of an edit: the border masks before and after, the codes of the
+    // components before and after, the shape, the line and the column. The
+    // highest bit marks the first edit of a step.
+    private static final int MASK_BITS = 6;
+    private static final int CODE_BITS = 3;
+    private static final int COORDINATE_BITS = 21;
+    private static final int NEW_MASK_SHIFT = MASK_BITS;
+    private static final int OLD_CODE_SHIFT = 2 * MASK_BITS;
+    private static final int NEW_CODE_SHIFT = OLD_CODE_SHIFT + CODE_BITS;
+    private static final int SHAPE_SHIFT = NEW_CODE_SHIFT + CODE_BITS;
+    private static final int LINE_SHIFT = SHAPE_SHIFT + 1;
+    private static final int COLUMN_SHIFT = LINE_SHIFT + COORDINATE_BITS;
+    private static final long STEP_START = 1L << 63;
+    private static final long MASK = (1 << MASK_BITS) - 1;
+    private static final long CODE = (1 << CODE_BITS) - 1;
+    private static final long COORDINATE = (1 << COORDINATE_BITS) - 1;
+
+    // Code of the absence of tile, the other codes being component ordinals
+    private static final int NO_TILE = Component.values().length;
+
+    private static final Component[] COMPONENTS = Component.values();
+    private static final TileShape[] SHAPES = TileShape.values();
+
+    // Ring buffer of edits: the edit of absolute index k is at k & mask
+    private final long[] edits;
+    private final int mask;
+
+    // Absolute index of the oldest kept edit, of the end of the done edits,
+    // and of the end of the undone edits that can be redone
+    private long start;
+    private long end;
+    private long redoEnd;
+
+    // Indicates if the next edit starts a new step
+    private boolean stepEnded = true;
+
+    // Indicates if the current step was forgotten because it did not fit in
+    // the buffer; its next edits are forgotten too
+    private boolean overflowed;
+
+    // Initializes an empty EditHistory keeping at least the given number of
+    // edits
+    EditHistory(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.edits = new long[size];
+        this.mask = size - 1;
+    }
+
+    // Records the change of the tile at the given position: component null
+    // stands for the absence of tile. Undone edits can no longer be redone.
+    void record(Position p,
+                TileShape shape,
+                Component oldComponent,
+                int oldMask,
+                Component newComponent,
+                int newMask) {
+        if (oldComponent == newComponent && oldMask == newMask)
+            return;
+        this.redoEnd = this.end;
+        boolean first = this.stepEnded;
+        if (first) {
+            this.stepEnded = false;
+            this.overflowed = false;
+        } else if (this.overflowed) {
+            return;
+        }
+
+        long edit = oldMask
+            | (long) newMask << NEW_MASK_SHIFT
+            | (long) codeOf(oldComponent) << OLD_CODE_SHIFT
+            | (long) codeOf(newComponent) << NEW_CODE_SHIFT
+            | (long) shape.ordinal() << SHAPE_SHIFT
+            | (long) p.getLine() << LINE_SHIFT
+            | (long) p.getColumn() << COLUMN_SHIFT;
+        this.edits[(int) this.end & this.mask] =
+            first ? edit | STEP_START : edit;
+        this.end++;
+        this.redoEnd = this.end;
+
+        if (this.end - this.start > this.edits.length)
+            this.forgetOldestStep();
+    }
+
+    // Records the changes from a state of a Circuit to the next one
+    void recordChanges(CircuitSnapshot before, CircuitSnapshot after) {
+        Dimension b = before.dimension();
+        Dimension a = after.dimension();
+        int height = Math.max(b.height, a.height);
+        int width = Math.max(b.width, a.width);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                Position p = Position.at(i, j);
+                boolean was = before.hasTileAt(p);
+                boolean is = after.hasTileAt(p);
+                if (!was && !is)
+                    continue;
+                TileShape shape = was ? before.shapeAt(p) : after.shapeAt(p);
+                this.record(p, shape,
+                            was ? before.componentAt(p) : null,
+                            was ? before.borderMaskAt(p) : 0,
+                            is ? after.componentAt(p) : null,
+                            is ? after.borderMaskAt(p) : 0);
+            }
+        }
+    }
+
+    // Ends the current step: the next edit starts a new one
+    void endStep() {
+        this.stepEnded = true;
+    }
+
+    // Returns true if a step can be undone
+    boolean canUndo() {
+        return this.end > this.start;
+    }
+
+    // Returns true if a step can be redone
+    boolean canRedo() {
+        return this.redoEnd > this.end;
+    }
+
+    // Undoes the last step on the given Circuit, returning false if there is
+    // none
+    boolean undo(Circuit circuit) {
+        if (!this.canUndo())
+            return false;
+        long first = this.end - 1;
+        while (!isStepStart(this.edits[(int) first & this.mask]))
+            first--;
+        this.apply(circuit, first, this.end, true);
+        this.end = first;
+        this.endStep();
+        return true;
+    }
+
+    // Redoes the last undone step on the given Circuit, returning false if
+    // there is none
+    boolean redo(Circuit circuit) {
+        if (!this.canRedo())
+            return false;
+        long last = this.end + 1;
+        while (last < this.redoEnd
+               && !isStepStart(this.edits[(int) last & this.mask]))
+            last++;
+        this.apply(circuit, this.end, last, false);
+        this.end = last;
+        this.endStep();
+        return true;
+    }
+
+    // Applies the edits of absolute indices from first included to last
+    // excluded, backward to undo them or forward to redo them
+    private void apply(Circuit circuit, long first, long last, boolean undo) {
+        boolean incremental = last - first <= INCREMENTAL_STEP_LIMIT;
+        for (long k = first; k < last; k++) {
+            long index = undo ? last - 1 - (k - first) : k;
+            long edit = this.edits[(int) index & this.mask];
+            int i = (int) (edit >>> LINE_SHIFT & COORDINATE);
+            int j = (int) (edit >>> COLUMN_SHIFT & COORDINATE);
+            TileShape shape = SHAPES[(int) (edit >>> SHAPE_SHIFT & 1)];
+            int code = (int) (edit >>> (undo ? OLD_CODE_SHIFT : NEW_CODE_SHIFT)
+                              & CODE);
+            int border = (int) (edit >>> (undo ? 0 : NEW_MASK_SHIFT) & MASK);
+            Component c = code == NO_TILE ? null : COMPONENTS[code];
+            incremental &= circuit.restoreTile(Position.at(i, j), shape, c,
+                                               border, incremental);
+        }
+        if (!incremental) {
+            circuit.blackout();
+            circuit.propagateElectricity();
+        }
+    }
+
+    // Forgets the oldest step, or the whole history if the current step
+    // alone fills the buffer
+    private void forgetOldestStep() {
+        long k = this.start + 1;
+        while (k < this.end && !isStepStart(this.edits[(int) k & this.mask]))
+            k++;
+        if (k == this.end)
+            this.overflowed = true;
+        this.start = k;
+    }
+
+    private static boolean isStepStart(long edit) {
+        return (edit & STEP_START) != 0;
+    }
+
+    // Returns the code of the given component, null standing for the absence
+    // of tile
+    private static int codeOf(Component c) {
+        return c == null ? NO_TILE : c.ordinal();
+    }
+}
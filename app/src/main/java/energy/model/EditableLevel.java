@@ -16,6 +16,12 @@ public interface EditableLevel extends Observable {
     // Save level
     boolean save();
 
+    // Returns the id of this EditableLevel
+    int getId();
+
+    // Returns the current state of the Circuit of this EditableLevel
+    CircuitSnapshot snapshot();
+
     // Powers off every Tile of the Circuit of this EditableLevel
     void blackout();
     
@@ -41,6 +47,21 @@ public interface EditableLevel extends Observable {
     // Removes the last line of the Circuit of this EditableLevel
     void removeLine();
 
+    // Groups the next edits in a single step of the history until endStep
+    // is called, even if the observers are notified in between
+    void beginStep();
+
+    // Ends the step begun by beginStep: the next edit starts a new one
+    void endStep();
+
+    // Undoes the last step of edits, made between two notifications of the
+    // observers or within beginStep and endStep. Returns false if there is
+    // none.
+    boolean undo();
+
+    // Redoes the last undone step of edits. Returns false if there is none.
+    boolean redo();
+
     // Returns true if the game is finished (all lamps in cricuit are turned on)
     boolean isFinished();
 
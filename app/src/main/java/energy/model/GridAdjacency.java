@@ -0,0 +1,60 @@
+package energy.model;
+
+// The cells touching each side of each cell of a row-major grid, computed
+// once per grid size and tile shape instead of at each neighbor lookup. For
+// a shape with n sides, the cell touching the side s of the cell c is at
+// index c * n + s of the table of the shape, -1 if it is outside the grid.
+final class GridAdjacency {
+
+    private static final TileShape[] SHAPES = TileShape.values();
+
+    // Dimension of the grid
+    private final int height;
+    private final int width;
+
+    // Table of each shape, by shape ordinal, null until needed
+    private final int[][] tables;
+
+    // Initializes a GridAdjacency from given parameters
+    private GridAdjacency(int height, int width) {
+        this.height = height;
+        this.width = width;
+        this.tables = new int[SHAPES.length][];
+    }
+
+    // Returns the GridAdjacency of a grid of the given dimension
+    static GridAdjacency of(int height, int width) {
+        if (height < 0 || width < 0)
+            throw new IllegalArgumentException("Dimension must be positive");
+        return new GridAdjacency(height, width);
+    }
+
+    // Returns the table of the given shape, computing it at the first call
+    int[] of(TileShape shape) {
+        int[] res = this.tables[shape.ordinal()];
+        if (res == null) {
+            res = this.compute(shape);
+            this.tables[shape.ordinal()] = res;
+        }
+        return res;
+    }
+
+    // Computes the table of the given shape
+    private int[] compute(TileShape shape) {
+        int sides = shape.sides();
+        int[] res = new int[this.height * this.width * sides];
+        int k = 0;
+        for (int i = 0; i < this.height; i++) {
+            for (int j = 0; j < this.width; j++) {
+                for (int s = 0; s < sides; s++) {
+                    int ni = i + shape.lineOffset(s, j);
+                    int nj = j + shape.columnOffset(s, j);
+                    boolean inside = ni >= 0 && nj >= 0
+                        && ni < this.height && nj < this.width;
+                    res[k++] = inside ? ni * this.width + nj : -1;
+                }
+            }
+        }
+        return res;
+    }
+}
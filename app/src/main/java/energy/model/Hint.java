@@ -0,0 +1,65 @@
+package energy.model;
+
+import java.util.Objects;
+
+/**
+ * A tile the player should rotate to solve a level, with the number of
+ * rotations that bring it to its orientation in a solution.
+ */
+public final class Hint {
+
+    // Position of the tile to rotate
+    private final Position position;
+
+    // Number of rotations to apply to the tile
+    private final int rotations;
+
+    // Initializes a Hint from given parameters
+    private Hint(Position position, int rotations) {
+        this.position = position;
+        this.rotations = rotations;
+    }
+
+    /**
+     * {@return a new Hint to rotate the tile at the given position the given
+     * number of times}
+     * @throws IllegalArgumentException if the number of rotations is not
+     * positive
+     */
+    public static Hint of(Position position, int rotations) {
+        Objects.requireNonNull(position);
+        if (rotations <= 0)
+            throw new IllegalArgumentException("Rotations must be positive");
+        return new Hint(position, rotations);
+    }
+
+    /**
+     * {@return the position of the tile to rotate}
+     */
+    public Position position() {
+        return this.position;
+    }
+
+    /**
+     * {@return the number of rotations to apply to the tile}
+     */
+    public int rotations() {
+        return this.rotations;
+    }
+
+    @Override public boolean equals(Object other) {
+        if (!(other instanceof Hint))
+            return false;
+        Hint h = (Hint) other;
+        return this.position.equals(h.position)
+            && this.rotations == h.rotations;
+    }
+
+    @Override public int hashCode() {
+        return 31 * this.position.hashCode() + this.rotations;
+    }
+
+    @Override public String toString() {
+        return "rotate " + this.position + " " + this.rotations + " time(s)";
+    }
+}
@@ -0,0 +1,164 @@
+package energy.model;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.ToIntFunction;
+
+// The tiles whose orientation differs from a solution of a level, kept up to
+// date at each rotation so that a hint is found without searching again. The
+// solution is computed once: a rotation only compares the new border mask of
+// the tile with its mask in the solution. The tile at line i and column j is
+// tracked at the cell i * width + j.
+final class HintTracker {
+
+    // Shape of the tiles and width of the board
+    private final TileShape shape;
+    private final int width;
+
+    // Border mask of each cell in the solution, -1 for the cells without a
+    // tile that can rotate
+    private final int[] targets;
+
+    // Current border mask of each cell
+    private final int[] masks;
+
+    // Cells whose mask differs from the solution, in no particular order, and
+    // index of each cell in that array, -1 if its mask is the solution one
+    private final int[] wrong;
+    private final int[] slots;
+    private int wrongCount;
+
+    // Initializes a HintTracker of a board of given dimension, without any
+    // tracked tile
+    private HintTracker(TileShape shape, Dimension dim) {
+        int cells = dim.height * dim.width;
+        this.shape = shape;
+        this.width = dim.width;
+        this.targets = new int[cells];
+        this.masks = new int[cells];
+        this.wrong = new int[cells];
+        this.slots = new int[cells];
+        Arrays.fill(this.targets, -1);
+        Arrays.fill(this.slots, -1);
+    }
+
+    // Returns a HintTracker of a solution of the given snapshot, the tiles
+    // being in the state of the snapshot. A snapshot without solution never
+    // gets any hint. The snapshot can be taken while its Circuit keeps
+    // changing.
+    static HintTracker of(CircuitSnapshot snapshot) {
+        return HintTracker.of(snapshot, () -> false);
+    }
+
+    // Returns a HintTracker of a solution of the given snapshot, as of does,
+    // the search giving up once the given condition holds: the tracker then
+    // never gets any hint
+    static HintTracker of(CircuitSnapshot snapshot, BooleanSupplier stop) {
+        TileShape shape = snapshot.areAllHexagonalTiles()
+            ? TileShape.HEXAGON
+            : TileShape.SQUARE;
+        return HintTracker.of(shape,
+                              snapshot.dimension(),
+                              Solver.of(snapshot).solve(stop),
+                              snapshot::borderMaskAt);
+    }
+
+    // Returns a HintTracker of a solution of the given CircuitState, the
+    // tiles being in the state of the CircuitState, which must not change
+    // during the search
+    static HintTracker of(CircuitState state) {
+        return HintTracker.of(state, () -> false);
+    }
+
+    // Returns a HintTracker of a solution of the given CircuitState, as of
+    // does, the search giving up once the given condition holds: the tracker
+    // then never gets any hint
+    static HintTracker of(CircuitState state, BooleanSupplier stop) {
+        return HintTracker.of(state.shape(),
+                              state.dimension(),
+                              Solver.of(state).solve(stop),
+                              state::borderMaskAt);
+    }
+
+    // Returns a HintTracker of the given solution of a board of given shape
+    // and dimension, as returned by Solver.solve for the border mask of each
+    // position given, null for a board without solution
+    private static HintTracker of(TileShape shape,
+                                  Dimension dim,
+                                  Map<Position, Integer> solution,
+                                  ToIntFunction<Position> masks) {
+        HintTracker res = new HintTracker(shape, dim);
+        if (solution == null)
+            return res;
+        for (Map.Entry<Position, Integer> e: solution.entrySet()) {
+            Position p = e.getKey();
+            int mask = masks.applyAsInt(p);
+            int target = mask;
+            for (int r = e.getValue(); r > 0; r--)
+                target = shape.rotate(target);
+            int cell = res.cellOf(p);
+            res.targets[cell] = target;
+            res.record(cell, mask);
+        }
+        return res;
+    }
+
+    // Returns the cell of the given position
+    private int cellOf(Position p) {
+        return p.getLine() * this.width + p.getColumn();
+    }
+
+    // Records the new border mask of the tile at the given position, ignored
+    // if the tile is not tracked
+    void update(Position p, int mask) {
+        this.update(this.cellOf(p), mask);
+    }
+
+    // Records the new border mask of the tile of the given cell, ignored if
+    // the tile is not tracked
+    void update(int cell, int mask) {
+        if (cell < this.targets.length && this.targets[cell] != -1)
+            this.record(cell, mask);
+    }
+
+    // Records the new border mask of the tracked tile of the given cell
+    private void record(int cell, int mask) {
+        this.masks[cell] = mask;
+        int slot = this.slots[cell];
+        if (mask != this.targets[cell]) {
+            if (slot == -1) {
+                this.slots[cell] = this.wrongCount;
+                this.wrong[this.wrongCount++] = cell;
+            }
+        } else if (slot != -1) {
+            // The last wrong cell takes the place of this one
+            int last = this.wrong[--this.wrongCount];
+            this.wrong[slot] = last;
+            this.slots[last] = slot;
+            this.slots[cell] = -1;
+        }
+    }
+
+    // Returns the number of tiles whose orientation differs from the solution
+    int wrongCount() {
+        return this.wrongCount;
+    }
+
+    // Returns a Hint for a tile whose orientation differs from the solution,
+    // null if there is none
+    Hint next() {
+        if (this.wrongCount == 0)
+            return null;
+        int cell = this.wrong[0];
+        int mask = this.masks[cell];
+        int rotations = 0;
+        while (mask != this.targets[cell]) {
+            mask = this.shape.rotate(mask);
+            rotations++;
+        }
+        return Hint.of(Position.at(cell / this.width, cell % this.width),
+                       rotations);
+    }
+}
@@ -0,0 +1,116 @@
+package energy.model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// The hints of a level: a solution searched in the background, then the tiles
+// differing from it, tracked at each rotation. The search only reads a copy
+// of the board taken by the level; the other methods are called from the
+// thread playing the level, and never wait for the search.
+final class Hints {
+
+    // Single background thread searching the solutions, so that a search
+    // given up by a level never competes with the next one for long
+    private static final ExecutorService EXECUTOR =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "level-hints");
+            t.setDaemon(true);
+            return t;
+        });
+
+    // Tiles differing from the solution, null until the search is over
+    private HintTracker tracker;
+
+    // Search of the solution, null if none was started or once it gave the
+    // tracker
+    private CompletableFuture<HintTracker> search;
+
+    // Set to give up the running search
+    private AtomicBoolean cancelled = new AtomicBoolean();
+
+    // Action to run once the running search is over, null if there is none
+    private AtomicReference<Runnable> pending = new AtomicReference<>();
+
+    // Returns true if a search was started since the creation of these Hints
+    // or their last reset
+    boolean isStarted() {
+        return this.tracker != null || this.search != null;
+    }
+
+    // Starts the given search in the background, giving it a condition that
+    // holds once the search has to be given up
+    void start(Function<BooleanSupplier, HintTracker> search) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicReference<Runnable> pending = new AtomicReference<>();
+        this.cancelled = cancelled;
+        this.pending = pending;
+        this.search = CompletableFuture.supplyAsync(
+            () -> search.apply(cancelled::get), EXECUTOR);
+        this.search.whenComplete((t, e) -> runPending(pending));
+    }
+
+    // Runs the action waiting in the given reference, if any
+    private static void runPending(AtomicReference<Runnable> pending) {
+        Runnable action = pending.getAndSet(null);
+        if (action != null)
+            action.run();
+    }
+
+    // Runs the given action once the search is over, from the thread of the
+    // search, or at once if it is already over. The action replaces the one
+    // given before it during the same search, so that it runs only once.
+    void whenReady(Runnable action) {
+        if (this.search == null) {
+            action.run();
+            return;
+        }
+        this.pending.set(action);
+        // The search may have ended before the action was set
+        if (this.search.isDone())
+            runPending(this.pending);
+    }
+
+    // Returns the tracker of the tiles differing from the solution, null if
+    // the search is not over or failed. When the search just ended, the given
+    // update records in the tracker the tiles rotated since the search
+    // started. A failed search is kept, so that it is not started again.
+    HintTracker tracker(Consumer<HintTracker> update) {
+        if (this.tracker == null && this.search != null
+            && this.search.isDone()
+            && !this.search.isCompletedExceptionally()) {
+            this.tracker = this.search.join();
+            this.search = null;
+            update.accept(this.tracker);
+        }
+        return this.tracker;
+    }
+
+    // Records the new border mask of the tile at the given position, if the
+    // search is over
+    void update(Position p, int mask) {
+        if (this.tracker != null)
+            this.tracker.update(p, mask);
+    }
+
+    // Records in the tracker the border masks of all the tiles with the
+    // given update, if the search is over
+    void updateAll(Consumer<HintTracker> update) {
+        if (this.tracker != null)
+            update.accept(this.tracker);
+    }
+
+    // Forgets the solution, after an edit of the level or once it is left,
+    // giving up the running search, whose pending action never runs
+    void reset() {
+        this.cancelled.set(true);
+        this.pending.set(null);
+        this.tracker = null;
+        this.search = null;
+    }
+}
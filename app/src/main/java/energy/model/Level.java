@@ -5,6 +5,7 @@ import energy.view.Observer;
 import java.awt.Dimension;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 public class Level implements PlayableLevel, EditableLevel {
 	
@@ -16,6 +17,17 @@ public class Level implements PlayableLevel, EditableLevel {
 
     // Observers of this Level
     private final List<Observer> observers = new ArrayList<>();
+
+    // Edits of the Circuit that can be undone
+    private final EditHistory history =
+        new EditHistory(EditHistory.DEFAULT_CAPACITY);
+
+    // Indicates if the edits are grouped in a step until endStep is called,
+    // the notifications of the observers then leaving the step open
+    private boolean stepBegun = false;
+
+    // Hints of this Level, reset by the edits
+    private final Hints hints = new Hints();
 	
 	// Initializes Level from given id and circuit
 	private Level(int id, Circuit circuit) {
@@ -39,16 +51,14 @@ public class Level implements PlayableLevel, EditableLevel {
      * {@return a new Level from a levelConfig object}
      */
 	public static Level fromLevelConfig(LevelConfig lc) {
-		Circuit c = Circuit.empty();
-		for (Tile t : lc.tiles()) {
-			c.addTile(t);
-		}
+		Circuit c = Circuit.of(lc.tiles());
 		if (c.areAllHexagonalTiles()) {
 			Dimension dim = c.dimension();
 			int w = dim.width;
 			int h = dim.height;
-			for (int j = 1; j < w; j += 2) {
-				c.removeTile(Position.at(h - 1, j));
+			for (int j = 0; j < w; j++) {
+				if (!TileShape.HEXAGON.hasCell(h - 1, j, h))
+					c.removeTile(Position.at(h - 1, j));
 			}
 		}
 		return new Level(lc.id(), c);
@@ -62,11 +72,16 @@ public class Level implements PlayableLevel, EditableLevel {
 		return circuit;
 	}
 
-    // Notifies all observers of an update
+    // Notifies all observers of an update. The edits made since the last
+    // notification form a single step of the history, unless a step was
+    // begun with beginStep.
     public void notifyObservers() {
+        if (!this.stepBegun)
+            this.history.endStep();
         for (Observer observer: this.observers) {
             observer.update(this);
         }
+        this.circuit.clearChanges();
     }
 
     // Adds the given observer as a new observer of this Level
@@ -74,9 +89,15 @@ public class Level implements PlayableLevel, EditableLevel {
         this.observers.add(observer);
     }
 
-    // Returns true if the Tile at the given Position rotated.
+    // Returns true if the Tile at the given Position rotated. Only the tiles
+    // connected to it before or after the rotation see their powered state
+    // updated.
     @Override public boolean rotateTileAt(Position position) {
-        return this.circuit.rotateTileAt(position);
+        if (!this.circuit.rotateTileAt(position))
+            return false;
+        this.hints.update(position,
+                          this.circuit.getTileAt(position).borderMask());
+        return true;
     }
 
 	// Returns true if all the lamps of this Level's Circuit are powered on
@@ -87,6 +108,13 @@ public class Level implements PlayableLevel, EditableLevel {
     // Randomly rotates every tile
     public void randomRotations() {
         this.circuit.randomRotations();
+        this.hints.updateAll(this::updateHints);
+    }
+
+    // Records the border mask of every tile in the given HintTracker
+    private void updateHints(HintTracker tracker) {
+        for (Tile t: this.circuit.getTiles())
+            tracker.update(t.position(), t.borderMask());
     }
 
     public void blackout() {
@@ -97,20 +125,105 @@ public class Level implements PlayableLevel, EditableLevel {
         this.circuit.propagateElectricity();
     }
 
+    @Override
+    public void prepareHints() {
+        if (!this.hints.isStarted()) {
+            CircuitSnapshot snapshot = this.circuit.snapshot();
+            this.hints.start(stop -> HintTracker.of(snapshot, stop));
+        }
+    }
+
+    @Override
+    public void whenHintsReady(Runnable action) {
+        this.prepareHints();
+        this.hints.whenReady(action);
+    }
+
+    @Override
+    public void cancelHints() {
+        this.hints.reset();
+    }
+
+    @Override
+    public Hint hint() {
+        if (this.isFinished())
+            return null;
+        this.prepareHints();
+        // Tiles may have rotated since the search started
+        HintTracker tracker = this.hints.tracker(this::updateHints);
+        return tracker == null ? null : tracker.next();
+    }
+
 	@Override
 	public boolean connectSideOfTileAt(Position p, int index) {
-		return circuit.connectSideOfTileAt(p, index);
+		return this.recordEdit(p, () -> circuit.connectSideOfTileAt(p, index));
 	}
 
 	@Override
 	public boolean disconnectSideOfTileAt(Position p, int index) {
-		return circuit.disconnectSideOfTileAt(p, index);
+		return this.recordEdit(p,
+			() -> circuit.disconnectSideOfTileAt(p, index));
 	}
 
 
 	@Override
 	public boolean setTileComponentTo(Position p, Component c) {
-		return this.circuit.setTileComponentTo(p, c);
+		return this.recordEdit(p, () -> this.circuit.setTileComponentTo(p, c));
+	}
+
+	// Makes the given edit of the tile at the given position, recording it in
+	// the history if it was made
+	private boolean recordEdit(Position p, BooleanSupplier edit) {
+		Tile t = this.circuit.getTileAt(p);
+		this.hints.reset();
+		if (t == null)
+			return edit.getAsBoolean();
+		Component oldComponent = t.component();
+		int oldMask = t.borderMask();
+		boolean res = edit.getAsBoolean();
+		if (res) {
+			this.history.record(p, t.shape(), oldComponent, oldMask,
+								t.component(), t.borderMask());
+		}
+		return res;
+	}
+
+	// Makes the given edit of the whole Circuit, recording in the history the
+	// tiles it changed
+	private void recordEdit(Runnable edit) {
+		CircuitSnapshot before = this.circuit.snapshot();
+		this.hints.reset();
+		edit.run();
+		this.history.recordChanges(before, this.circuit.snapshot());
+	}
+
+	@Override
+	public void beginStep() {
+		this.history.endStep();
+		this.stepBegun = true;
+	}
+
+	@Override
+	public void endStep() {
+		this.history.endStep();
+		this.stepBegun = false;
+	}
+
+	@Override
+	public boolean undo() {
+		this.hints.reset();
+		return this.history.undo(this.circuit);
+	}
+
+	@Override
+	public boolean redo() {
+		this.hints.reset();
+		return this.history.redo(this.circuit);
+	}
+
+	@Override
+	public CircuitSnapshot snapshot() {
+		return this.circuit.snapshot();
 	}
 
 	@Override
@@ -125,33 +238,34 @@ public class Level implements PlayableLevel, EditableLevel {
 
 	@Override
 	public void clearCircuit() {
-		this.circuit.clear();
+		this.recordEdit(() -> this.circuit.clear());
 	}
 
 	// Clears the Tile at the given Position in the Circuit of this Level, if 
 	// any
 	public boolean clearTileAt(Position position) {
-		return this.circuit.clearTileAt(position);
+		return this.recordEdit(position,
+			() -> this.circuit.clearTileAt(position));
 	}
 
 	// Adds a column to the Circuit of this Level
 	public void removeColumn() {
-		this.circuit.removeColumn();
+		this.recordEdit(() -> this.circuit.removeColumn());
 	}
 	
 	// Removes a column from the Circuit of this Level
 	public void addColumn() {
-		this.circuit.addColumn();
+		this.recordEdit(() -> this.circuit.addColumn());
 	}
 
 	// Adds a line to the Circuit of this Level
 	public void addLine() {
-		this.circuit.addLine();
+		this.recordEdit(() -> this.circuit.addLine());
 	}
 	
 	// Removes the last line of the Circuit of this Level
 	public void removeLine() {
-		this.circuit.removeLine();
+		this.recordEdit(() -> this.circuit.removeLine());
 	}
 
 	@Override
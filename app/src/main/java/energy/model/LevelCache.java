@@ -0,0 +1,215 @@
+package energy.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The levels last read from files, so that reopening a level does not parse
+ * its file again. A level is kept with a SHA-256 digest of the content of its
+ * file: the file is read at each call, but only parsed again when its content
+ * changed, even if its size and modification time did not, as when a level
+ * is saved twice within the precision of the file times. The least recently
+ * used level is forgotten when the cache is full.
+ * <p>
+ * The LevelPacks opened by packOf are kept too, one per pack file, so that
+ * each pack is mapped once rather than at each level read from it.
+ * <p>
+ * Levels are kept in the binary .nrgb format, a byte per tile, and a new
+ * LevelConfig is decoded at each call to get: the LevelConfigs returned can
+ * be modified freely. A LevelCache can be used from several threads.
+ */
+public final class LevelCache {
+
+    /**
+     * The number of levels kept by default.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    // A level read from a file, and the digest of the file when it was read
+    private static final class Entry {
+        private final byte[] digest;
+        private final byte[] content;
+        private final long fingerprint;
+
+        private Entry(byte[] digest, LevelConfig lc) {
+            this.digest = digest;
+            this.content = lc.toBinary();
+            this.fingerprint = lc.fingerprint();
+        }
+    }
+
+    // A pack opened from a file, and the state of the file when it was opened
+    private static final class PackEntry {
+        private final FileTime modified;
+        private final long size;
+        private final LevelPack pack;
+
+        private PackEntry(BasicFileAttributes attributes, LevelPack pack) {
+            this.modified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+            this.pack = pack;
+        }
+
+        // Returns true if the file is still in the given state
+        private boolean isUpToDate(BasicFileAttributes attributes) {
+            return this.modified.equals(attributes.lastModifiedTime())
+                && this.size == attributes.size();
+        }
+    }
+
+    // Levels by path, from the least to the most recently used
+    private final Map<Path, Entry> entries;
+
+    // Packs by path
+    private final Map<Path, PackEntry> packs = new HashMap<>();
+
+    // Number of calls to get answered from the cache, and from the file
+    private int hits;
+    private int misses;
+
+    // Initializes an empty LevelCache keeping the given number of levels
+    private LevelCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, Entry> e) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * {@return a new empty LevelCache keeping the given number of levels}
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public static LevelCache of(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        return new LevelCache(capacity);
+    }
+
+    /**
+     * {@return the level of the file at the given path, read as by
+     * LevelConfig.fromFile if it is not in the cache or if the file changed
+     * since, null if it can not be read}
+     * @throws LevelFormatException if the content of the file is not valid
+     */
+    public LevelConfig get(Path path) {
+        Entry entry = this.entryOf(path);
+        if (entry == null)
+            return null;
+        return LevelConfig.fromBinary(ByteBuffer.wrap(entry.content));
+    }
+
+    /**
+     * {@return the fingerprint of the level of the file at the given path, as
+     * in LevelConfig.fingerprint, reading the file if needed}
+     * @throws IllegalArgumentException if the file can not be read
+     * @throws LevelFormatException if the content of the file is not valid
+     */
+    public long fingerprintOf(Path path) {
+        Entry entry = this.entryOf(path);
+        if (entry == null)
+            throw new IllegalArgumentException("Can not read " + path);
+        return entry.fingerprint;
+    }
+
+    /**
+     * {@return the LevelPack of the file at the given path, opened at the
+     * first call and then reused while the size and the modification time of
+     * the file do not change, null if it can not be read}
+     * Packs are only written as a whole by LevelPack.write, offline, so
+     * unlike levels they are not compared by content.
+     * @throws LevelFormatException if the file is not a valid level pack
+     */
+    public LevelPack packOf(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        } catch (IOException e) {
+            synchronized (this) {
+                this.packs.remove(key);
+            }
+            return null;
+        }
+        synchronized (this) {
+            PackEntry entry = this.packs.get(key);
+            if (entry != null && entry.isUpToDate(attributes))
+                return entry.pack;
+        }
+        LevelPack pack;
+        try {
+            pack = LevelPack.open(key);
+        } catch (IOException e) {
+            return null;
+        }
+        synchronized (this) {
+            this.packs.put(key, new PackEntry(attributes, pack));
+        }
+        return pack;
+    }
+
+    /**
+     * Forgets the level of the file at the given path, if any.
+     */
+    public synchronized void invalidate(Path path) {
+        this.entries.remove(path.toAbsolutePath().normalize());
+    }
+
+    // Returns the entry of the file at the given path, reading the file if
+    // needed, null if it can not be read
+    private Entry entryOf(Path path) {
+        Path key = path.toAbsolutePath().normalize();
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(key);
+        } catch (IOException e) {
+            this.invalidate(key);
+            return null;
+        }
+        byte[] digest = digestOf(bytes);
+        synchronized (this) {
+            Entry entry = this.entries.get(key);
+            if (entry != null && Arrays.equals(entry.digest, digest)) {
+                this.hits++;
+                return entry;
+            }
+            this.misses++;
+        }
+        // The file is parsed without holding the lock
+        Entry entry = new Entry(digest, LevelConfig.fromFile(key, bytes));
+        synchronized (this) {
+            this.entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    // Returns the SHA-256 digest of the given bytes
+    private static byte[] digestOf(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e); // every platform provides SHA-256
+        }
+    }
+
+    // Returns the number of calls answered from the cache
+    synchronized int hits() {
+        return this.hits;
+    }
+
+    // Returns the number of calls that read a file
+    synchronized int misses() {
+        return this.misses;
+    }
+}
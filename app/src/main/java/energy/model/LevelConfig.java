@@ -2,18 +2,30 @@ package energy.model;
 
 import java.awt.*;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 import energy.App;
 
 public class LevelConfig {
 	public static final String PLAYABLE_LEVEL_PATH_PREFIX = "playable";
 	public static final String EDITABLE_LEVEL_PATH_PREFIX = "editable";
+	public static final String AUTOSAVE_PATH_PREFIX = "autosave";
 	public static final String LEVEL_FILE_BASE_NAME = "level";
 	public static final String FILE_FORMAT = ".nrg";	
+	public static final String BINARY_FILE_FORMAT = ".nrgb";
+
+	// Parameters of the FNV-1a hash of the fingerprints
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 
     // height of circuit
 	private int height;
@@ -30,11 +42,6 @@ public class LevelConfig {
 	// List of tiles contained in this LevelConfig
 	private final ArrayList<Tile> tiles;
 	
-	// Initializes empty LevelConfig
-	private LevelConfig() {	
-		this.tiles = new ArrayList<>();
-	}
-	
 	// Initializes LevelConfig with given parameters
 	private LevelConfig(int height,
     					int width,
@@ -48,6 +55,27 @@ public class LevelConfig {
 		this.tiles = tiles;
 	}
 
+	/**
+	 * {@return a new LevelConfig from given parameters}
+	 * @throws IllegalArgumentException if the dimension or the id is
+	 * negative, or if the shape or the tiles are null
+	 */
+	public static LevelConfig of(int height,
+								 int width,
+								 int id,
+								 TileShape shape,
+								 ArrayList<Tile> tiles) {
+		if (height < 0 || width < 0)
+			throw new IllegalArgumentException("Dimension must be positive");
+		else if (id < 0)
+			throw new IllegalArgumentException("Id must be positive");
+		else if (shape == null || tiles == null)
+			throw new IllegalArgumentException(
+				"Shape and tiles can not be null");
+		else
+			return new LevelConfig(height, width, id, shape, tiles);
+	}
+
 	public static LevelConfig fromLevel(Level l) {
 		// Get id
 		int id = l.getId();
@@ -67,107 +95,242 @@ public class LevelConfig {
 		return new LevelConfig(height, width, id, ts, circuit.getTiles());
 	}
 
+	/**
+	 * {@return the LevelConfig described by the file at the given path, null
+	 * if it can not be read}
+	 * Files ending with .nrgb are read in the binary format, the others in the
+	 * .nrg format. The id of a .nrg level is the number in its file name when
+	 * it is of the form levelINTEGER.nrg, 0 otherwise.
+	 * @throws LevelFormatException if the content of the file is not valid
+	 */
 	public static LevelConfig fromFile(String filepath) {
-		LevelConfig res = new LevelConfig();
-		// Step 1 : Convert file to list of string lines
-		ArrayList<String> lines = new ArrayList<>();
-		try {
-            File file = new File(filepath);
-            Scanner sc = new Scanner(file);
-            while (sc.hasNextLine())
-                lines.add(sc.nextLine());
-            sc.close();
-        } catch (Exception e) {
-            return null;
-        }
-		
+		Path path;
+		byte[] content;
 		try {
-			// Step 2 : Initialize id from filename
-			res.id = Integer.parseInt(filepath.replaceAll("[^0-9]", ""));
-			
-			// Step 3 : initialize attributes iterating on lines 
-			for(int num_line = 0; num_line < lines.size(); num_line ++) {
-				String currentString = lines.get(num_line);
-				String[] tokens = currentString.split(" ");
-				
-				// Width / Height / Shape
-				if(num_line == 0) {
-					res.height = Integer.parseInt(tokens[0]);
-					res.width = Integer.parseInt(tokens[1]);
-					if(tokens[2].equals("H"))
-						res.shape = TileShape.HEXAGON;
-					if(tokens[2].equals("S"))
-						res.shape = TileShape.SQUARE;
-				} else { // Tiles construction
-					int column = 0;
-					Component currentComponent = null;
-					ArrayList<Integer> currentConnectedSides =
-							new ArrayList<>();
-					for(String token : tokens) {
-						if(token.equals(".") || token.equals("L") || token.equals("S") || token.equals("W")) {
-							if(currentComponent!=null) {
-								Tile t = Tile.of(res.shape, Position.at(num_line - 1, column), currentComponent);
-								for(int i : currentConnectedSides) {
-									t.connect(i);
-								}								
-								res.tiles.add(t);
-								column++;
-								currentComponent = Component.componentFromDiminutive(token);
-								currentConnectedSides = new ArrayList<>();
-							}
-							else {
-								currentComponent = Component.componentFromDiminutive(token);
-							}
-						}
-						else {
-							currentConnectedSides.add(Integer.valueOf(token));
-						}
-					}
-					
-					Tile t = Tile.of(res.shape, Position.at(num_line - 1, column), currentComponent);
-					for(int i : currentConnectedSides) {
-						t.connect(i);
-					}					
-					res.tiles.add(t);
-				}
-			}
-		} catch(Exception e) {
-			e.printStackTrace();
-			System.exit(1);
+			path = Path.of(filepath);
+			content = Files.readAllBytes(path);
+		} catch (Exception e) {
+			return null;
+		}
+		return LevelConfig.fromFile(path, content);
+	}
+
+	// Returns the LevelConfig described by the given content of the file at
+	// the given path, read as by fromFile
+	// Throws LevelFormatException if the content is not valid
+	static LevelConfig fromFile(Path path, byte[] content) {
+		String name = path.getFileName().toString();
+		if (name.endsWith(BINARY_FILE_FORMAT))
+			return LevelConfig.fromBinary(ByteBuffer.wrap(content));
+		int id = LevelConfig.idOf(name);
+		return LevelConfig.fromBytes(ByteBuffer.wrap(content), Math.max(id, 0));
+	}
+
+	/**
+	 * {@return the LevelConfig with the given id described by the remaining
+	 * bytes of the given buffer, in the .nrg format}
+	 * @throws LevelFormatException if the content is not valid
+	 */
+	public static LevelConfig fromBytes(ByteBuffer content, int id) {
+		return NrgParser.parse(content, id);
+	}
+
+	/**
+	 * {@return the LevelConfig described by the remaining bytes of the given
+	 * buffer, in the binary .nrgb format}
+	 * @throws LevelFormatException if the content is not valid
+	 */
+	public static LevelConfig fromBinary(ByteBuffer content) {
+		return NrgbCodec.decode(content);
+	}
+
+	/**
+	 * {@return the id of the level stored in the file of given name, of the
+	 * form levelINTEGER.nrg or levelINTEGER.nrgb, -1 for other names}
+	 */
+	public static int idOf(String fileName) {
+		String ext;
+		if (fileName.endsWith(FILE_FORMAT))
+			ext = FILE_FORMAT;
+		else if (fileName.endsWith(BINARY_FILE_FORMAT))
+			ext = BINARY_FILE_FORMAT;
+		else
+			return -1;
+		int end = fileName.length() - ext.length();
+		if (!fileName.startsWith(LEVEL_FILE_BASE_NAME)
+			|| end <= LEVEL_FILE_BASE_NAME.length()
+			|| end - LEVEL_FILE_BASE_NAME.length() > 9)
+			return -1;
+		int res = 0;
+		for (int i = LEVEL_FILE_BASE_NAME.length(); i < end; i++) {
+			char c = fileName.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			res = res * 10 + (c - '0');
 		}
 		return res;
 	}
 	
 	private String toFileContent() {
-		StringBuilder content = new StringBuilder();
+		StringWriter content = new StringWriter();
+		try {
+			this.writeTo(content);
+		} catch (IOException e) {
+			throw new AssertionError(e); // a StringWriter never fails
+		}
+		return content.toString();
+	}
+
+	/**
+	 * Writes this LevelConfig to the given writer, in the .nrg format.
+	 * Positions without tile are written as empty tiles.
+	 * @throws IOException if the writer fails
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		Tile[] grid = this.toGrid();
 
 		// Write first line => height, width and shape
-		Circuit c = Circuit.empty();
-		for(Tile t : tiles) {
-			c.addTile(t);
-		}
-		Dimension dim = c.dimension();
-		this.height = dim.height;
-		this.width = dim.width;
-
-		content
-				.append(height)
-				.append(" ")
-				.append(width)
-				.append(" ")
-				.append(shape.fileIdentifier())
-				.append("\n");
-		
+		writer.write(height + " " + width + " " + shape.fileIdentifier());
+		writer.write('\n');
+
+		// Lines are built apart since writing char by char is slow
+		StringBuilder line = new StringBuilder();
 		for (int i = 0; i < this.height; i++) {
+			line.setLength(0);
 			for (int j = 0; j < this.width; j++) {
-				Tile cur = c.getTileAt(Position.at(i, j));
-				String rep = (cur == null) ? "." : cur.levelRep();
-				content.append(rep);
-				if (j == this.width - 1) content.append("\n");
-				else content.append(" ");
+				Tile cur = grid[i * this.width + j];
+				if (cur == null)
+					line.append('.');
+				else
+					this.appendTile(line, cur);
+				line.append(j == this.width - 1 ? '\n' : ' ');
 			}
+			writer.append(line);
+		}
+	}
+
+	/**
+	 * {@return the content of this LevelConfig in the binary .nrgb format}
+	 * Positions without tile are written as empty tiles.
+	 */
+	public byte[] toBinary() {
+		Tile[] grid = this.toGrid();
+		return NrgbCodec.encode(this.height, this.width, this.id, this.shape,
+								grid);
+	}
+
+	/**
+	 * {@return a hash of the puzzle described by this LevelConfig}
+	 * Levels whose tiles only differ by their rotations describe the same
+	 * puzzle and have the same fingerprint: the hash covers the shape, the
+	 * dimension, and the component and the border mask of each tile, the
+	 * border mask of a tile that can rotate being replaced by its smallest
+	 * rotation. The id is not hashed. Positions without tile are hashed as
+	 * empty tiles, as they are written to files, and so are the tiles out of
+	 * the cells of the board given by TileShape.hasCell.
+	 */
+	public long fingerprint() {
+		Tile[] grid = this.toGrid();
+		long h = FNV_OFFSET;
+		h = fnv(h, this.shape.ordinal());
+		h = fnv(h, this.height);
+		h = fnv(h, this.width);
+		for (int k = 0; k < grid.length; k++)
+			h = fnv(h, this.puzzleCode(grid, k));
+		// Final mix of murmur3, spreading the last values over all the bits
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		return h ^ h >>> 33;
+	}
+
+	/**
+	 * {@return true if the given LevelConfig describes the same puzzle as
+	 * this one}
+	 * The tiles are compared as they are hashed by fingerprint, so levels of
+	 * different fingerprints never describe the same puzzle, while levels of
+	 * the same fingerprint may not.
+	 */
+	public boolean isSamePuzzle(LevelConfig other) {
+		if (this.shape != other.shape || this.height != other.height
+			|| this.width != other.width)
+			return false;
+		Tile[] grid = this.toGrid();
+		Tile[] otherGrid = other.toGrid();
+		for (int k = 0; k < grid.length; k++) {
+			if (this.puzzleCode(grid, k) != other.puzzleCode(otherGrid, k))
+				return false;
+		}
+		return true;
+	}
+
+	// Returns the code of the tile of index k of the given grid in the
+	// puzzle: its component and its border mask, the smallest rotation of it
+	// if the tile can rotate. Positions without tile and the tiles out of the
+	// cells of the board have the code of an empty tile.
+	private int puzzleCode(Tile[] grid, int k) {
+		Tile t = grid[k];
+		if (t == null || !this.shape.hasCell(k / this.width,
+											 k % this.width,
+											 this.height))
+			return Component.EMPTY.ordinal();
+		int mask = t.borderMask();
+		if (t.canRotate())
+			mask = this.shape.smallestRotation(mask);
+		return t.component().ordinal() << 8 | mask;
+	}
+
+	// Returns the given FNV-1a hash extended with the given value
+	private static long fnv(long h, int value) {
+		for (int k = 0; k < Integer.BYTES; k++) {
+			h = (h ^ (value & 0xFF)) * FNV_PRIME;
+			value >>>= 8;
+		}
+		return h;
+	}
+
+	// Computes height and width from the tiles, and returns the tiles placed
+	// line by line on a grid of that dimension
+	private Tile[] toGrid() {
+		this.height = 0;
+		this.width = 0;
+		for (Tile t : tiles) {
+			this.height = Math.max(this.height, t.getLine() + 1);
+			this.width = Math.max(this.width, t.getColumn() + 1);
+		}
+		Tile[] grid = new Tile[this.height * this.width];
+		for (Tile t : tiles) {
+			grid[t.getLine() * this.width + t.getColumn()] = t;
+		}
+		return grid;
+	}
+
+	// Appends the given tile as in Tile.levelRep, without building a string
+	private void appendTile(StringBuilder line, Tile t) {
+		line.append(t.component().getDiminutive());
+		for (int i = 0; i < t.length(); i++) {
+			if (t.side(i))
+				line.append(' ').append(i);
+		}
+	}
+
+	/**
+	 * Writes this LevelConfig to the file at the given path, replacing its
+	 * content if it exists. The binary format is used if the name of the file
+	 * ends with .nrgb, the .nrg format otherwise, so that a level is converted
+	 * from a format to the other with fromFile and saveTo.
+	 * @throws IOException if the file can not be written
+	 */
+	public void saveTo(Path path) throws IOException {
+		if (path.toString().endsWith(BINARY_FILE_FORMAT)) {
+			Files.write(path, this.toBinary());
+			return;
+		}
+		try (Writer writer =
+				 Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			this.writeTo(writer);
 		}
-		return content.toString();
 	}
 	
 	public void save() {
@@ -193,10 +356,30 @@ public class LevelConfig {
 	}
 	
 	private void saveFile(File file, String content) throws IOException {
-		file.createNewFile();
-		FileWriter writer = new FileWriter(file);
-		writer.write(content);
-		writer.close();
+		writeAtomically(file.toPath(),
+						content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Replaces the content of the file at the given path by the given bytes,
+	// creating its directories as needed. The bytes are written to a
+	// temporary file moved over the file, so that a crash never leaves it
+	// half written.
+	static void writeAtomically(Path path, byte[] content) throws IOException {
+		Path dir = path.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path tmp = Files.createTempFile(dir, path.getFileName().toString(),
+										".tmp");
+		try {
+			Files.write(tmp, content);
+			try {
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+						   StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
 	}
 	
 	// Getters / setters
@@ -208,6 +391,14 @@ public class LevelConfig {
 		return shape;
 	}
 
+	public int height() {
+		return height;
+	}
+
+	public int width() {
+		return width;
+	}
+
 	public ArrayList<Tile> tiles() {
 		return tiles;
 	}
@@ -0,0 +1,53 @@
+package energy.model;
+
+/**
+ * To be thrown when the content of a level file is not valid.
+ */
+public class LevelFormatException extends RuntimeException {
+
+    // Line and column of the error, starting from 1
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates a new LevelFormatException for an error at the given line and
+     * column of the file, both starting from 1.
+     *
+     * @param message the description of the error.
+     * @param line the line of the error.
+     * @param column the column of the error.
+     */
+    public LevelFormatException(String message, int line, int column) {
+        super("line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Creates a new LevelFormatException for an error at the given offset of
+     * a binary level file. The line is then 0 and the column is the offset
+     * plus 1.
+     *
+     * @param message the description of the error.
+     * @param offset the offset of the error in the file.
+     */
+    public LevelFormatException(String message, long offset) {
+        super("byte " + offset + ": " + message);
+        this.line = 0;
+        this.column = (int) Math.min(Integer.MAX_VALUE, offset + 1);
+    }
+
+    /**
+     * {@return the line of the error, starting from 1, 0 for binary files}
+     */
+    public int line() {
+        return this.line;
+    }
+
+    /**
+     * {@return the column of the error, starting from 1}
+     */
+    public int column() {
+        return this.column;
+    }
+}
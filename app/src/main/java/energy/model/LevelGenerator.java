@@ -0,0 +1,265 @@
+package energy.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates random levels which can always be solved.
+ * <p>
+ * The cables of a generated level form a random spanning tree of its grid:
+ * a source is placed on one tile and a lamp on every other leaf, so that the
+ * level is solved in the orientation it is generated in. Hotspots are placed
+ * by cutting edges of the tree, both ends of a cut edge becoming hotspots
+ * which keep the two parts linked wirelessly.
+ * <p>
+ * On hexagonal levels, the tiles on the last line and an odd column are left
+ * empty since they are not part of the level once loaded.
+ */
+public final class LevelGenerator {
+
+    // Dimension of the generated levels
+    private final int height;
+    private final int width;
+
+    // Shape of the tiles of the generated levels
+    private final TileShape shape;
+
+    // Number of pairs of hotspots placed in each level
+    private final int hotspotPairs;
+
+    // Edges are numbered (c << SIDE_BITS) | s for the side s of the cell c,
+    // cells being numbered line by line. Shifts are used rather than
+    // divisions since edges are decoded in the hot loop of the generation.
+    private static final int SIDE_BITS = 3;
+
+    // Cell at the other end of each edge, -1 if none
+    private final int[] neighbors;
+
+    // Initializes a LevelGenerator from given parameters
+    private LevelGenerator(int height,
+                           int width,
+                           TileShape shape,
+                           int hotspotPairs,
+                           int[] neighbors) {
+        this.height = height;
+        this.width = width;
+        this.shape = shape;
+        this.hotspotPairs = hotspotPairs;
+        this.neighbors = neighbors;
+    }
+
+    /**
+     * {@return a new LevelGenerator of levels without hotspots}
+     * @throws IllegalArgumentException if the dimension is not positive, if
+     * a hexagonal level has a single line and several columns or if the shape
+     * is null
+     */
+    public static LevelGenerator of(int height, int width, TileShape shape) {
+        if (height <= 0 || width <= 0)
+            throw new IllegalArgumentException("Dimension must be positive");
+        else if (shape == null)
+            throw new IllegalArgumentException("Shape can not be null");
+        else if (shape == TileShape.HEXAGON && height == 1 && width > 1)
+            throw new IllegalArgumentException(
+                "Hexagonal levels need at least two lines");
+        else
+            return new LevelGenerator(height, width, shape, 0,
+                                      neighbors(height, width, shape));
+    }
+
+    /**
+     * {@return a LevelGenerator placing the given number of hotspot pairs
+     * in each level, when the circuit allows it}
+     * @throws IllegalArgumentException if the number is negative
+     */
+    public LevelGenerator withHotspotPairs(int pairs) {
+        if (pairs < 0)
+            throw new IllegalArgumentException(
+                "Number of hotspots must be positive");
+        return new LevelGenerator(this.height, this.width, this.shape, pairs,
+                                  this.neighbors);
+    }
+
+    /**
+     * {@return a new random LevelConfig with the given id}
+     */
+    public LevelConfig generate(int id, Random random) {
+        // The many draws are made with a generator which is faster than
+        // Random, seeded by the given one
+        SplittableRandom rnd = new SplittableRandom(random.nextLong());
+        int sides = this.shape.sides();
+        int[] borders = new int[this.height * this.width];
+        int[] edges = this.spanningTree(borders, rnd);
+        Component[] components = new Component[borders.length];
+        Arrays.fill(components, Component.EMPTY);
+
+        int source = this.randomCell(rnd);
+        components[source] = Component.SOURCE;
+        for (int c = 0; c < borders.length; c++) {
+            if (c != source && Integer.bitCount(borders[c]) == 1)
+                components[c] = Component.LAMP;
+        }
+        this.placeHotspots(edges, borders, components, rnd);
+
+        ArrayList<Tile> tiles = new ArrayList<>(borders.length);
+        for (int c = 0; c < borders.length; c++) {
+            Tile t = Tile.of(this.shape,
+                             Position.at(c / this.width, c % this.width),
+                             components[c]);
+            for (int s = 0; s < sides; s++) {
+                if ((borders[c] & (1 << s)) != 0)
+                    t.connect(s);
+            }
+            tiles.add(t);
+        }
+        return LevelConfig.of(this.height, this.width, id, this.shape, tiles);
+    }
+
+    /**
+     * Generates count levels with consecutive ids starting from firstId, and
+     * saves each of them in the given directory as soon as it is generated.
+     * Levels are generated in parallel; each one only depends on the seed
+     * and on its id, so that it can be generated again alone with
+     * {@code generate(id, LevelGenerator.randomFor(seed, id))}.
+     * @throws IOException if a level can not be saved
+     */
+    public void generateTo(Path directory, int firstId, int count, long seed)
+        throws IOException {
+        Files.createDirectories(directory);
+        try {
+            IntStream.range(firstId, firstId + count).parallel().forEach(id -> {
+                String name = LevelConfig.LEVEL_FILE_BASE_NAME
+                    + id
+                    + LevelConfig.FILE_FORMAT;
+                try {
+                    this.generate(id, randomFor(seed, id))
+                        .saveTo(directory.resolve(name));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * {@return the Random used by generateTo for the level with the given
+     * id in a batch generated from the given seed}
+     */
+    public static Random randomFor(long seed, int id) {
+        return new Random(seed * 0x9E3779B97F4A7C15L + id);
+    }
+
+    // Computes the cell touching each side of each cell of the levels of the
+    // given dimension and shape
+    private static int[] neighbors(int height, int width, TileShape shape) {
+        int sides = shape.sides();
+        int[] res = new int[(height * width) << SIDE_BITS];
+        Arrays.fill(res, -1);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (!shape.hasCell(i, j, height))
+                    continue;
+                for (int s = 0; s < sides; s++) {
+                    int ni = i + shape.lineOffset(s, j);
+                    int nj = j + shape.columnOffset(s, j);
+                    if (ni >= 0 && nj >= 0 && ni < height && nj < width
+                        && shape.hasCell(ni, nj, height))
+                        res[((i * width + j) << SIDE_BITS) | s] =
+                            ni * width + nj;
+                }
+            }
+        }
+        return res;
+    }
+
+    // Returns a random cell belonging to the generated levels
+    private int randomCell(SplittableRandom random) {
+        int c = random.nextInt(this.height * this.width);
+        while (!this.shape.hasCell(c / this.width, c % this.width,
+                                   this.height))
+            c = random.nextInt(this.height * this.width);
+        return c;
+    }
+
+    // Connects the cells along a random spanning tree, filling their border
+    // masks, and returns its edges
+    private int[] spanningTree(int[] borders, SplittableRandom random) {
+        boolean[] inTree = new boolean[borders.length];
+        int[] frontier = new int[borders.length << SIDE_BITS];
+        int[] edges = new int[borders.length];
+        int frontierSize = 0;
+        int edgeCount = 0;
+
+        int start = this.randomCell(random);
+        inTree[start] = true;
+        frontierSize = this.pushEdges(start, inTree, frontier, frontierSize);
+
+        // Picking the next edge at random in the frontier grows the tree in
+        // every direction instead of carving long corridors
+        while (frontierSize > 0) {
+            int k = random.nextInt(frontierSize);
+            int edge = frontier[k];
+            frontier[k] = frontier[--frontierSize];
+            int n = this.neighbors[edge];
+            if (inTree[n])
+                continue;
+            inTree[n] = true;
+            int s = edge & ((1 << SIDE_BITS) - 1);
+            borders[edge >>> SIDE_BITS] |= 1 << s;
+            borders[n] |= 1 << this.shape.opposite(s);
+            edges[edgeCount++] = edge;
+            frontierSize = this.pushEdges(n, inTree, frontier, frontierSize);
+        }
+        return Arrays.copyOf(edges, edgeCount);
+    }
+
+    // Adds to the frontier the edges from the cell c to the cells not yet in
+    // the tree, and returns the new size of the frontier
+    private int pushEdges(int c, boolean[] inTree, int[] frontier, int size) {
+        int first = c << SIDE_BITS;
+        for (int edge = first; edge < first + this.shape.sides(); edge++) {
+            int n = this.neighbors[edge];
+            if (n != -1 && !inTree[n])
+                frontier[size++] = edge;
+        }
+        return size;
+    }
+
+    // Cuts random edges of the tree between two empty cells, which both keep
+    // at least one cable, and turns their ends into hotspots
+    private void placeHotspots(int[] edges,
+                               int[] borders,
+                               Component[] components,
+                               SplittableRandom random) {
+        int placed = 0;
+        for (int k = 0; k < edges.length && placed < this.hotspotPairs; k++) {
+            int r = k + random.nextInt(edges.length - k);
+            int edge = edges[r];
+            edges[r] = edges[k];
+            edges[k] = edge;
+
+            int c = edge >>> SIDE_BITS;
+            int s = edge & ((1 << SIDE_BITS) - 1);
+            int n = this.neighbors[edge];
+            if (components[c] != Component.EMPTY
+                || components[n] != Component.EMPTY
+                || Integer.bitCount(borders[c]) < 2
+                || Integer.bitCount(borders[n]) < 2)
+                continue;
+            borders[c] &= ~(1 << s);
+            borders[n] &= ~(1 << this.shape.opposite(s));
+            components[c] = Component.HOTSPOT;
+            components[n] = Component.HOTSPOT;
+            placed++;
+        }
+    }
+}
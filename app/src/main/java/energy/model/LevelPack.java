@@ -0,0 +1,199 @@
+package energy.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A single file holding many levels, each of which can be read by id without
+ * reading the others.
+ * <p>
+ * The file starts with a 24 bytes header: the magic number "NRGP", the
+ * version of the format, 3 bytes of padding, the offset of the index as a
+ * long, the smallest id of the pack and the number of entries of the index as
+ * ints. The levels follow, each one in the binary .nrgb format. The index is
+ * at the end of the file: the entry k gives the offset and the length of the
+ * level of id smallest id + k, as a long and an int, and a length of 0 if the
+ * pack has no such level. All numbers are big-endian.
+ * <p>
+ * The file is mapped in memory when the pack is opened, so reading a level
+ * only decodes its own bytes.
+ */
+public final class LevelPack {
+
+    /**
+     * The extension of level pack files.
+     */
+    public static final String FILE_FORMAT = ".nrgp";
+
+    // Magic number and version at the start of the file
+    private static final byte[] MAGIC = {'N', 'R', 'G', 'P'};
+    private static final byte VERSION = 1;
+
+    // Size of the header and of an entry of the index
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = Long.BYTES + Integer.BYTES;
+
+    // Content of the pack file
+    private final ByteBuffer content;
+
+    // Id of the level of the first entry of the index, and number of entries
+    private final int firstId;
+    private final int entries;
+
+    // Offset of the index in the content
+    private final int indexOffset;
+
+    // Initializes a LevelPack from given parameters
+    private LevelPack(ByteBuffer content,
+                      int firstId,
+                      int entries,
+                      int indexOffset) {
+        this.content = content;
+        this.firstId = firstId;
+        this.entries = entries;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * {@return the LevelPack stored in the file at the given path}
+     * @throws IOException if the file can not be read
+     * @throws LevelFormatException if the file is not a valid level pack
+     */
+    public static LevelPack open(Path path) throws IOException {
+        MappedByteBuffer content;
+        try (FileChannel channel = FileChannel.open(path)) {
+            content = channel.map(FileChannel.MapMode.READ_ONLY,
+                                  0,
+                                  channel.size());
+        }
+        if (content.limit() < HEADER_SIZE)
+            throw new LevelFormatException("truncated header",
+                                           content.limit());
+        for (int k = 0; k < MAGIC.length; k++) {
+            if (content.get(k) != MAGIC[k])
+                throw new LevelFormatException("not a level pack", 0);
+        }
+        if (content.get(MAGIC.length) != VERSION)
+            throw new LevelFormatException("unknown version", MAGIC.length);
+        long indexOffset = content.getLong(8);
+        int firstId = content.getInt(16);
+        int entries = content.getInt(20);
+        if (indexOffset < HEADER_SIZE
+            || entries < 0
+            || indexOffset + (long) entries * ENTRY_SIZE != content.limit())
+            throw new LevelFormatException("invalid index", 8);
+        return new LevelPack(content, firstId, entries, (int) indexOffset);
+    }
+
+    /**
+     * Writes the given levels to a new pack file at the given path, replacing
+     * it if it exists. The levels are written as they come, only their
+     * offsets being kept until the index is written.
+     * @throws IOException if the file can not be written
+     * @throws IllegalArgumentException if two levels have the same id
+     */
+    public static void write(Path path, Iterator<LevelConfig> levels)
+        throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(
+                 path,
+                 StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING,
+                 StandardOpenOption.WRITE)) {
+            long offset = HEADER_SIZE;
+            channel.position(offset);
+            while (levels.hasNext()) {
+                LevelConfig lc = levels.next();
+                byte[] binary = lc.toBinary();
+                writeFully(channel, ByteBuffer.wrap(binary));
+                ids.add(lc.id());
+                offsets.add(offset);
+                lengths.add(binary.length);
+                offset += binary.length;
+            }
+
+            int firstId = ids.stream().mapToInt(i -> i).min().orElse(0);
+            int lastId = ids.stream().mapToInt(i -> i).max().orElse(-1);
+            int entries = lastId - firstId + 1;
+            ByteBuffer index =
+                ByteBuffer.allocate(Math.multiplyExact(entries, ENTRY_SIZE));
+            for (int k = 0; k < ids.size(); k++) {
+                int at = (ids.get(k) - firstId) * ENTRY_SIZE;
+                if (index.getInt(at + Long.BYTES) != 0)
+                    throw new IllegalArgumentException(
+                        "Duplicate level id " + ids.get(k));
+                index.putLong(at, offsets.get(k));
+                index.putInt(at + Long.BYTES, lengths.get(k));
+            }
+            writeFully(channel, index);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put(VERSION).position(8);
+            header.putLong(offset).putInt(firstId).putInt(entries).flip();
+            channel.position(0);
+            writeFully(channel, header);
+        }
+    }
+
+    // Writes all the remaining bytes of the given buffer to the channel
+    private static void writeFully(FileChannel channel, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * {@return true if this LevelPack holds a level of the given id}
+     */
+    public boolean contains(int id) {
+        return this.entryOffset(id) != -1;
+    }
+
+    /**
+     * {@return the level of given id in this LevelPack, null if none}
+     * @throws LevelFormatException if the stored level is not valid
+     */
+    public LevelConfig get(int id) {
+        int at = this.entryOffset(id);
+        if (at == -1)
+            return null;
+        long offset = this.content.getLong(at);
+        int length = this.content.getInt(at + Long.BYTES);
+        if (offset < HEADER_SIZE || offset + length > this.indexOffset)
+            throw new LevelFormatException("invalid index entry", at);
+        ByteBuffer level = this.content.duplicate();
+        level.position((int) offset).limit((int) offset + length);
+        return LevelConfig.fromBinary(level);
+    }
+
+    /**
+     * {@return the ids of the levels of this LevelPack, in increasing order}
+     */
+    public List<Integer> ids() {
+        List<Integer> res = new ArrayList<>();
+        for (int k = 0; k < this.entries; k++) {
+            if (this.entryOffset(this.firstId + k) != -1)
+                res.add(this.firstId + k);
+        }
+        return res;
+    }
+
+    // Returns the offset of the index entry of the level of given id, -1 if
+    // this LevelPack has no such level
+    private int entryOffset(int id) {
+        long k = (long) id - this.firstId;
+        if (k < 0 || k >= this.entries)
+            return -1;
+        int at = this.indexOffset + (int) k * ENTRY_SIZE;
+        return this.content.getInt(at + Long.BYTES) == 0 ? -1 : at;
+    }
+}
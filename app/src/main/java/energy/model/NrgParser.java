@@ -0,0 +1,194 @@
+package energy.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+// Reads levels in the .nrg format, byte by byte. The first line holds the
+// height, the width and the shape (S or H) of the level. Each following line
+// holds the tiles of a line of the level: the diminutive of the component of
+// each tile followed by the indices of its connected sides, all separated by
+// spaces.
+final class NrgParser {
+
+    // Content to parse
+    private final ByteBuffer in;
+
+    // Index in the content of the start of the current line, and number of
+    // the current line starting from 1
+    private int lineStart;
+    private int line;
+
+    // Initializes a parser of the given content
+    private NrgParser(ByteBuffer in) {
+        this.in = in;
+        this.lineStart = in.position();
+        this.line = 1;
+    }
+
+    // Returns the LevelConfig with the given id described by the remaining
+    // bytes of the given buffer
+    // Throws LevelFormatException if the content is not valid
+    static LevelConfig parse(ByteBuffer in, int id) {
+        return new NrgParser(in).parse(id);
+    }
+
+    private LevelConfig parse(int id) {
+        this.skipSpaces();
+        int height = this.readInt("height");
+        this.skipSpaces();
+        int width = this.readInt("width");
+        this.skipSpaces();
+        TileShape shape = this.readShape();
+        this.skipSpaces();
+        if (!this.atEndOfLine())
+            throw this.error("expected the end of the line");
+        this.endLine();
+
+        // Each tile takes at least two bytes
+        int capacity =
+            (int) Math.min((long) height * width, this.in.remaining() / 2);
+        ArrayList<Tile> tiles = new ArrayList<>(capacity);
+        for (int i = 0; i < height; i++) {
+            if (!this.in.hasRemaining())
+                throw this.error("expected " + height + " lines of tiles");
+            this.readTiles(i, width, shape, tiles);
+        }
+
+        // Only blank lines may follow
+        while (this.in.hasRemaining()) {
+            this.skipSpaces();
+            if (!this.atEndOfLine())
+                throw this.error("expected " + height + " lines of tiles");
+            this.endLine();
+        }
+        return LevelConfig.of(height, width, id, shape, tiles);
+    }
+
+    // Reads the given number of tiles on the line i, adding them to tiles
+    private void readTiles(int i,
+                           int width,
+                           TileShape shape,
+                           ArrayList<Tile> tiles) {
+        Tile current = null;
+        int j = 0;
+        this.skipSpaces();
+        while (!this.atEndOfLine()) {
+            int b = this.peek();
+            if (isDigit(b)) {
+                if (current == null)
+                    throw this.error("side given before any component");
+                int start = this.in.position();
+                int side = this.readInt("side");
+                if (side >= shape.sides())
+                    throw this.error("no side " + side + " on a "
+                                     + shape.toString().toLowerCase(),
+                                     start);
+                current.connect(side);
+            } else {
+                Component component = componentOf(b);
+                if (component == null)
+                    throw this.error("unknown component '" + (char) b + "'");
+                if (j == width)
+                    throw this.error("expected " + width + " tiles per line");
+                this.in.get();
+                this.expectSeparator();
+                current = Tile.of(shape, Position.at(i, j++), component);
+                tiles.add(current);
+            }
+            this.skipSpaces();
+        }
+        if (j != width)
+            throw this.error("expected " + width + " tiles per line");
+        this.endLine();
+    }
+
+    // Reads a positive number
+    private int readInt(String what) {
+        if (!isDigit(this.peek()))
+            throw this.error("expected " + what);
+        int res = 0;
+        while (isDigit(this.peek())) {
+            res = res * 10 + (this.in.get() - '0');
+            if (res > 1_000_000)
+                throw this.error(what + " is too large");
+        }
+        this.expectSeparator();
+        return res;
+    }
+
+    // Reads the identifier of a TileShape
+    private TileShape readShape() {
+        int b = this.peek();
+        for (TileShape shape: TileShape.values()) {
+            if (shape.fileIdentifier().charAt(0) == b) {
+                this.in.get();
+                this.expectSeparator();
+                return shape;
+            }
+        }
+        throw this.error("expected a shape (S or H)");
+    }
+
+    // Throws LevelFormatException if the next byte is neither a space nor an
+    // end of line
+    private void expectSeparator() {
+        if (!isSpace(this.peek()) && !this.atEndOfLine())
+            throw this.error("expected a space");
+    }
+
+    // Skips the spaces before the next token
+    private void skipSpaces() {
+        while (isSpace(this.peek()))
+            this.in.get();
+    }
+
+    // Returns true if the whole content or the current line was read
+    private boolean atEndOfLine() {
+        int b = this.peek();
+        return b == -1 || b == '\n';
+    }
+
+    // Returns the next byte without reading it, -1 if the whole content was
+    // read
+    private int peek() {
+        return this.in.hasRemaining() ? this.in.get(this.in.position()) : -1;
+    }
+
+    // Moves to the start of the next line, if any
+    private void endLine() {
+        if (this.in.hasRemaining())
+            this.in.get();
+        this.lineStart = this.in.position();
+        this.line++;
+    }
+
+    // Returns an exception locating the error at the current byte
+    private LevelFormatException error(String message) {
+        return this.error(message, this.in.position());
+    }
+
+    // Returns an exception locating the error at the byte of given index,
+    // on the current line
+    private LevelFormatException error(String message, int index) {
+        int column = index - this.lineStart + 1;
+        return new LevelFormatException(message, this.line, column);
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // Carriage returns are skipped as spaces to accept Windows line endings
+    private static boolean isSpace(int b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    // Returns the Component of the given diminutive, null if none
+    private static Component componentOf(int b) {
+        for (Component c: Component.values()) {
+            if (c.getDiminutive().charAt(0) == b)
+                return c;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,164 @@
+package energy.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+// Reads and writes levels in the binary .nrgb format. The content starts with
+// an 18 bytes header: the magic number "NRGB", the version of the format, the
+// file identifier of the shape, then the height, the width and the id of the
+// level as big-endian ints. Each tile then takes one byte, line by line: its
+// component on the 2 high bits and its border mask on the 6 low bits.
+// Positions without tile are written as empty tiles.
+final class NrgbCodec {
+
+    // Magic number and version at the start of the content
+    private static final byte[] MAGIC = {'N', 'R', 'G', 'B'};
+    private static final byte VERSION = 1;
+
+    // Number of bytes before the tiles
+    static final int HEADER_SIZE = MAGIC.length + 2 + 3 * Integer.BYTES;
+
+    // Components by code, the code being the index
+    private static final Component[] COMPONENTS = {
+        Component.EMPTY, Component.SOURCE, Component.LAMP, Component.HOTSPOT
+    };
+
+    // Number of bits of the border mask in a tile byte
+    private static final int BORDER_BITS = 6;
+
+    private NrgbCodec() {}
+
+    // The header of a level: its shape, dimension and id
+    static final class Header {
+        final TileShape shape;
+        final int height;
+        final int width;
+        final int id;
+
+        private Header(TileShape shape, int height, int width, int id) {
+            this.shape = shape;
+            this.height = height;
+            this.width = width;
+            this.id = id;
+        }
+    }
+
+    // Returns the header at the start of the remaining bytes of the given
+    // buffer, checking that the buffer holds all the tiles after it
+    // Throws LevelFormatException if the header is not valid
+    static Header decodeHeader(ByteBuffer in) {
+        int start = in.position();
+        if (in.remaining() < HEADER_SIZE)
+            throw new LevelFormatException("truncated header", in.remaining());
+        for (byte b: MAGIC) {
+            if (in.get() != b)
+                throw new LevelFormatException("not a binary level file", 0);
+        }
+        byte version = in.get();
+        if (version != VERSION)
+            throw new LevelFormatException("unknown version " + version,
+                                           in.position() - start - 1);
+        TileShape shape = shapeOf(in.get());
+        if (shape == null)
+            throw new LevelFormatException("unknown shape",
+                                           in.position() - start - 1);
+        int height = in.getInt();
+        int width = in.getInt();
+        int id = in.getInt();
+        if (height < 0 || width < 0 || id < 0)
+            throw new LevelFormatException("negative dimension or id",
+                                           MAGIC.length + 2);
+        if (in.remaining() < (long) height * width)
+            throw new LevelFormatException("expected " + height * width
+                                           + " tiles",
+                                           in.limit() - start);
+        return new Header(shape, height, width, id);
+    }
+
+    // Returns the LevelConfig described by the remaining bytes of the given
+    // buffer
+    // Throws LevelFormatException if the content is not valid
+    static LevelConfig decode(ByteBuffer in) {
+        int start = in.position();
+        Header header = decodeHeader(in);
+        TileShape shape = header.shape;
+        int height = header.height;
+        int width = header.width;
+        int id = header.id;
+
+        ArrayList<Tile> tiles = new ArrayList<>(height * width);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                int b = in.get() & 0xFF;
+                int border = b & ((1 << BORDER_BITS) - 1);
+                if ((border & ~shape.fullMask()) != 0)
+                    throw new LevelFormatException("invalid border",
+                                                   in.position() - start - 1);
+                Tile t = Tile.of(shape,
+                                 Position.at(i, j),
+                                 COMPONENTS[b >>> BORDER_BITS]);
+                for (int s = 0; s < shape.sides(); s++) {
+                    if ((border & (1 << s)) != 0)
+                        t.connect(s);
+                }
+                tiles.add(t);
+            }
+        }
+        return LevelConfig.of(height, width, id, shape, tiles);
+    }
+
+    // Returns the content describing the given tiles
+    static byte[] encode(int height,
+                         int width,
+                         int id,
+                         TileShape shape,
+                         Tile[] grid) {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + height * width);
+        out.put(MAGIC)
+           .put(VERSION)
+           .put((byte) shape.fileIdentifier().charAt(0))
+           .putInt(height)
+           .putInt(width)
+           .putInt(id);
+        for (Tile t: grid) {
+            if (t == null)
+                out.put((byte) 0);
+            else
+                out.put(tileOf(t.component(), t.borderMask()));
+        }
+        return out.array();
+    }
+
+    // Returns the byte of a tile of the given component and border mask
+    static byte tileOf(Component component, int border) {
+        return (byte) (codeOf(component) << BORDER_BITS | border);
+    }
+
+    // Returns the component of the tile of the given byte
+    static Component componentOf(byte tile) {
+        return COMPONENTS[(tile & 0xFF) >>> BORDER_BITS];
+    }
+
+    // Returns the border mask of the tile of the given byte
+    static int borderOf(byte tile) {
+        return tile & ((1 << BORDER_BITS) - 1);
+    }
+
+    // Returns the code of the given component
+    private static int codeOf(Component component) {
+        for (int code = 0; code < COMPONENTS.length; code++) {
+            if (COMPONENTS[code] == component)
+                return code;
+        }
+        throw new IllegalArgumentException("Unknown component " + component);
+    }
+
+    // Returns the shape of the given file identifier, null if none
+    private static TileShape shapeOf(byte identifier) {
+        for (TileShape shape: TileShape.values()) {
+            if (shape.fileIdentifier().charAt(0) == identifier)
+                return shape;
+        }
+        return null;
+    }
+}
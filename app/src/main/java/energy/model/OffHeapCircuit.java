@@ -0,0 +1,178 @@
+package energy.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A board stored outside of the Java heap, for simulations on boards of tens
+ * of millions of cells. The tiles are kept in a direct buffer in the binary
+ * .nrgb format, one byte per cell holding the component and the border mask,
+ * so that a board saved as a .nrgb file is opened by mapping the file in
+ * memory, without reading it. Rotations are then written to the file.
+ * <p>
+ * The powered state of each cell takes a bit of another direct buffer, and
+ * electricity is propagated by a breadth-first walk from the sources, queued
+ * in a third direct buffer of an int per tile. The heap only holds the cells
+ * of the sources and of the hotspots.
+ * <p>
+ * As in Level.fromLevelConfig, the cells outside of the board, as given by
+ * TileShape.hasCell, hold no tile.
+ */
+public final class OffHeapCircuit extends CellBoard {
+
+    // Mask of the border bits of a tile byte
+    private static final int BORDER = 0b111111;
+
+    // Id of the level
+    private final int id;
+
+    // Content in the .nrgb format, and its tiles, one byte per cell
+    private final ByteBuffer content;
+    private final ByteBuffer tiles;
+
+    // Powered state of each cell, as a bit set
+    private final ByteBuffer powered;
+
+    // Queue of cells to visit during a propagation, null until needed
+    private IntBuffer queue;
+
+    // Initializes an OffHeapCircuit of the given content in the .nrgb format
+    // and of the given header
+    // Throws LevelFormatException if the content is not valid
+    private OffHeapCircuit(ByteBuffer content, NrgbCodec.Header header) {
+        super(header.shape, header.height, header.width);
+        this.id = header.id;
+        this.content = content;
+        this.tiles = content.duplicate()
+                            .position(NrgbCodec.HEADER_SIZE)
+                            .limit(NrgbCodec.HEADER_SIZE + this.cells())
+                            .slice();
+        this.powered = ByteBuffer.allocateDirect((this.cells() + 7) / 8);
+        for (int cell = 0; cell < this.cells(); cell++) {
+            if (this.hasTile(cell)
+                && (this.border(cell) & ~this.shape.fullMask()) != 0)
+                throw new LevelFormatException("invalid border",
+                                               NrgbCodec.HEADER_SIZE + cell);
+        }
+        this.indexCells();
+    }
+
+    // Initializes an OffHeapCircuit of the given content in the .nrgb format
+    // Throws LevelFormatException if the content is not valid
+    private OffHeapCircuit(ByteBuffer content) {
+        this(content, NrgbCodec.decodeHeader(content.duplicate()));
+    }
+
+    /**
+     * {@return a new OffHeapCircuit holding the tiles of the given
+     * LevelConfig, in a direct buffer}
+     */
+    public static OffHeapCircuit of(LevelConfig lc) {
+        byte[] content = lc.toBinary();
+        ByteBuffer res = ByteBuffer.allocateDirect(content.length);
+        res.put(content).flip();
+        return new OffHeapCircuit(res);
+    }
+
+    /**
+     * {@return a new OffHeapCircuit of the level saved in the .nrgb file at
+     * the given path, mapped in memory}
+     * The rotations of the tiles are written to the file, by the operating
+     * system or at the latest by force.
+     * @throws IOException if the file can not be opened or mapped
+     * @throws LevelFormatException if the content of the file is not valid
+     */
+    public static OffHeapCircuit open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            MappedByteBuffer content =
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            return new OffHeapCircuit(content);
+        }
+    }
+
+    /**
+     * Writes the rotations of the tiles to the file this OffHeapCircuit was
+     * opened from, if any.
+     */
+    public void force() {
+        if (this.content instanceof MappedByteBuffer)
+            ((MappedByteBuffer) this.content).force();
+    }
+
+    /**
+     * {@return the id of the level}
+     */
+    public int id() {
+        return this.id;
+    }
+
+    @Override
+    boolean hasTile(int cell) {
+        return this.shape.hasCell(cell / this.width,
+                                  cell % this.width,
+                                  this.height);
+    }
+
+    @Override
+    Component component(int cell) {
+        return NrgbCodec.componentOf(this.tiles.get(cell));
+    }
+
+    @Override
+    int border(int cell) {
+        return NrgbCodec.borderOf(this.tiles.get(cell));
+    }
+
+    @Override
+    void setBorder(int cell, int border) {
+        byte b = this.tiles.get(cell);
+        this.tiles.put(cell, (byte) (b & ~BORDER | border));
+    }
+
+    @Override
+    boolean isPowered(int cell) {
+        return (this.powered.get(cell >>> 3) & 1 << (cell & 7)) != 0;
+    }
+
+    @Override
+    void power(int cell) {
+        int index = cell >>> 3;
+        this.powered.put(index,
+                         (byte) (this.powered.get(index) | 1 << (cell & 7)));
+    }
+
+    @Override
+    void clearPower() {
+        int size = this.powered.capacity();
+        int k = 0;
+        for (; k + Long.BYTES <= size; k += Long.BYTES)
+            this.powered.putLong(k, 0L);
+        for (; k < size; k++)
+            this.powered.put(k, (byte) 0);
+    }
+
+    @Override
+    void ensureQueue(int size) {
+        if (this.queue == null || this.queue.capacity() < size) {
+            this.queue =
+                ByteBuffer.allocateDirect(size * Integer.BYTES).asIntBuffer();
+        }
+    }
+
+    @Override
+    void setQueued(int index, int cell) {
+        this.queue.put(index, cell);
+    }
+
+    @Override
+    int queued(int index) {
+        return this.queue.get(index);
+    }
+}
@@ -4,7 +4,8 @@ import energy.view.Observable;
 
 public interface PlayableLevel extends Observable {
 
-    // Rotates the tile at given Position
+    // Rotates the tile at given Position and updates the electricity of the
+    // tiles connected to it
     boolean rotateTileAt(Position position);
 
     // Rotates randomly all tiles
@@ -15,4 +16,26 @@ public interface PlayableLevel extends Observable {
     
     // Propagates electricity through the circuit
     void propagateElectricity();
+
+    // Starts searching a solution of the level in the background, if no
+    // search was started yet
+    void prepareHints();
+
+    // Runs the given action once the search of a solution is over, starting
+    // it if needed. The action runs on the thread of the search, or at once
+    // if the search is already over, and replaces the one given before it
+    // during the same search.
+    void whenHintsReady(Runnable action);
+
+    // Gives up the search of a solution and forgets it, once the level is
+    // left: the action given to whenHintsReady then never runs
+    void cancelHints();
+
+    // Returns a tile to rotate towards a solution of the level and the number
+    // of rotations it needs, null if the level is finished, has no solution,
+    // or if the search of a solution is not over: the search is then started
+    // if needed, and this method never waits for it. The level is solved
+    // once, the tiles differing from the solution being then tracked at each
+    // rotation.
+    Hint hint();
 }
\ No newline at end of file
@@ -13,11 +13,15 @@ public final class Position {
     // The column position
     private final int j;
 
-    // Creates a new Position at (0, 0)
-    private Position() {
-        this.i = 0;
-        this.j = 0;
-    }
+    // Number of lines and columns of the flyweight table
+    private static final int CACHE_SIZE = 1024;
+
+    // Flyweight table of the positions: CACHE[i][j] holds the Position (i, j)
+    // once it has been asked for. Lines are allocated on first use.
+    private static final Position[][] CACHE = new Position[CACHE_SIZE][];
+
+    // The Position at (0, 0)
+    private static final Position ORIGIN = Position.at(0, 0);
 
     // Creates a new Position at (i, j)
     private Position(int i, int j) {
@@ -26,17 +30,19 @@ public final class Position {
     }
 
     /**
-     * Creates and returns a new Position object at origin (0, 0).
+     * Returns the Position object at origin (0, 0).
      * 
      * @return the Position at (0, 0)
      */
     public static Position origin() {
-        return new Position();
+        return ORIGIN;
     }
 
     /**
-     * Creates and returns a new Position object at (i, j). The (i, j) values
-     * must be positive.
+     * Returns the Position object at (i, j). The (i, j) values must be
+     * positive. Positions of usual board coordinates are shared, so that
+     * asking twice for the same coordinates does not allocate; positions must
+     * still be compared with equals.
      *
      * @param i the line coordinate
      * @param j the column coordinate
@@ -46,7 +52,19 @@ public final class Position {
     public static Position at(int i, int j) {
         if (i < 0 || j < 0)
             throw new IllegalPositionException("Negative position");
-        return new Position(i, j);
+        if (i >= CACHE_SIZE || j >= CACHE_SIZE)
+            return new Position(i, j);
+        Position[] line = CACHE[i];
+        if (line == null) {
+            line = new Position[CACHE_SIZE];
+            CACHE[i] = line;
+        }
+        Position res = line[j];
+        if (res == null) {
+            res = new Position(i, j);
+            line[j] = res;
+        }
+        return res;
     }
 
     /**
@@ -88,56 +106,27 @@ public final class Position {
     // Returns the neighbor positions of a given position
     public static List<Position> neighborPositions(Position position,
                                                    TileShape shape) {
-        List<Position> res = new ArrayList<>();
-        int[] is = new int[shape.sides()];
-        int[] js = new int[shape.sides()];
-        int i = position.getLine();
-        int j = position.getColumn();
-        if (shape == TileShape.SQUARE) {
-            is[0] = i-1; // top
-            js[0] = j;
-            is[1] = i; // right
-            js[1] = j+1;
-            is[2] = i+1; // bottom
-            js[2] = j;
-            is[3] = i; // left
-            js[3] = j-1;
-        } else if (shape == TileShape.HEXAGON) {
-                is[0] = i-1; // top
-                js[0] = j;
-                is[3] = i+1; // bottom
-                js[3] = j;
-            if (j % 2 == 1) {
-                is[1] = i; // right 1
-                js[1] = j+1;
-                is[2] = i+1; // right 2
-                js[2] = j+1;
-                is[4] = i+1; // left 2
-                js[4] = j-1;
-                is[5] = i; // left 1
-                js[5] = j-1;
-            } else {
-                is[1] = i-1; // right 1
-                js[1] = j+1;
-                is[2] = i; // right 2
-                js[2] = j+1;
-                is[4] = i; // left 2
-                js[4] = j-1;
-                is[5] = i-1; // left 1
-                js[5] = j-1;                
-            }
-        } else {
-            return res;
-        }
-
-        for (int k = 0; k < shape.sides(); k++) {
-            if (is[k] >= 0 && js[k] >= 0) {
-                res.add(Position.at(is[k], js[k]));
+        List<Position> res = new ArrayList<>(shape.sides());
+        for (int side = 0; side < shape.sides(); side++) {
+            Position neighbor = position.neighbor(side, shape);
+            if (neighbor != null) {
+                res.add(neighbor);
             }
         }
         return res;
     }
 
+    // Returns the Position touching the given side of this Position according
+    // to shape, null if it would have a negative coordinate. Does not allocate
+    // for usual board coordinates.
+    public Position neighbor(int side, TileShape shape) {
+        int ni = i + shape.lineOffset(side, j);
+        int nj = j + shape.columnOffset(side, j);
+        if (ni < 0 || nj < 0)
+            return null;
+        return Position.at(ni, nj);
+    }
+
     // Returns true if the given Position is a neighbor of this Position
     // according to shape
     public boolean isNeighbor(Position pos, TileShape shape) {
@@ -149,31 +138,12 @@ public final class Position {
     public int touchingSide(Position pos, TileShape shape) {
         Objects.requireNonNull(pos);
         Objects.requireNonNull(shape);
-        if (shape == TileShape.SQUARE) {
-            if (pos.i == i-1 && pos.j == j) return 0;
-            if (pos.i == i && pos.j == j+1) return 1;
-            if (pos.i == i+1 && pos.j == j) return 2;
-            if (pos.i == i && pos.j == j-1) return 3;
-            return -1;
-        } else if (shape == TileShape.HEXAGON) {
-            if (pos.i == i-1 && pos.j == j) return 0;
-            if (pos.i == i+1 && pos.j == j) return 3;
-
-            if (j % 2 == 1) {
-                if (pos.i == i && pos.j == j+1) return 1;
-                if (pos.i == i+1 && pos.j == j+1) return 2;
-                if (pos.i == i+1 && pos.j == j-1) return 4;
-                if (pos.i == i && pos.j == j-1) return 5;
-            } else {
-                if (pos.i == i-1 && pos.j == j+1) return 1;
-                if (pos.i == i && pos.j == j+1) return 2;
-                if (pos.i == i && pos.j == j-1) return 4;
-                if (pos.i == i-1 && pos.j == j-1) return 5;
-            }
-            return -1;
-        } else {
-            return -1;
+        for (int side = 0; side < shape.sides(); side++) {
+            if (pos.i == i + shape.lineOffset(side, j)
+                && pos.j == j + shape.columnOffset(side, j))
+                return side;
         }
+        return -1;
     }
 
     @Override public String toString() {
@@ -2,27 +2,48 @@ package energy.model;
 
 import java.awt.Dimension;
 import java.util.List;
+import java.util.Set;
 
+// The state of a Circuit as seen by the views: the tiles are read from the
+// snapshot published when this ReadOnlyCircuit was created, so they can not
+// change while they are drawn.
 public class ReadOnlyCircuit {
     private final Circuit circuit;
+    private final CircuitSnapshot snapshot;
 
     public ReadOnlyCircuit(Circuit circuit) {
         this.circuit = circuit;
+        this.snapshot = circuit.snapshot();
     }
 
     public Dimension dimension() {
-        return this.circuit.dimension();
+        return this.snapshot.dimension();
     }
 
     public boolean areAllHexagonalTiles() {
-        return this.circuit.areAllHexagonalTiles();
+        return this.snapshot.areAllHexagonalTiles();
     }
 
     public boolean areAllSquaredTiles() {
-        return this.circuit.areAllSquaredTiles();
+        return this.snapshot.areAllSquaredTiles();
     }
 
+    // Returns copies of the tiles, line by line rather than in the order they
+    // were added to the Circuit as Circuit.getTiles. The views only draw them
+    // at their positions and never depend on this order.
     public List<Tile> tiles() {
-        return this.circuit.getTiles();
+        return this.snapshot.tiles();
+    }
+
+    public CircuitSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    public Set<Position> changes() {
+        return this.circuit.getChanges();
+    }
+
+    public boolean allTilesChanged() {
+        return this.circuit.allTilesChanged();
     }
 }
\ No newline at end of file
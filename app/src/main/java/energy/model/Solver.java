@@ -0,0 +1,1318 @@
+package energy.model;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds the rotations to apply to the tiles of a Circuit so that all its
+ * lamps are powered on.
+ * <p>
+ * As in {@link Circuit#allLampsArePoweredOn}, a solution only needs every
+ * lamp to be linked to a source: connected sides may face the border or a
+ * side that is not connected, leaving a cable end unmatched. The search
+ * allows a number of unmatched ends, the slack, starting from the fewest
+ * possible. The orientations each tile can take are narrowed down by
+ * propagating from tile to tile that no more ends can be left unmatched,
+ * and the remaining choices are explored by backtracking, ruling out those
+ * which directly lead to a contradiction. Authored and generated levels
+ * leave no end unmatched, and the levels leaving a few of them are solved
+ * the same way. When fewer ends than the sides of a tile do not suffice,
+ * the search allows any number of them, and is then only pruned by the
+ * reachability of the lamps, which can take much longer on large boards.
+ * Wireless links between hotspots do not depend on rotations: they are
+ * taken into account when checking that the lamps are powered.
+ * <p>
+ * The search can also be split among the threads of a ForkJoinPool, each
+ * subproblem deciding the rotation of a few tiles.
+ */
+public final class Solver {
+
+    // Shape of the tiles of the solved Circuit
+    private final TileShape shape;
+
+    // Number of sides of the tiles
+    private final int sides;
+
+    // Positions of the tiles, in the order of the tiles of the Circuit
+    private final Position[] positions;
+
+    // Components of the tiles
+    private final Component[] components;
+
+    // Indices of the sources and of the hotspots, and number of lamps
+    private final int[] sources;
+    private final int[] hotspots;
+    private final int lampCount;
+
+    // Index of the tile touching each side of each tile: neighbors[t * sides
+    // + s] for the side s of the tile t, -1 if none
+    private final int[] neighbors;
+
+    // Distinct border masks each tile can take by rotating
+    private final int[][] candidates;
+
+    // Number of rotations leading each tile to each of its candidates
+    private final int[][] rotations;
+
+    // For each tile and side, the candidates of the tile with that side
+    // connected, as a bit set over the candidate indices
+    private final int[] connectedCandidates;
+
+    // Number of cable ends, that is of connected sides, of all the tiles
+    private final int cableEnds;
+
+    // Initializes a Solver for the tiles of given positions, components and
+    // border masks, all of the given shape, on a board of given dimension
+    private Solver(TileShape shape,
+                   Dimension dim,
+                   Position[] positions,
+                   Component[] components,
+                   int[] masks) {
+        int n = positions.length;
+        this.shape = shape;
+        this.sides = shape.sides();
+        this.positions = positions;
+        this.components = components;
+        this.candidates = new int[n][];
+        this.rotations = new int[n][];
+        this.neighbors = new int[n * this.sides];
+        this.connectedCandidates = new int[n * this.sides];
+
+        int[] indexAt = new int[dim.height * dim.width];
+        Arrays.fill(indexAt, -1);
+        for (int t = 0; t < n; t++) {
+            indexAt[positions[t].getLine() * dim.width
+                    + positions[t].getColumn()] = t;
+            this.initCandidates(t, masks[t]);
+        }
+        int ends = 0;
+        for (int t = 0; t < n; t++)
+            ends += Integer.bitCount(masks[t]);
+        this.cableEnds = ends;
+        this.sources = this.indicesOf(Component.SOURCE);
+        this.hotspots = this.indicesOf(Component.HOTSPOT);
+        this.lampCount = this.indicesOf(Component.LAMP).length;
+
+        int[] adjacent = GridAdjacency.of(dim.height, dim.width).of(shape);
+        for (int t = 0; t < n; t++) {
+            int cell = this.positions[t].getLine() * dim.width
+                + this.positions[t].getColumn();
+            for (int s = 0; s < this.sides; s++) {
+                int neighbor = adjacent[cell * this.sides + s];
+                this.neighbors[t * this.sides + s] =
+                    neighbor == -1 ? -1 : indexAt[neighbor];
+            }
+        }
+    }
+
+    // Returns the indices of the tiles holding the given component
+    private int[] indicesOf(Component component) {
+        int[] res = new int[this.components.length];
+        int size = 0;
+        for (int t = 0; t < this.components.length; t++) {
+            if (this.components[t] == component)
+                res[size++] = t;
+        }
+        return Arrays.copyOf(res, size);
+    }
+
+    // Computes the distinct border masks the tile t, of the given border
+    // mask, can take
+    private void initCandidates(int t, int mask) {
+        int[] masks = new int[this.sides];
+        int[] counts = new int[this.sides];
+        int size = 0;
+        int maxRotations = this.components[t].canRotate() ? this.sides : 1;
+        for (int r = 0; r < maxRotations; r++) {
+            boolean known = false;
+            for (int c = 0; c < size; c++)
+                known |= masks[c] == mask;
+            if (!known) {
+                masks[size] = mask;
+                counts[size] = r;
+                size++;
+            }
+            mask = this.shape.rotate(mask);
+        }
+        this.candidates[t] = Arrays.copyOf(masks, size);
+        this.rotations[t] = Arrays.copyOf(counts, size);
+        for (int s = 0; s < this.sides; s++) {
+            int set = 0;
+            for (int c = 0; c < size; c++) {
+                if ((masks[c] >>> s & 1) != 0)
+                    set |= 1 << c;
+            }
+            this.connectedCandidates[t * this.sides + s] = set;
+        }
+    }
+
+    /**
+     * {@return a Solver for the tiles of the given Circuit}
+     * @param circuit the Circuit to solve, which is never modified
+     * @throws IllegalStateException if the Circuit mixes tile shapes
+     */
+    public static Solver of(Circuit circuit) {
+        TileShape shape = circuit.areAllHexagonalTiles()
+            ? TileShape.HEXAGON
+            : TileShape.SQUARE;
+        return Solver.of(shape, circuit.dimension(), circuit.getTiles());
+    }
+
+    /**
+     * {@return a Solver for the tiles of the given snapshot}
+     * The snapshot can be taken while its Circuit keeps changing.
+     * @throws IllegalStateException if the snapshot mixes tile shapes
+     */
+    public static Solver of(CircuitSnapshot snapshot) {
+        TileShape shape = snapshot.areAllHexagonalTiles()
+            ? TileShape.HEXAGON
+            : TileShape.SQUARE;
+        return Solver.of(shape, snapshot.dimension(), snapshot.tiles());
+    }
+
+    // Returns a Solver for the given tiles, all of the given shape, on a board
+    // of given dimension
+    private static Solver of(TileShape shape, Dimension dim, List<Tile> tiles) {
+        int n = tiles.size();
+        Position[] positions = new Position[n];
+        Component[] components = new Component[n];
+        int[] masks = new int[n];
+        for (int t = 0; t < n; t++) {
+            Tile tile = tiles.get(t);
+            positions[t] = tile.position();
+            components[t] = tile.component();
+            masks[t] = tile.borderMask();
+        }
+        return new Solver(shape, dim, positions, components, masks);
+    }
+
+    /**
+     * {@return a Solver for the tiles of the given CircuitState, read from
+     * its arrays without creating any Tile}
+     * @param state the CircuitState to solve, which is never modified
+     */
+    public static Solver of(CircuitState state) {
+        int n = state.tileCount();
+        Position[] positions = new Position[n];
+        Component[] components = new Component[n];
+        int[] masks = new int[n];
+        int t = 0;
+        for (int cell = 0; cell < state.cells(); cell++) {
+            if (!state.hasTile(cell))
+                continue;
+            positions[t] = Position.at(cell / state.width,
+                                       cell % state.width);
+            components[t] = state.component(cell);
+            masks[t] = state.border(cell);
+            t++;
+        }
+        return new Solver(state.shape(), state.dimension(), positions,
+                          components, masks);
+    }
+
+    /**
+     * {@return a Solver for the level described by the given LevelConfig}
+     * @param lc the configuration of the level to solve
+     */
+    public static Solver of(LevelConfig lc) {
+        return Solver.of(Level.fromLevelConfig(lc).getCircuit());
+    }
+
+    /**
+     * Searches rotations that power on all the lamps. Generated levels of
+     * 100x100 tiles are solved in a few hundred milliseconds, as measured by
+     * SolverBenchmark. Leaving a cable end unmatched takes up to a few
+     * seconds on such levels, and more ends than the sides of a tile can
+     * take much longer.
+     *
+     * @return for each tile that can rotate, the number of counterclockwise
+     * rotations to apply to it, in the order of the tiles of the Circuit; null
+     * if there is no solution
+     */
+    public Map<Position, Integer> solve() {
+        return this.solve(() -> false);
+    }
+
+    /**
+     * Searches rotations that power on all the lamps, as {@link #solve()}
+     * does, giving up as soon as the given condition holds. The condition is
+     * checked often enough for the search to end shortly after it holds.
+     *
+     * @param stop true once the search has to end
+     * @return for each tile that can rotate, the number of counterclockwise
+     * rotations to apply to it, in the order of the tiles of the Circuit; null
+     * if there is no solution or if the search was stopped
+     */
+    public Map<Position, Integer> solve(BooleanSupplier stop) {
+        if (!this.lampsCanBeReached())
+            return null;
+        int[] solution = null;
+        for (int slack = this.cableEnds % 2;
+             solution == null && slack <= this.cableEnds
+                 && !stop.getAsBoolean();
+             slack = this.nextSlack(slack))
+            solution = new Search(this.initialDomains(), slack, stop).run();
+        return stop.getAsBoolean() ? null : this.toRotations(solution);
+    }
+
+    // Returns the number of unmatched cable ends to allow once no solution
+    // leaves at most the given number of them. The number of unmatched ends
+    // has the parity of the number of cable ends, since matched ends come in
+    // pairs. A slack of a few ends still prunes candidates, larger ones
+    // hardly do while their searches take longer and longer, so the search
+    // then goes straight to allowing every end to be unmatched.
+    private int nextSlack(int slack) {
+        if (slack + 2 < this.sides || slack >= this.cableEnds)
+            return slack + 2;
+        return this.cableEnds;
+    }
+
+    // Returns true if every lamp can be linked to a source by some rotations
+    // of the tiles, each one taken alone
+    private boolean lampsCanBeReached() {
+        return new Search(this.initialDomains(), this.cableEnds, () -> false)
+            .lampsCanBePowered();
+    }
+
+    /**
+     * Searches rotations that power on all the lamps, sharing the search among
+     * the threads of the given pool. The first decisions of the search are
+     * explored in parallel, and the whole search stops as soon as a solution
+     * is found.
+     *
+     * @param pool the pool running the search
+     * @param deterministic if true, the result does not depend on the
+     * threads, and it is the one of {@link #solve} unless cable ends have to
+     * be left unmatched, the sequential search then learning from the
+     * contradictions of the choices it tried first; otherwise it is the first
+     * solution found by any thread
+     * @return for each tile that can rotate, the number of counterclockwise
+     * rotations to apply to it, in the order of the tiles of the Circuit; null
+     * if there is no solution
+     */
+    public Map<Position, Integer> solveInParallel(ForkJoinPool pool,
+                                                  boolean deterministic) {
+        if (!this.lampsCanBeReached())
+            return null;
+        int[] solution = null;
+        for (int slack = this.cableEnds % 2;
+             solution == null && slack <= this.cableEnds;
+             slack = this.nextSlack(slack))
+            solution = this.searchInParallel(pool, deterministic, slack);
+        return this.toRotations(solution);
+    }
+
+    // Returns the solved domains found by a parallel search leaving at most
+    // the given number of cable ends unmatched, null if there is none
+    private int[] searchInParallel(ForkJoinPool pool,
+                                   boolean deterministic,
+                                   int slack) {
+        int splitDepth =
+            32 - Integer.numberOfLeadingZeros(8 * pool.getParallelism());
+        AtomicReference<int[]> found = new AtomicReference<>();
+        SearchTask root = new SearchTask(this.initialDomains(), null, 0,
+                                         splitDepth, deterministic, slack,
+                                         found);
+        int[] solution = pool.invoke(root);
+        return deterministic ? solution : found.get();
+    }
+
+    // Returns the rotations leading to the given solved domains, null if
+    // there is no solution
+    private Map<Position, Integer> toRotations(int[] solution) {
+        if (solution == null)
+            return null;
+        Map<Position, Integer> res = new LinkedHashMap<>();
+        for (int t = 0; t < this.positions.length; t++) {
+            if (this.components[t].canRotate()) {
+                int c = Integer.numberOfTrailingZeros(solution[t]);
+                res.put(this.positions[t], this.rotations[t][c]);
+            }
+        }
+        return res;
+    }
+
+    // Returns the domains where every tile can take any of its candidates
+    private int[] initialDomains() {
+        int[] domains = new int[this.positions.length];
+        for (int t = 0; t < domains.length; t++)
+            domains[t] = (1 << this.candidates[t].length) - 1;
+        return domains;
+    }
+
+    // A subproblem of the parallel search: the domains once the rotations of
+    // the tiles chosen by its ancestors are decided. Below the split depth,
+    // the subproblem is searched sequentially.
+    private final class SearchTask extends RecursiveTask<int[]> {
+
+        private final int[] domains;
+        private final SearchTask parent;
+        private final int depth;
+        private final int splitDepth;
+        private final boolean deterministic;
+        private final int slack;
+
+        // First solution found by any task, used when not deterministic
+        private final AtomicReference<int[]> found;
+
+        // Set when the result of this task is no longer needed
+        private volatile boolean stopped;
+
+        SearchTask(int[] domains,
+                   SearchTask parent,
+                   int depth,
+                   int splitDepth,
+                   boolean deterministic,
+                   int slack,
+                   AtomicReference<int[]> found) {
+            this.domains = domains;
+            this.parent = parent;
+            this.depth = depth;
+            this.splitDepth = splitDepth;
+            this.deterministic = deterministic;
+            this.slack = slack;
+            this.found = found;
+        }
+
+        @Override protected int[] compute() {
+            if (this.shouldStop())
+                return null;
+            Search search =
+                new Search(this.domains, this.slack, this::shouldStop);
+            if (this.depth >= this.splitDepth)
+                return this.publish(search.run());
+            if (!search.start())
+                return null;
+            int t = search.chooseTile();
+            if (t == -1)
+                return this.publish(search.allLampsPoweredOn()
+                                    ? this.domains.clone()
+                                    : null);
+
+            // one subproblem per candidate of t, in the sequential order
+            List<SearchTask> children = new ArrayList<>();
+            int preferred = search.matchingCandidates(t);
+            int left = this.domains[t];
+            while (left != 0) {
+                int choice = Integer.lowestOneBit((left & preferred) != 0
+                                                  ? left & preferred
+                                                  : left);
+                left &= ~choice;
+                int[] childDomains = this.domains.clone();
+                childDomains[t] = choice;
+                children.add(new SearchTask(childDomains, this,
+                                            this.depth + 1, this.splitDepth,
+                                            this.deterministic, this.slack,
+                                            this.found));
+            }
+            for (int k = children.size() - 1; k > 0; k--)
+                children.get(k).fork();
+            int[] res = null;
+            for (int k = 0; k < children.size(); k++) {
+                SearchTask child = children.get(k);
+                if (res != null) {
+                    child.stopped = true;
+                    continue;
+                }
+                res = (k == 0) ? child.compute() : child.join();
+            }
+            return res;
+        }
+
+        // Records the given solution as found if any and returns it
+        private int[] publish(int[] solution) {
+            if (solution != null && !this.deterministic)
+                this.found.compareAndSet(null, solution);
+            return solution;
+        }
+
+        // Returns true if this task or an ancestor is no longer needed, or if
+        // another task already found a solution when not deterministic
+        private boolean shouldStop() {
+            if (!this.deterministic && this.found.get() != null)
+                return true;
+            for (SearchTask t = this; t != null; t = t.parent) {
+                if (t.stopped)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    // A depth first search over the domains of the tiles. The domain of a tile
+    // is the bit set of the candidates it can still take.
+    //
+    // A cable end is unmatched when its side faces the border, a cell without
+    // tile or a side that is not connected. The search only accepts solutions
+    // with at most slack unmatched ends: the forced ones, whatever the
+    // remaining choices, are counted as the domains narrow, and a candidate
+    // is ruled out when it would force more of them than the slack allows.
+    // With no slack, every connected side must face a connected side.
+    private final class Search {
+
+        // Current domain of each tile
+        private final int[] domains;
+
+        // Number of unmatched cable ends allowed, and number of them forced by
+        // the current domains
+        private final int slack;
+        private int unmatched;
+
+        // Work array of revise: the candidates forcing an unmatched end on
+        // each side
+        private final int[] forcingBySide = new int[sides];
+
+        // With some slack but not every end allowed to be unmatched, the
+        // candidates of each tile forcing no unmatched end on any side, kept
+        // up to date as the domains change so that chooseTile does not
+        // recompute them for every tile; null otherwise. Once the slack is
+        // used up, they are left as they were, and only brought up to date
+        // again when backtracking gives some slack back.
+        private final int[] matching;
+
+        // Along with matching, the tiles having a candidate which forces an
+        // unmatched end, the only ones to revise when less slack is left, and
+        // the index of each tile among them, -1 if it is not one of them
+        private final int[] forcingTiles;
+        private final int[] forcingIndex;
+        private int forcingCount;
+
+        // Along with matching, the number of contradictions met on each tile
+        // or on its neighbors. The contradictions of a search with slack left
+        // can be found far from the decisions leading to them, and choosing
+        // the tiles where they were met first keeps the search from trying
+        // every choice elsewhere before coming back to them.
+        private final int[] weights;
+
+        // Returns true when the search must be abandoned
+        private final BooleanSupplier stop;
+
+        // Previous domains, as triples of tile, domain and number of forced
+        // unmatched ends, to restore when backtracking
+        private int[] trail;
+        private int trailSize;
+
+        // Tiles whose domain must be checked against their neighbors
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int queueSize;
+
+        // Decisions taken: the tile, the candidates left to try and the trail
+        // size before the decision
+        private int[] decidedTiles;
+        private int[] leftCandidates;
+        private int[] preferredCandidates;
+        private int[] trailMarks;
+        private int depth;
+
+        // Work arrays of the reachability check
+        private final boolean[] reached;
+        private final int[] stack;
+
+        // The side through which each tile was reached by the last successful
+        // reachability check, -1 for sources, hotspots and unreached tiles.
+        // These links certify that every lamp can still be powered as long as
+        // none of them is ruled out.
+        private int[] reachedFrom;
+        private int[] nextReachedFrom;
+
+        // True if a link of the certificate was ruled out since the last
+        // assignment
+        private boolean certificateBroken;
+
+        // While probing without slack left, the tiles linked whatever the
+        // remaining choices form groups, which the reachability check walks as
+        // single nodes, so grouped is set: the
+        // group of each tile, and for each group its number of lamps, whether
+        // it holds a hotspot, and its uncertain links as tile and
+        // side pairs, group by group from linkStarts[g] to linkStarts[g + 1].
+        // Narrowing the domains keeps the links of a group, so the groups stay
+        // valid until the end of the probe.
+        private boolean grouped;
+        private final int[] groups;
+        private int groupCount;
+        private int[] groupLamps;
+        private boolean[] groupHotspots;
+        private int[] linkStarts;
+        private int[] links;
+        private boolean[] groupReached;
+
+        // While grouped, the certificate is made of group links instead: the
+        // link through which each group was reached, as t * sides + s, -1 for
+        // the groups of sources and hotspots, and the order in which the
+        // groups were reached, MAX_VALUE for unreached ones. The sides on
+        // either end of the links of the last certificate are marked in
+        // certified, with the group each link reaches in certifiedGroup.
+        private int[] groupReachedBy;
+        private int[] groupOrder;
+        private int[] certifiedOrder;
+        private final boolean[] certified;
+        private final int[] certifiedGroup;
+        private final int[] certifiedSides;
+        private int certifiedCount;
+
+        // Certified sides ruled out since the last assignment
+        private int[] brokenSides;
+        private int brokenCount;
+
+        // Groups met by the current walk of groupsCanStillBePowered, marked
+        // with its stamp
+        private int[] walked;
+        private int walkStamp;
+
+        Search(int[] domains, int slack, BooleanSupplier stop) {
+            int n = domains.length;
+            this.domains = domains;
+            this.slack = slack;
+            this.stop = stop;
+            this.trail = new int[3 * Math.max(n, 1)];
+            this.queue = new int[n];
+            this.queued = new boolean[n];
+            this.decidedTiles = new int[16];
+            this.leftCandidates = new int[16];
+            this.preferredCandidates = new int[16];
+            this.trailMarks = new int[16];
+            this.reached = new boolean[n];
+            this.stack = new int[n];
+            this.reachedFrom = new int[n];
+            this.nextReachedFrom = new int[n];
+            this.groups = new int[n];
+            this.certified = new boolean[n * sides];
+            this.certifiedGroup = new int[n * sides];
+            this.brokenSides = new int[16];
+            this.certifiedSides = new int[2 * n];
+            Arrays.fill(this.reachedFrom, -1);
+            boolean tracked = slack > 0 && slack < cableEnds;
+            this.weights = tracked ? new int[n] : null;
+            this.matching = tracked ? new int[n] : null;
+            this.forcingTiles = tracked ? new int[n] : null;
+            this.forcingIndex = tracked ? new int[n] : null;
+            if (tracked)
+                Arrays.fill(this.forcingIndex, -1);
+            for (int t = 0; t < n; t++) {
+                if (this.matching != null)
+                    this.setMatching(t);
+                for (int s = 0; s < sides; s++) {
+                    if (this.isUnmatched(t, s)
+                        && (neighbors[t * sides + s] == -1 || s < sides / 2))
+                        this.unmatched++;
+                }
+            }
+        }
+
+        // Returns the solved domains, each holding a single candidate, null
+        // if there is no solution
+        int[] run() {
+            if (!this.start())
+                return null;
+            while (true) {
+                if (this.stop.getAsBoolean())
+                    return null;
+                int t = this.chooseTile();
+                if (t == -1 && this.allLampsPoweredOn())
+                    return this.domains.clone();
+                if (t != -1)
+                    this.pushDecision(t);
+                if (!this.nextChoice())
+                    return null;
+            }
+        }
+
+        // Narrows the initial domains. Returns false if they have no solution.
+        boolean start() {
+            for (int t = 0; t < this.domains.length; t++)
+                this.enqueue(t);
+            return this.propagate() && this.lampsCanBePowered()
+                && (!this.shouldProbe() || this.probe());
+        }
+
+        // Returns the number of cable ends that can still be left unmatched
+        private int slackLeft() {
+            return this.slack - this.unmatched;
+        }
+
+        // Returns true if the domains should be probed after each decision:
+        // once the slack is used up, as probing a search with some slack left
+        // rules out too few candidates for its cost, unless the search
+        // allows every cable end to be unmatched and has nothing else to
+        // prune the decisions
+        private boolean shouldProbe() {
+            return this.slackLeft() == 0 || this.slack >= cableEnds;
+        }
+
+        // Rules out the candidates of the undecided tiles that directly lead
+        // to a contradiction, until none can be ruled out. Returns false if a
+        // tile has no candidate left.
+        private boolean probe() {
+            // with slack left, few tiles are linked for sure, and walking
+            // the groups costs more than it saves
+            this.grouped = this.slackLeft() == 0;
+            boolean narrowed = false;
+            try {
+                if (this.grouped) {
+                    this.group();
+                    if (!this.certifyGroups())
+                        return false;
+                }
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    for (int t = 0; t < this.domains.length; t++) {
+                        if (this.stop.getAsBoolean())
+                            return false;
+                        int domain = this.domains[t];
+                        if (Integer.bitCount(domain) < 2)
+                            continue;
+                        int kept = 0;
+                        for (int left = domain; left != 0; left &= left - 1) {
+                            int choice = Integer.lowestOneBit(left);
+                            int mark = this.trailSize;
+                            if (this.assign(t, choice))
+                                kept |= choice;
+                            this.undo(mark);
+                        }
+                        if (kept == 0)
+                            return false;
+                        if (kept != domain) {
+                            if (!this.assign(t, kept))
+                                return false;
+                            // the trials rely on the certificate: renew it
+                            if (this.grouped && this.certificateBroken)
+                                this.certifyGroups();
+                            changed = true;
+                            narrowed = true;
+                        }
+                    }
+                }
+            } finally {
+                this.grouped = false;
+            }
+            // the links of the tiles may have been ruled out meanwhile
+            return !narrowed || this.lampsCanBePowered();
+        }
+
+        // Assigns the next untried candidate of the deepest decision that has
+        // one, undoing the deeper ones. Returns false if every decision has
+        // been exhausted.
+        private boolean nextChoice() {
+            while (this.depth > 0) {
+                int top = this.depth - 1;
+                this.undo(this.trailMarks[top]);
+                int left = this.leftCandidates[top];
+                if (left == 0) {
+                    this.depth--;
+                    continue;
+                }
+                int preferred = left & this.preferredCandidates[top];
+                int choice = Integer.lowestOneBit(preferred != 0 ? preferred
+                                                                 : left);
+                this.leftCandidates[top] = left & ~choice;
+                if (this.assign(this.decidedTiles[top], choice)
+                    && (!this.shouldProbe() || this.probe()))
+                    return true;
+            }
+            return false;
+        }
+
+        private void pushDecision(int t) {
+            if (this.depth == this.decidedTiles.length) {
+                int len = 2 * this.depth;
+                this.decidedTiles = Arrays.copyOf(this.decidedTiles, len);
+                this.leftCandidates = Arrays.copyOf(this.leftCandidates, len);
+                this.preferredCandidates =
+                    Arrays.copyOf(this.preferredCandidates, len);
+                this.trailMarks = Arrays.copyOf(this.trailMarks, len);
+            }
+            this.decidedTiles[this.depth] = t;
+            this.leftCandidates[this.depth] = this.domains[t];
+            this.preferredCandidates[this.depth] = this.matchingCandidates(t);
+            this.trailMarks[this.depth] = this.trailSize;
+            this.depth++;
+        }
+
+        // Returns the undecided tile with the fewest candidates left, -1 if
+        // every tile is decided. While some slack is left, the tile with the
+        // fewest candidates forcing no unmatched end is taken, so that the
+        // search follows the cables as a search without slack would, the
+        // more so as it has met contradictions.
+        int chooseTile() {
+            if (this.followsCables())
+                return this.chooseTileFollowingCables();
+            int res = -1;
+            int best = Integer.MAX_VALUE;
+            for (int t = 0; t < this.domains.length; t++) {
+                int count = Integer.bitCount(this.domains[t]);
+                if (count > 1 && count < best) {
+                    res = t;
+                    best = count;
+                    if (count == 2)
+                        break;
+                }
+            }
+            return res;
+        }
+
+        // Returns the tile chosen by chooseTile while it follows the cables
+        private int chooseTileFollowingCables() {
+            int res = -1;
+            long best = Long.MAX_VALUE;
+            for (int t = 0; t < this.domains.length; t++) {
+                int count = Integer.bitCount(this.domains[t]);
+                if (count < 2)
+                    continue;
+                // matching candidates first, then all the candidates
+                long key = (Integer.bitCount(this.matching[t]) * 8L + count)
+                    * 64 / (1 + this.weights[t]);
+                if (key < best) {
+                    res = t;
+                    best = key;
+                }
+            }
+            return res;
+        }
+
+        // Returns the candidates of the tile t which force no new unmatched
+        // cable end, tried first
+        int matchingCandidates(int t) {
+            return this.followsCables() ? this.matching[t] : this.domains[t];
+        }
+
+        // Returns true if the candidates forcing no unmatched end are tried
+        // first: while some slack is left, unless any cable end may be
+        // unmatched, where they would only delay the contradictions
+        private boolean followsCables() {
+            return this.slackLeft() > 0 && this.slack < cableEnds;
+        }
+
+        // Computes the candidates of the tile t forcing no unmatched end, and
+        // adds t to or removes it from the forcing tiles accordingly
+        private void setMatching(int t) {
+            int res = this.domains[t];
+            for (int s = 0; s < sides; s++)
+                res &= ~this.forcing(t, s);
+            this.matching[t] = res;
+            int k = this.forcingIndex[t];
+            if (res != this.domains[t] && k == -1) {
+                this.forcingIndex[t] = this.forcingCount;
+                this.forcingTiles[this.forcingCount++] = t;
+            } else if (res == this.domains[t] && k != -1) {
+                int last = this.forcingTiles[--this.forcingCount];
+                this.forcingTiles[k] = last;
+                this.forcingIndex[last] = k;
+                this.forcingIndex[t] = -1;
+            }
+        }
+
+        // Updates the matching candidates of the tile t and of its neighbors,
+        // the only ones depending on the domain of t
+        private void updateMatching(int t) {
+            if (this.matching == null)
+                return;
+            this.setMatching(t);
+            for (int s = 0; s < sides; s++) {
+                int n = neighbors[t * sides + s];
+                if (n != -1)
+                    this.setMatching(n);
+            }
+        }
+
+        // Restricts the tile t to the given candidates and narrows the other
+        // domains accordingly. Returns false if this leads to a contradiction.
+        private boolean assign(int t, int domain) {
+            this.certificateBroken = false;
+            this.brokenCount = 0;
+            this.setDomain(t, domain);
+            if (!this.propagate())
+                return false;
+            if (!this.certificateBroken)
+                return true;
+            if (!this.grouped)
+                return this.lampsCanBePowered();
+            return this.groupsCanStillBePowered();
+        }
+
+        // Narrows the domains of the queued tiles until no more candidate can
+        // be ruled out. Returns false if a tile has no candidate left or if
+        // too many cable ends are left unmatched.
+        private boolean propagate() {
+            while (this.queueSize > 0) {
+                int t = this.poll();
+                int domain = this.unmatched > this.slack ? 0 : this.revise(t);
+                if (domain == 0) {
+                    this.weigh(t);
+                    this.clearQueue();
+                    return false;
+                }
+                this.setDomain(t, domain);
+            }
+            return this.unmatched <= this.slack;
+        }
+
+        // Counts a contradiction met on the tile t, if the weights are kept
+        private void weigh(int t) {
+            if (this.weights == null)
+                return;
+            this.weights[t]++;
+            for (int s = 0; s < sides; s++) {
+                int n = neighbors[t * sides + s];
+                if (n != -1)
+                    this.weights[n]++;
+            }
+        }
+
+        // Returns the candidates of the tile t which would not force more
+        // unmatched cable ends than the slack left, given the domains of its
+        // neighbors
+        private int revise(int t) {
+            int left = this.slack - this.unmatched;
+            if (left >= sides)
+                return this.domains[t];
+            // once and twice hold the candidates forcing at least one and at
+            // least two new unmatched ends, counts the others when needed
+            int domain = this.domains[t];
+            int once = 0;
+            int twice = 0;
+            int[] forcing = this.forcingBySide;
+            for (int s = 0; s < sides; s++) {
+                int bad = this.forcing(t, s);
+                twice |= once & bad;
+                once |= bad;
+                forcing[s] = bad;
+            }
+            if (left == 0)
+                return domain & ~once;
+            if (left == 1)
+                return domain & ~twice;
+            for (int c = 0; c < candidates[t].length; c++) {
+                int count = 0;
+                for (int s = 0; s < sides; s++)
+                    count += forcing[s] >>> c & 1;
+                if (count > left)
+                    domain &= ~(1 << c);
+            }
+            return domain;
+        }
+
+        // Returns the candidates of the tile t that would force a new
+        // unmatched cable end on its side s, given the domain of the neighbor
+        private int forcing(int t, int s) {
+            if (this.isUnmatched(t, s))
+                return 0;
+            int connected = connectedCandidates[t * sides + s];
+            int n = neighbors[t * sides + s];
+            if (n == -1)
+                return connected;
+            int facing = connectedCandidates[n * sides + shape.opposite(s)];
+            int neighborDomain = this.domains[n];
+            if ((neighborDomain & facing) == 0)
+                return connected;
+            if ((neighborDomain & ~facing) == 0)
+                return ~connected;
+            return 0;
+        }
+
+        // Returns true if the side s of the tile t holds a cable end which is
+        // unmatched whatever the remaining choices
+        private boolean isUnmatched(int t, int s) {
+            int connected = connectedCandidates[t * sides + s];
+            int domain = this.domains[t];
+            boolean always = (domain & ~connected) == 0;
+            int n = neighbors[t * sides + s];
+            if (n == -1)
+                return always;
+            boolean never = (domain & connected) == 0;
+            int facing = connectedCandidates[n * sides + shape.opposite(s)];
+            int neighborDomain = this.domains[n];
+            return always && (neighborDomain & facing) == 0
+                || never && (neighborDomain & ~facing) == 0;
+        }
+
+        // Sets the domain of the tile t, keeping track of the previous one and
+        // queuing the neighbors of t if it changed
+        private void setDomain(int t, int domain) {
+            if (this.domains[t] == domain)
+                return;
+            if (this.trailSize == this.trail.length)
+                this.trail = Arrays.copyOf(this.trail, 2 * this.trail.length);
+            int previous = this.domains[t];
+            int before = 0;
+            for (int s = 0; s < sides; s++) {
+                if (this.isUnmatched(t, s))
+                    before++;
+            }
+            this.trail[this.trailSize++] = t;
+            this.trail[this.trailSize++] = previous;
+            this.trail[this.trailSize++] = this.unmatched;
+            this.domains[t] = domain;
+            int after = 0;
+            for (int s = 0; s < sides; s++) {
+                int n = neighbors[t * sides + s];
+                if (this.isUnmatched(t, s))
+                    after++;
+                if (n == -1)
+                    continue;
+                this.enqueue(n);
+                int connected = connectedCandidates[t * sides + s];
+                if ((previous & connected) == 0 || (domain & connected) != 0)
+                    continue;
+                if (this.grouped && this.certified[t * sides + s]) {
+                    this.certificateBroken = true;
+                    if (this.brokenCount == this.brokenSides.length)
+                        this.brokenSides = Arrays.copyOf(this.brokenSides,
+                                                         2 * brokenCount);
+                    this.brokenSides[this.brokenCount++] = t * sides + s;
+                } else if (!this.grouped
+                           && (this.reachedFrom[t] == s
+                               || this.reachedFrom[n] == shape.opposite(s))) {
+                    this.certificateBroken = true;
+                }
+            }
+            this.unmatched += after - before;
+            if (this.slackLeft() > 0)
+                this.updateMatching(t);
+            // less slack left may rule out the candidates of any forcing tile
+            if (after > before && this.unmatched <= this.slack
+                && this.slack - this.unmatched < sides) {
+                this.enqueue(t);
+                if (this.forcingTiles == null) {
+                    for (int k = 0; k < this.domains.length; k++)
+                        this.enqueue(k);
+                }
+                for (int k = 0; k < this.forcingCount; k++)
+                    this.enqueue(this.forcingTiles[k]);
+            }
+        }
+
+        // Restores the domains as they were when the trail had the given size
+        private void undo(int mark) {
+            while (this.trailSize > mark) {
+                this.unmatched = this.trail[--this.trailSize];
+                int domain = this.trail[--this.trailSize];
+                int t = this.trail[--this.trailSize];
+                this.domains[t] = domain;
+                if (this.slackLeft() > 0)
+                    this.updateMatching(t);
+            }
+        }
+
+        private void enqueue(int t) {
+            if (this.queued[t])
+                return;
+            this.queued[t] = true;
+            this.queue[(this.head + this.queueSize) % this.queue.length] = t;
+            this.queueSize++;
+        }
+
+        private int poll() {
+            int t = this.queue[this.head];
+            this.head = (this.head + 1) % this.queue.length;
+            this.queueSize--;
+            this.queued[t] = false;
+            return t;
+        }
+
+        private void clearQueue() {
+            while (this.queueSize > 0)
+                this.poll();
+        }
+
+        // Returns true if, every tile being decided, all the lamps are linked
+        // to a source and there is at least one tile
+        boolean allLampsPoweredOn() {
+            return this.domains.length > 0 && this.lampsCanBePowered();
+        }
+
+        // Returns true if the sides s of the tile t and the facing side of its
+        // neighbor n can still be connected
+        private boolean canLink(int t, int s, int n) {
+            return (this.domains[t] & connectedCandidates[t * sides + s]) != 0
+                && (this.domains[n]
+                    & connectedCandidates[n * sides + shape.opposite(s)]) != 0;
+        }
+
+        // Returns true if the sides s of the tile t and the facing side of its
+        // neighbor n are connected whatever the remaining choices
+        private boolean isLinked(int t, int s, int n) {
+            return (this.domains[t] & ~connectedCandidates[t * sides + s]) == 0
+                && (this.domains[n]
+                    & ~connectedCandidates[n * sides + shape.opposite(s)])
+                   == 0;
+        }
+
+        // Returns true if every lamp is linked to a source through sides that
+        // can still be connected on both tiles. Once every tile is decided,
+        // this means that every lamp is powered.
+        private boolean lampsCanBePowered() {
+            int[] from = this.nextReachedFrom;
+            Arrays.fill(this.reached, false);
+            Arrays.fill(from, -1);
+            int size = 0;
+            for (int t: sources) {
+                this.reached[t] = true;
+                this.stack[size++] = t;
+            }
+            int lampsReached = 0;
+            boolean hotspotsReached = false;
+            while (size > 0 && lampsReached < lampCount) {
+                int t = this.stack[--size];
+                if (components[t] == Component.LAMP)
+                    lampsReached++;
+                if (components[t] == Component.HOTSPOT && !hotspotsReached) {
+                    hotspotsReached = true;
+                    for (int h: hotspots) {
+                        if (!this.reached[h]) {
+                            this.reached[h] = true;
+                            this.stack[size++] = h;
+                        }
+                    }
+                }
+                for (int s = 0; s < sides; s++) {
+                    int nb = neighbors[t * sides + s];
+                    if (nb != -1 && !this.reached[nb]
+                        && this.canLink(t, s, nb)) {
+                        this.reached[nb] = true;
+                        from[nb] = shape.opposite(s);
+                        this.stack[size++] = nb;
+                    }
+                }
+            }
+            if (lampsReached < lampCount)
+                return false;
+            this.nextReachedFrom = this.reachedFrom;
+            this.reachedFrom = from;
+            return true;
+        }
+
+        // Gathers the tiles linked whatever the remaining choices into groups,
+        // and lists the links between groups that can still be connected
+        private void group() {
+            int n = this.domains.length;
+            Arrays.fill(this.groups, -1);
+            int count = 0;
+            for (int t = 0; t < n; t++) {
+                if (this.groups[t] != -1)
+                    continue;
+                int size = 0;
+                this.groups[t] = count;
+                this.stack[size++] = t;
+                while (size > 0) {
+                    int u = this.stack[--size];
+                    for (int s = 0; s < sides; s++) {
+                        int nb = neighbors[u * sides + s];
+                        if (nb != -1 && this.groups[nb] == -1
+                            && this.isLinked(u, s, nb)) {
+                            this.groups[nb] = count;
+                            this.stack[size++] = nb;
+                        }
+                    }
+                }
+                count++;
+            }
+            if (this.groupLamps == null || this.groupLamps.length < count) {
+                this.groupLamps = new int[count];
+                this.groupHotspots = new boolean[count];
+                this.groupReached = new boolean[count];
+                this.groupReachedBy = new int[count];
+                this.groupOrder = new int[count];
+                this.certifiedOrder = new int[count];
+                this.walked = new int[count];
+                this.walkStamp = 0;
+                this.linkStarts = new int[count + 1];
+            }
+            this.groupCount = count;
+            Arrays.fill(this.groupLamps, 0, count, 0);
+            Arrays.fill(this.groupHotspots, 0, count, false);
+            Arrays.fill(this.linkStarts, 0, count + 1, 0);
+            for (int t = 0; t < n; t++) {
+                int g = this.groups[t];
+                if (components[t] == Component.LAMP)
+                    this.groupLamps[g]++;
+                else if (components[t] == Component.HOTSPOT)
+                    this.groupHotspots[g] = true;
+                for (int s = 0; s < sides; s++) {
+                    if (this.isGroupLink(t, s))
+                        this.linkStarts[g + 1]++;
+                }
+            }
+            for (int g = 0; g < count; g++)
+                this.linkStarts[g + 1] += this.linkStarts[g];
+            int total = this.linkStarts[count];
+            if (this.links == null || this.links.length < 2 * total)
+                this.links = new int[2 * total];
+            int[] next = Arrays.copyOf(this.linkStarts, count);
+            for (int t = 0; t < n; t++) {
+                for (int s = 0; s < sides; s++) {
+                    if (this.isGroupLink(t, s)) {
+                        int at = next[this.groups[t]]++;
+                        this.links[2 * at] = t;
+                        this.links[2 * at + 1] = s;
+                    }
+                }
+            }
+        }
+
+        // Returns true if the side s of the tile t can still be linked to a
+        // tile of another group
+        private boolean isGroupLink(int t, int s) {
+            int nb = neighbors[t * sides + s];
+            return nb != -1 && this.groups[nb] != this.groups[t]
+                && this.canLink(t, s, nb);
+        }
+
+        // Returns true if every lamp is linked to a source through sides that
+        // can still be connected on both tiles, as lampsCanBePowered, walking
+        // the groups made by group
+        private boolean groupsCanBePowered() {
+            boolean[] reached = this.groupReached;
+            int[] order = this.groupOrder;
+            Arrays.fill(reached, 0, this.groupCount, false);
+            Arrays.fill(order, 0, this.groupCount, Integer.MAX_VALUE);
+            int size = 0;
+            int count = 0;
+            for (int t: sources) {
+                int g = this.groups[t];
+                if (!reached[g]) {
+                    reached[g] = true;
+                    order[g] = count++;
+                    this.groupReachedBy[g] = -1;
+                    this.stack[size++] = g;
+                }
+            }
+            int lampsReached = 0;
+            boolean hotspotsReached = false;
+            while (size > 0 && lampsReached < lampCount) {
+                int g = this.stack[--size];
+                lampsReached += this.groupLamps[g];
+                if (this.groupHotspots[g] && !hotspotsReached) {
+                    hotspotsReached = true;
+                    for (int h: hotspots) {
+                        int hg = this.groups[h];
+                        if (!reached[hg]) {
+                            reached[hg] = true;
+                            order[hg] = count++;
+                            this.groupReachedBy[hg] = -1;
+                            this.stack[size++] = hg;
+                        }
+                    }
+                }
+                for (int k = this.linkStarts[g]; k < this.linkStarts[g + 1];
+                     k++) {
+                    int t = this.links[2 * k];
+                    int s = this.links[2 * k + 1];
+                    int nb = neighbors[t * sides + s];
+                    int ng = this.groups[nb];
+                    if (!reached[ng] && this.canLink(t, s, nb)) {
+                        reached[ng] = true;
+                        order[ng] = count++;
+                        this.groupReachedBy[ng] = t * sides + s;
+                        this.stack[size++] = ng;
+                    }
+                }
+            }
+            return lampsReached >= lampCount;
+        }
+
+        // Returns true if every lamp can still be powered once the certified
+        // links ruled out by the last assignment are lost, as
+        // groupsCanBePowered. The groups these links lead to are walked from
+        // in the order the certificate reached them: by induction, the groups
+        // reached before each of them can still be powered, so it is enough
+        // that it still links to one of them. Otherwise it is cut off along
+        // with every group it can link to, and if they hold a lamp, it cannot
+        // be powered.
+        private boolean groupsCanStillBePowered() {
+            int[] cut = this.brokenSides;
+            int count = 0;
+            for (int k = 0; k < this.brokenCount; k++) {
+                int g = this.certifiedGroup[cut[k]];
+                int at = count;
+                while (at > 0 && this.certifiedOrder[cut[at - 1]]
+                                 > this.certifiedOrder[g])
+                    at--;
+                if (at > 0 && cut[at - 1] == g)
+                    continue;
+                System.arraycopy(cut, at, cut, at + 1, count - at);
+                cut[at] = g;
+                count++;
+            }
+            for (int k = 0; k < count; k++) {
+                int lamps = this.walkFrom(cut[k]);
+                if (lamps == -1)
+                    continue;
+                if (lamps > 0)
+                    return false;
+                // a hotspot may link them, and a group cut off without lamp
+                // may have been relied on by the next ones
+                return lamps == 0 && count == 1 || this.groupsCanBePowered();
+            }
+            return true;
+        }
+
+        // Walks the groups the group g can link to, stopping at the first one
+        // reached before g by the certificate. Returns -1 if there is one, -2
+        // if the groups walked hold a hotspot, otherwise their number of
+        // lamps.
+        private int walkFrom(int g) {
+            int order = this.certifiedOrder[g];
+            int stamp = ++this.walkStamp;
+            int size = 0;
+            int lamps = 0;
+            this.walked[g] = stamp;
+            this.stack[size++] = g;
+            while (size > 0) {
+                int h = this.stack[--size];
+                if (this.groupHotspots[h])
+                    return -2;
+                lamps += this.groupLamps[h];
+                for (int k = this.linkStarts[h]; k < this.linkStarts[h + 1];
+                     k++) {
+                    int t = this.links[2 * k];
+                    int s = this.links[2 * k + 1];
+                    int nb = neighbors[t * sides + s];
+                    int ng = this.groups[nb];
+                    if (this.walked[ng] == stamp || !this.canLink(t, s, nb))
+                        continue;
+                    if (this.certifiedOrder[ng] < order)
+                        return -1;
+                    this.walked[ng] = stamp;
+                    this.stack[size++] = ng;
+                }
+            }
+            return lamps;
+        }
+
+        // Checks that every lamp can still be powered as groupsCanBePowered,
+        // and if so makes the group links walked the certificate
+        private boolean certifyGroups() {
+            for (int k = 0; k < this.certifiedCount; k++)
+                this.certified[this.certifiedSides[k]] = false;
+            this.certifiedCount = 0;
+            if (!this.groupsCanBePowered())
+                return false;
+            System.arraycopy(this.groupOrder, 0, this.certifiedOrder, 0,
+                             this.groupCount);
+            for (int g = 0; g < this.groupCount; g++) {
+                int by = this.groupReachedBy[g];
+                if (!this.groupReached[g] || by == -1)
+                    continue;
+                int facing = neighbors[by] * sides + shape.opposite(by % sides);
+                this.certified[by] = true;
+                this.certified[facing] = true;
+                this.certifiedGroup[by] = g;
+                this.certifiedGroup[facing] = g;
+                this.certifiedSides[this.certifiedCount++] = by;
+                this.certifiedSides[this.certifiedCount++] = facing;
+            }
+            return true;
+        }
+    }
+}
@@ -13,8 +13,8 @@ public class Tile {
     // The position in a matrix of this Tile
     private final Position position;
 
-    // The border of this Tile
-    private final boolean[] border;
+    // The border of this Tile, the bit i being set if the side i is connected
+    private int border;
 
     // The electrical part of this Tile
     private Component component;
@@ -30,7 +30,7 @@ public class Tile {
                  Position position,
                  Component component) {
         this.shape = shape;
-        this.border = new boolean[shape.sides()];
+        this.border = 0;
         this.position = position;
         this.component = component;
         this.isPowered = this.component == Component.SOURCE;
@@ -113,6 +113,7 @@ public class Tile {
     
     public void setComponent(Component c) {
     	this.component = c;
+        if (c == Component.SOURCE) this.isPowered = true;
     }
 
     /**
@@ -183,8 +184,8 @@ public class Tile {
 
     private String borderLevelFileRepresentation() {
         StringBuilder res = new StringBuilder();
-        for (int i = 0; i < this.border.length; i++) {
-            if (this.border[i]) {
+        for (int i = 0; i < this.shape.sides(); i++) {
+            if (this.side(i)) {
             	res.append(" ").append(i);
             }
         }
@@ -220,11 +221,7 @@ public class Tile {
 
     // Shifts clockwise the connected sides of this Tile
     private void rotateBorder() {
-        boolean tmp = border[border.length - 1];
-        for (int i = border.length - 1; i > 0; i--) {
-            border[i] = border[i - 1];
-        }
-        border[0] = tmp;        
+        this.border = this.shape.rotate(this.border);
     }
 
     // Returns true if this Tile is at given Position
@@ -245,33 +242,44 @@ public class Tile {
         Objects.requireNonNull(tile);
         int ts = this.position.touchingSide(tile.position, this.shape);
         return this.shape == tile.shape
-            && this.position.isNeighbor(tile.position, this.shape)
+            && ts != -1
             && this.isConnectedTo(tile, ts);
     }
     
     // Returns true if this Border and the given Border are connected at the ith
     // side of this Border
     private boolean isConnectedTo(Tile tile, int i) {
-        int len = border.length;
-        return this.border[i] && tile.border[(i + len / 2) % len];
+        return ((this.border >>> i)
+                & (tile.border >>> this.shape.opposite(i))
+                & 1) != 0;
     }    
 
     public boolean side(int i) {
-        return this.border[i];
+        return ((this.border >>> i) & 1) != 0;
+    }
+
+    // Returns the border of this Tile as a mask, the bit i being set if the
+    // side i is connected
+    public int borderMask() {
+        return this.border;
     }
 
     // Sets this Tile's component to EMPTY and disconnects all the sides
     public void clear() {
         this.component = Component.EMPTY;
-        Arrays.fill(this.border, false);
+        this.border = 0;
     }
     
     // If connect is true, connects the side at i, otherwise disconnects the
     // side at i
     private boolean connectOrDisconnectAt(boolean connect, int i) {
-        boolean prev = this.border[i];
-        this.border[i] = connect;
-        return this.border[i] != prev;
+        Objects.checkIndex(i, this.shape.sides());
+        int prev = this.border;
+        if (connect)
+            this.border |= 1 << i;
+        else
+            this.border &= ~(1 << i);
+        return this.border != prev;
     }
     
     // Connects the given side of the border of this Tile
@@ -286,37 +294,26 @@ public class Tile {
 
     // Returns the number of sides of this Tile
     public int length() {
-        return this.border.length;
+        return this.shape.sides();
     }
 
     // Returns true if this Tile has 0 connected sides
     public boolean isDisconnected() {
-        for (boolean side: this.border) {
-            if (side) {
-                return false;
-            }
-        }
-        return true;
+        return this.border == 0;
     }
 
     // Returns the number of connected sides
     public int connectedSides() {
-        int res = 0;
-        for (boolean side: this.border) {
-            if (side) {
-                res++;
-            }
-        }
-        return res;
+        return Integer.bitCount(this.border);
     }
 
     // Return the indices of disconnected sides
 	public List<Integer> getDisconnectedSidesAsIndices() {
 		ArrayList<Integer> disc = new ArrayList<>();
-		for (int i = 0; i < this.border.length; i++) {
-			if (!this.border[i]) {
-				disc.add(i);
-			}
+        int disconnected = ~this.border & this.shape.fullMask();
+		while (disconnected != 0) {
+			disc.add(Integer.numberOfTrailingZeros(disconnected));
+            disconnected &= disconnected - 1;
 		}
 		return disc;
 	}
@@ -324,7 +321,7 @@ public class Tile {
     // Connects the given sides of this Tile
     public void connect(int ... sides) {
         for (int i: sides)
-            this.border[i] = true;
+            this.connectOrDisconnectAt(true, i);
     }
 
     public int touchingSide(Tile other) {
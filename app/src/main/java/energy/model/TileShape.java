@@ -8,20 +8,55 @@ public enum TileShape {
     /**
      * The square shape with 4 sides.
      */
-    SQUARE(4, "S"),
+    SQUARE(4, "S",
+           new int[][] {{-1, 0, 1, 0}, {-1, 0, 1, 0}},
+           new int[][] {{0, 1, 0, -1}, {0, 1, 0, -1}}),
 
     /**
      * The hexagon shape with 6 sides.
      */
-    HEXAGON(6, "H");
+    HEXAGON(6, "H",
+            new int[][] {{-1, -1, 0, 1, 0, -1}, {-1, 0, 1, 1, 1, 0}},
+            new int[][] {{0, 1, 1, 0, -1, -1}, {0, 1, 1, 0, -1, -1}});
 
     // Number of sides associated to each TileShape
     private final int sides;
     private final String fileIdentifier;
 
-    TileShape(int sides, String fileIdentifier) {
+    // Border mask with every side connected
+    private final int fullMask;
+
+    // For each border mask, the border mask obtained after one rotation, and
+    // the smallest border mask obtained after any number of rotations
+    private final int[] rotations;
+    private final int[] smallestRotations;
+
+    // Line and column offsets of the neighbor touching each side, for a tile
+    // on an even column (index 0) and on an odd column (index 1)
+    private final int[][] lineOffsets;
+    private final int[][] columnOffsets;
+
+    TileShape(int sides,
+              String fileIdentifier,
+              int[][] lineOffsets,
+              int[][] columnOffsets) {
         this.sides = sides;
         this.fileIdentifier = fileIdentifier;
+        this.lineOffsets = lineOffsets;
+        this.columnOffsets = columnOffsets;
+        this.fullMask = (1 << sides) - 1;
+        this.rotations = new int[1 << sides];
+        for (int mask = 0; mask < this.rotations.length; mask++) {
+            this.rotations[mask] =
+                ((mask << 1) | (mask >>> (sides - 1))) & this.fullMask;
+        }
+        this.smallestRotations = new int[1 << sides];
+        for (int mask = 0; mask < this.rotations.length; mask++) {
+            int min = mask;
+            for (int m = this.rotations[mask]; m != mask; m = this.rotations[m])
+                min = Math.min(min, m);
+            this.smallestRotations[mask] = min;
+        }
     }
 
     // Returns the number of sides of this TileShape
@@ -29,6 +64,47 @@ public enum TileShape {
         return this.sides;
     }
 
+    // Returns the border mask with every side of this TileShape connected
+    public int fullMask() {
+        return this.fullMask;
+    }
+
+    // Returns the given border mask once rotated, that is with the side i
+    // moved to the side i + 1
+    public int rotate(int mask) {
+        return this.rotations[mask];
+    }
+
+    // Returns the smallest border mask the given one takes by rotating, the
+    // same for all the rotations of a border mask
+    public int smallestRotation(int mask) {
+        return this.smallestRotations[mask];
+    }
+
+    // Returns the side facing the given side of a neighbor of this TileShape
+    public int opposite(int side) {
+        return (side + this.sides / 2) % this.sides;
+    }
+
+    // Returns the line offset of the neighbor touching the given side of a
+    // tile of this TileShape on the given column
+    public int lineOffset(int side, int column) {
+        return this.lineOffsets[column & 1][side];
+    }
+
+    // Returns the column offset of the neighbor touching the given side of a
+    // tile of this TileShape on the given column
+    public int columnOffset(int side, int column) {
+        return this.columnOffsets[column & 1][side];
+    }
+
+    // Returns true if a board of this TileShape and of the given height holds
+    // a tile at the given line and column. The last line of a board of
+    // hexagons has no tile on odd columns, as these would stick out of it.
+    public boolean hasCell(int line, int column, int height) {
+        return this != HEXAGON || line != height - 1 || column % 2 == 0;
+    }
+
     public String fileIdentifier() {
         return this.fileIdentifier;
     }
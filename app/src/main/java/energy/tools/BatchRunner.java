@@ -0,0 +1,367 @@
+package energy.tools;
+
+import energy.model.Level;
+import energy.model.LevelConfig;
+import energy.model.LevelPack;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Command line tool checking levels without a display. Each level is read,
+ * turned into a Level and its electricity is propagated; the level passes if
+ * all its lamps are powered on in the state it was saved in. The time taken
+ * by each step is reported for each level, as CSV or JSON.
+ * <pre>
+ * BatchRunner [--format csv|json] [--threads N] [--output FILE] SOURCE...
+ * </pre>
+ * A source is a directory of level files, named levelINTEGER.nrg or
+ * levelINTEGER.nrgb, or a level pack. The levels are checked in parallel and
+ * reported in the order of their sources and ids. The exit status is 1 if a
+ * level can not be read or does not pass, 0 otherwise.
+ */
+public final class BatchRunner {
+
+    /**
+     * The result of the check of a level.
+     */
+    public static final class Result {
+        private final String source;
+        private final int id;
+        private final int tiles;
+        private final boolean finished;
+        private final long loadNanos;
+        private final long buildNanos;
+        private final long propagateNanos;
+        private final String error;
+
+        // Initializes a Result from given parameters
+        private Result(String source,
+                       int id,
+                       int tiles,
+                       boolean finished,
+                       long loadNanos,
+                       long buildNanos,
+                       long propagateNanos,
+                       String error) {
+            this.source = source;
+            this.id = id;
+            this.tiles = tiles;
+            this.finished = finished;
+            this.loadNanos = loadNanos;
+            this.buildNanos = buildNanos;
+            this.propagateNanos = propagateNanos;
+            this.error = error;
+        }
+
+        /**
+         * {@return the file the level was read from}
+         */
+        public String source() {
+            return this.source;
+        }
+
+        /**
+         * {@return the id of the level}
+         */
+        public int id() {
+            return this.id;
+        }
+
+        /**
+         * {@return the number of tiles of the level}
+         */
+        public int tiles() {
+            return this.tiles;
+        }
+
+        /**
+         * {@return true if all the lamps of the level are powered on}
+         */
+        public boolean finished() {
+            return this.finished;
+        }
+
+        /**
+         * {@return the time taken to read the level, in nanoseconds}
+         */
+        public long loadNanos() {
+            return this.loadNanos;
+        }
+
+        /**
+         * {@return the time taken to build the Level, in nanoseconds}
+         */
+        public long buildNanos() {
+            return this.buildNanos;
+        }
+
+        /**
+         * {@return the time taken to propagate electricity, in nanoseconds}
+         */
+        public long propagateNanos() {
+            return this.propagateNanos;
+        }
+
+        /**
+         * {@return the reason the level could not be read, null if none}
+         */
+        public String error() {
+            return this.error;
+        }
+
+        /**
+         * {@return true if the level was read and all its lamps are powered
+         * on}
+         */
+        public boolean passed() {
+            return this.error == null && this.finished;
+        }
+    }
+
+    // A level to check: its source and a way to read it
+    private static final class Task {
+        private final String source;
+        private final int id;
+        private final Supplier<LevelConfig> loader;
+
+        private Task(String source, int id, Supplier<LevelConfig> loader) {
+            this.source = source;
+            this.id = id;
+            this.loader = loader;
+        }
+    }
+
+    private BatchRunner() {}
+
+    /**
+     * Entry point.
+     * @param args the arguments of the program
+     */
+    public static void main(String[] args) throws IOException {
+        String format = "csv";
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = null;
+        List<Path> sources = new ArrayList<>();
+        try {
+            for (int k = 0; k < args.length; k++) {
+                switch (args[k]) {
+                    case "--format":
+                        format = args[++k];
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++k]);
+                        break;
+                    case "--output":
+                        output = Path.of(args[++k]);
+                        break;
+                    default:
+                        sources.add(Path.of(args[k]));
+                }
+            }
+        } catch (RuntimeException e) {
+            sources.clear();
+        }
+        if (sources.isEmpty() || threads < 1
+            || !(format.equals("csv") || format.equals("json"))) {
+            System.err.println("Usage: BatchRunner [--format csv|json] "
+                               + "[--threads N] [--output FILE] SOURCE...");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = run(sources, threads);
+        long elapsed = System.nanoTime() - start;
+
+        Writer out = output == null
+            ? new PrintWriter(System.out)
+            : Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+        try {
+            if (format.equals("json"))
+                writeJson(results, out);
+            else
+                writeCsv(results, out);
+        } finally {
+            if (output == null)
+                out.flush();
+            else
+                out.close();
+        }
+
+        long failed = results.stream().filter(r -> !r.passed()).count();
+        PrintStream summary = output == null ? System.err : System.out;
+        summary.printf("%d levels checked in %d ms on %d threads, "
+                       + "%d failed%n",
+                       results.size(), elapsed / 1_000_000, threads, failed);
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * {@return the results of the check of the levels of the given sources,
+     * using the given number of threads}
+     * @throws IOException if a source can not be listed or opened
+     */
+    public static List<Result> run(List<Path> sources, int threads)
+        throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        for (Path source: sources)
+            addTasks(source, tasks);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> tasks.parallelStream()
+                                          .map(BatchRunner::check)
+                                          .collect(Collectors.toList()))
+                       .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Adds the levels of the given directory or pack to tasks, by id
+    private static void addTasks(Path source, List<Task> tasks)
+        throws IOException {
+        List<Task> found = new ArrayList<>();
+        if (source.toString().endsWith(LevelPack.FILE_FORMAT)) {
+            LevelPack pack = LevelPack.open(source);
+            for (int id: pack.ids())
+                found.add(new Task(source.toString(), id, () -> pack.get(id)));
+        } else {
+            try (DirectoryStream<Path> stream =
+                     Files.newDirectoryStream(source)) {
+                for (Path file: stream) {
+                    int id = LevelConfig.idOf(file.getFileName().toString());
+                    if (id != -1)
+                        found.add(new Task(file.toString(), id,
+                                           () -> read(file)));
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt((Task t) -> t.id)
+                             .thenComparing(t -> t.source));
+        tasks.addAll(found);
+    }
+
+    // Reads the level file at the given path
+    private static LevelConfig read(Path file) {
+        LevelConfig lc = LevelConfig.fromFile(file.toString());
+        if (lc == null)
+            throw new IllegalStateException("can not read the file");
+        return lc;
+    }
+
+    // Checks the level of the given task
+    private static Result check(Task task) {
+        long t0 = System.nanoTime();
+        LevelConfig lc;
+        try {
+            lc = task.loader.get();
+        } catch (RuntimeException e) {
+            return new Result(task.source, task.id, 0, false,
+                              System.nanoTime() - t0, 0, 0, e.getMessage());
+        }
+        long t1 = System.nanoTime();
+        Level level = Level.fromLevelConfig(lc);
+        long t2 = System.nanoTime();
+        level.blackout();
+        level.propagateElectricity();
+        boolean finished = level.isFinished();
+        long t3 = System.nanoTime();
+        return new Result(task.source, task.id,
+                          level.getCircuit().getTiles().size(), finished,
+                          t1 - t0, t2 - t1, t3 - t2, null);
+    }
+
+    /**
+     * Writes the given results as CSV, with a header line and times in
+     * microseconds.
+     * @throws IOException if the results can not be written
+     */
+    public static void writeCsv(List<Result> results, Writer out)
+        throws IOException {
+        out.write("source,id,tiles,finished,load_us,build_us,propagate_us,"
+                  + "error\n");
+        StringBuilder sb = new StringBuilder();
+        for (Result r: results) {
+            sb.setLength(0);
+            sb.append(csvField(r.source)).append(',')
+              .append(r.id).append(',')
+              .append(r.tiles).append(',')
+              .append(r.finished).append(',')
+              .append(r.loadNanos / 1000).append(',')
+              .append(r.buildNanos / 1000).append(',')
+              .append(r.propagateNanos / 1000).append(',')
+              .append(r.error == null ? "" : csvField(r.error))
+              .append('\n');
+            out.write(sb.toString());
+        }
+    }
+
+    /**
+     * Writes the given results as a JSON array of objects, with times in
+     * microseconds.
+     * @throws IOException if the results can not be written
+     */
+    public static void writeJson(List<Result> results, Writer out)
+        throws IOException {
+        out.write("[\n");
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < results.size(); k++) {
+            Result r = results.get(k);
+            sb.setLength(0);
+            sb.append("  {\"source\": ").append(jsonString(r.source))
+              .append(", \"id\": ").append(r.id)
+              .append(", \"tiles\": ").append(r.tiles)
+              .append(", \"finished\": ").append(r.finished)
+              .append(", \"load_us\": ").append(r.loadNanos / 1000)
+              .append(", \"build_us\": ").append(r.buildNanos / 1000)
+              .append(", \"propagate_us\": ").append(r.propagateNanos / 1000)
+              .append(", \"error\": ")
+              .append(r.error == null ? "null" : jsonString(r.error))
+              .append(k == results.size() - 1 ? "}\n" : "},\n");
+            out.write(sb.toString());
+        }
+        out.write("]\n");
+    }
+
+    // Quotes the given field if it holds a separator or a quote
+    private static String csvField(String s) {
+        if (s.indexOf(',') == -1 && s.indexOf('"') == -1
+            && s.indexOf('\n') == -1)
+            return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    // Returns the given string as a JSON string
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int k = 0; k < s.length(); k++) {
+            char c = s.charAt(k);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,180 @@
+package energy.tools;
+
+import energy.model.LevelConfig;
+import energy.model.LevelPack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Command line tool packing the level files of a directory into a LevelPack,
+ * and unpacking a LevelPack into level files.
+ * <pre>
+ * LevelPackTool pack DIRECTORY PACK [--distinct]
+ * LevelPackTool unpack PACK DIRECTORY [nrg|nrgb]
+ * </pre>
+ * With --distinct, a level describing the same puzzle as a level of smaller
+ * id, up to the rotations of its tiles, is not packed. Levels are first
+ * compared by fingerprint, then tile by tile when their fingerprints are
+ * equal, the earlier level being read again from its file.
+ */
+public final class LevelPackTool {
+
+    private LevelPackTool() {}
+
+    /**
+     * Entry point.
+     * @param args the arguments of the program
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            boolean distinct = args.length >= 4 && args[3].equals("--distinct");
+            int count = pack(Path.of(args[1]), Path.of(args[2]), distinct);
+            System.out.println("Packed " + count + " levels into " + args[2]);
+        } else if (args.length >= 3 && args[0].equals("unpack")) {
+            String format = args.length >= 4 && args[3].equals("nrgb")
+                ? LevelConfig.BINARY_FILE_FORMAT
+                : LevelConfig.FILE_FORMAT;
+            int count = unpack(Path.of(args[1]), Path.of(args[2]), format);
+            System.out.println("Unpacked " + count + " levels into " + args[2]);
+        } else {
+            System.err.println(
+                "Usage: LevelPackTool pack DIRECTORY PACK [--distinct]");
+            System.err.println(
+                "       LevelPackTool unpack PACK DIRECTORY [nrg|nrgb]");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Packs the level files of the given directory, named levelINTEGER.nrg or
+     * levelINTEGER.nrgb, into a new pack file. The .nrg file is taken when a
+     * level exists in both formats.
+     * @return the number of packed levels
+     * @throws IOException if a file can not be read or written
+     */
+    public static int pack(Path directory, Path pack) throws IOException {
+        return pack(directory, pack, false);
+    }
+
+    /**
+     * Packs the level files of the given directory as pack(directory, pack),
+     * leaving out the levels describing the same puzzle as a level of smaller
+     * id if distinct is true.
+     * @return the number of packed levels
+     * @throws IOException if a file can not be read or written
+     */
+    public static int pack(Path directory, Path pack, boolean distinct)
+        throws IOException {
+        Map<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream =
+                 Files.newDirectoryStream(directory)) {
+            for (Path file: stream) {
+                String name = file.getFileName().toString();
+                int id = LevelConfig.idOf(name);
+                if (id != -1 && (!files.containsKey(id)
+                                 || name.endsWith(LevelConfig.FILE_FORMAT)))
+                    files.put(id, file);
+            }
+        }
+
+        // Levels are read one at a time while the pack is written, a level
+        // ahead so that duplicates are skipped
+        Iterator<Path> paths = files.values().iterator();
+        Map<Long, List<Path>> fingerprints = new HashMap<>();
+        int[] skipped = new int[1];
+        Iterator<LevelConfig> levels = new Iterator<>() {
+            private LevelConfig next = this.advance();
+
+            // Returns the next level to pack, null if none
+            private LevelConfig advance() {
+                while (paths.hasNext()) {
+                    Path file = paths.next();
+                    LevelConfig lc = read(file);
+                    if (!distinct)
+                        return lc;
+                    List<Path> packed = fingerprints.computeIfAbsent(
+                        lc.fingerprint(), k -> new ArrayList<>(1));
+                    Path first = samePuzzle(lc, packed);
+                    if (first == null) {
+                        packed.add(file);
+                        return lc;
+                    }
+                    skipped[0]++;
+                    System.err.println("Skipped " + file.getFileName()
+                                       + ", same puzzle as "
+                                       + first.getFileName());
+                }
+                return null;
+            }
+
+            @Override public boolean hasNext() {
+                return this.next != null;
+            }
+
+            @Override public LevelConfig next() {
+                if (this.next == null)
+                    throw new NoSuchElementException();
+                LevelConfig res = this.next;
+                this.next = this.advance();
+                return res;
+            }
+        };
+        try {
+            LevelPack.write(pack, levels);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files.size() - skipped[0];
+    }
+
+    // Returns the level of the given file
+    // Throws UncheckedIOException if the file can not be read
+    private static LevelConfig read(Path file) {
+        LevelConfig lc = LevelConfig.fromFile(file.toString());
+        if (lc == null)
+            throw new UncheckedIOException(
+                new IOException("Can not read " + file));
+        return lc;
+    }
+
+    // Returns the first of the given files, all of the fingerprint of the
+    // given level, holding the same puzzle, null if none. Equal fingerprints
+    // are rare, so the files are read again rather than kept in memory.
+    private static Path samePuzzle(LevelConfig lc, List<Path> files) {
+        for (Path file: files) {
+            if (read(file).isSamePuzzle(lc))
+                return file;
+        }
+        return null;
+    }
+
+    /**
+     * Writes each level of the given pack to a file of the given directory,
+     * in the format of the given extension.
+     * @return the number of unpacked levels
+     * @throws IOException if a file can not be read or written
+     */
+    public static int unpack(Path pack, Path directory, String format)
+        throws IOException {
+        Files.createDirectories(directory);
+        LevelPack levels = LevelPack.open(pack);
+        int count = 0;
+        for (int id: levels.ids()) {
+            String name = LevelConfig.LEVEL_FILE_BASE_NAME + id + format;
+            levels.get(id).saveTo(directory.resolve(name));
+            count++;
+        }
+        return count;
+    }
+}
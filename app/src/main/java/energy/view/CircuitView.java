@@ -1,12 +1,13 @@
 package energy.view;
 
+import energy.model.Hint;
+import energy.model.Position;
 import energy.model.ReadOnlyCircuit;
 import energy.model.Tile;
 
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
+import java.util.Set;
 
 // The view of a Circuit
 public class CircuitView extends JPanel {
@@ -20,10 +21,20 @@ public class CircuitView extends JPanel {
     // Stores the previous dimension of the Circuit to display 
     Dimension prevCircuitDimension;
 
+    // Stores the size of this view when the centers were computed
+    Dimension prevSize;
+
+    // Images of the tiles at the current size
+    private final SpriteCache sprites = new SpriteCache();
+
+    // Tile shown as a hint, null if none
+    private Hint hint;
+
 	public CircuitView() {
 		this.model = null;
         this.cPoints = null;
         this.prevCircuitDimension = null;
+        this.prevSize = null;
         this.setLayout(null);
         this.setBackground(Color.BLACK);
 	}
@@ -100,99 +111,195 @@ public class CircuitView extends JPanel {
         }
     }
 
+    // Returns true if the centers of the tiles match the current dimension of
+    // the circuit and size of this view
+    private boolean areCentersUpToDate() {
+        return this.cPoints != null
+            && this.model.dimension().equals(this.prevCircuitDimension)
+            && this.getSize().equals(this.prevSize);
+    }
+
     @Override public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
-        if (!this.model.dimension().equals(this.prevCircuitDimension)) {
+        if (!this.areCentersUpToDate()) {
             loadShapeCenters();
             this.prevCircuitDimension = this.model.dimension();
+            this.prevSize = this.getSize();
         }
 
  		Graphics2D g2d = (Graphics2D)g;
-	 	double sideLength = this.getShapeSideLength();
-	 	int tileH = 0, tileW = 0, posX = 0, posY = 0;
+	 	boolean hexagons = this.model.areAllHexagonalTiles();
+	 	Dimension tileSize = this.tileSize(hexagons);
+	 	if (tileSize.width <= 0 || tileSize.height <= 0)
+	 		return;
+	 	this.sprites.setTileSize(tileSize.width, tileSize.height);
+
+	 	// Only the tiles touching the area to repaint are drawn
+	 	Rectangle clip = g.getClipBounds();
 	 	for(Tile t : this.model.tiles()) {
 	 		int line = t.position().getLine();
 			int column = t.position().getColumn();
 			Point point = cPoints[line][column];
-			TileView tv = new TileView(t);
 	 		if(point != null) {
+	 			Rectangle bounds = this.tileBounds(point, tileSize, hexagons);
+	 			if (clip != null && !clip.intersects(bounds))
+	 				continue;
 
-		 		// Display hexagons
-		 		if(this.model.areAllHexagonalTiles()) {
-		 			tileW = (int) (2*sideLength);
-			 		tileH = (int) (2*sideLength); // this is not hexagon height
-                                                  // but BufferedImage height
-		 			posX = (int) (point.getX() - tileW / 2);
-	 				posY = (int) (point.getY()
-                                  - (TileView.HEXAGON_IMAGE_SHAPE_HEIGHT * tileH
-                                     / TileView.HEXAGON_IMAGE_SHAPE_WIDTH) / 2);
-		 		}
-		 		
-		 		// Display squares
-		 		if(this.model.areAllSquaredTiles()) {
-		 			tileW = (int) sideLength;
-		 			tileH = (int) sideLength;
-		 			posX = (int) (point.getX() - tileW / 2);
-	 				posY = (int) (point.getY() - tileH / 2);   
-		 		}
-		 		
-		 		//Draw tile's border
-	 			Image tmp = tv
-                    .getBorderImage()
-                    .getScaledInstance(tileW, tileH, Image.SCALE_SMOOTH);
- 			    g2d.drawImage(tmp, posX, posY, null);
-		 		
- 			    //Draw cables
- 			    for(int i = 0; i < tv.getCableImages().size(); i++) {
- 			    	tmp = tv.getCableImages()
-                        .get(i)
-                        .getScaledInstance(tileW, tileH, Image.SCALE_SMOOTH);
- 			    	BufferedImage dimg =
-                        new BufferedImage(tileW,
-                                          tileH,
-                                          BufferedImage.TYPE_INT_ARGB);
- 			    	Graphics2D gBF = dimg.createGraphics();
- 			    	gBF.drawImage(tmp, 0, 0, null);
- 			    	gBF.dispose();
- 			    	
-		 			// Rotate
- 			    	BufferedImage rotatedImage =
-                        new BufferedImage(tileW, tileH, dimg.getType());
- 			    		
- 			    	double angle = Math.toRadians(tv.getAngles().get(i));
- 			    	AffineTransform at = new AffineTransform();
- 			    	
- 			    	if(model.areAllHexagonalTiles()) {
-                        // Compute proportional height
- 			    		int h = TileView.HEXAGON_IMAGE_SHAPE_HEIGHT * tileH
-                            / TileView.HEXAGON_IMAGE_SHAPE_WIDTH;
-                        at.rotate(angle, tileW / 2.0, h / 2.0);
- 			    	} else {
- 			    		at.rotate(angle,
-                                tileW / 2.0,
-                                tileH / 2.0);
- 			    	}
- 			    	
- 			    	Graphics2D gIm = rotatedImage.createGraphics();
- 			    	gIm.setTransform(at);
- 			    	gIm.drawImage(dimg, 0, 0, null);
- 			    	gIm.dispose();
- 			    	
- 			    	g2d.drawImage(rotatedImage, posX, posY, null);
- 		        }
- 			    
- 			    //Draw tile's component
- 			    if(tv.getComponentImage() != null) {
- 			    	tmp = tv
-                        .getComponentImage()
-                        .getScaledInstance(tileW, tileH, Image.SCALE_SMOOTH);
- 	 			    g2d.drawImage(tmp, posX, posY, null);
- 			    }
+		 		// Draw tile's border, cables and component at once
+ 			    g2d.drawImage(this.sprites.tileImage(t),
+                              bounds.x,
+                              bounds.y,
+                              null);
 	 		}
 	 	}
+	 	// The hint is drawn over the tiles around it
+	 	if (this.hint != null)
+	 		this.paintHint(g2d, tileSize, hexagons);
+    }
+
+    // Frames the tile of the hint and writes the number of rotations it
+    // needs
+    private void paintHint(Graphics2D g2d,
+                           Dimension tileSize,
+                           boolean hexagons) {
+        int line = this.hint.position().getLine();
+        int column = this.hint.position().getColumn();
+        if (line >= this.cPoints.length
+            || column >= this.cPoints[line].length
+            || this.cPoints[line][column] == null)
+            return;
+        Rectangle bounds =
+            this.tileBounds(this.cPoints[line][column], tileSize, hexagons);
+        g2d.setColor(Color.YELLOW);
+        g2d.setStroke(new BasicStroke(3));
+        g2d.drawRect(bounds.x + 1, bounds.y + 1,
+                     bounds.width - 3, bounds.height - 3);
+        String text = Integer.toString(this.hint.rotations());
+        FontMetrics metrics = g2d.getFontMetrics();
+        g2d.drawString(text,
+                       (int) bounds.getCenterX()
+                           - metrics.stringWidth(text) / 2,
+                       (int) bounds.getCenterY() + metrics.getAscent() / 2);
+    }
+
+    // Shows the given hint over its tile, or hides the current one if the
+    // given hint is null
+    public void showHint(Hint hint) {
+        Hint old = this.hint;
+        this.hint = hint;
+        if (old != null)
+            this.repaintTiles(Set.of(old.position()));
+        if (hint != null)
+            this.repaintTiles(Set.of(hint.position()));
+    }
+
+    // Computes the size of the images of the tiles, 0 by 0 if the circuit is
+    // empty
+    private Dimension tileSize(boolean hexagons) {
+	 	double sideLength = this.getShapeSideLength();
+	 	if (hexagons) {
+	 		// this is not hexagon height but BufferedImage height
+	 		return new Dimension((int) (2*sideLength), (int) (2*sideLength));
+	 	}
+	 	return new Dimension((int) sideLength, (int) sideLength);
+    }
+
+    // Computes the area covered by the image of the tile of given center
+    private Rectangle tileBounds(Point center,
+                                 Dimension tileSize,
+                                 boolean hexagons) {
+        int tileW = tileSize.width;
+        int tileH = tileSize.height;
+        int posX = (int) (center.getX() - tileW / 2);
+        int posY;
+        if (hexagons) {
+            posY = (int) (center.getY()
+                          - (TileView.HEXAGON_IMAGE_SHAPE_HEIGHT * tileH
+                             / TileView.HEXAGON_IMAGE_SHAPE_WIDTH) / 2);
+        } else {
+            posY = (int) (center.getY() - tileH / 2);
+        }
+        return new Rectangle(posX, posY, tileW, tileH);
+    }
+
+    // Repaints only the tiles at the given positions. The whole view is
+    // repainted if the centers of the tiles are not up to date.
+    public void repaintTiles(Set<Position> positions) {
+        if (!this.areCentersUpToDate()) {
+            this.repaint();
+            return;
+        }
+        boolean hexagons = this.model.areAllHexagonalTiles();
+        Dimension tileSize = this.tileSize(hexagons);
+        for (Position p: positions) {
+            int line = p.getLine();
+            int column = p.getColumn();
+            if (line >= this.cPoints.length
+                || column >= this.cPoints[line].length)
+                continue;
+            Point point = this.cPoints[line][column];
+            if (point != null)
+                this.repaint(this.tileBounds(point, tileSize, hexagons));
+        }
     }
     
+    // Returns the position of the tile whose center is the nearest to the
+    // given point, null if it is farther than the side length of the tiles.
+    // Only the centers around the cell containing the point are compared, as
+    // the nearest center is always one of them.
+    public Position positionAt(Point p) {
+        if (!this.areCentersUpToDate() || this.cPoints.length == 0)
+            return null;
+        double shapeSideLength = this.getShapeSideLength();
+        int len = (int)shapeSideLength;
+        if (len <= 0)
+            return null;
+
+        // Cell containing the point, as laid out by loadShapeCenters
+        int line;
+        int column;
+        if (this.model.areAllSquaredTiles()) {
+            line = Math.floorDiv(p.y, len);
+            column = Math.floorDiv(p.x, len);
+        } else {
+            int hS = (int)(3.0 / 2.0 * shapeSideLength);
+            int vS = (int)(Math.sqrt(3.0) * shapeSideLength);
+            column = Math.floorDiv(p.x - len + hS / 2, hS);
+            int oddos = (column % 2 != 0) ? vS / 2 : 0;
+            line = Math.floorDiv(p.y - oddos, vS);
+        }
+        int h = this.cPoints.length;
+        int w = this.cPoints[0].length;
+        line = Math.max(0, Math.min(h - 1, line));
+        column = Math.max(0, Math.min(w - 1, column));
+
+        // Nearest center around that cell, the first one in case of tie
+        int minDist = Integer.MAX_VALUE;
+        int l = -1;
+        int c = -1;
+        int lastLine = Math.min(h - 1, line + 1);
+        int lastColumn = Math.min(w - 1, column + 1);
+        for (int i = Math.max(0, line - 1); i <= lastLine; i++) {
+            for (int j = Math.max(0, column - 1); j <= lastColumn; j++) {
+                Point center = this.cPoints[i][j];
+                if (center != null) {
+                    int dist = (int) center.distance(p);
+                    if (dist < minDist) {
+                        minDist = dist;
+                        l = i;
+                        c = j;
+                    }
+                }
+            }
+        }
+
+        // do nothing if the point is outside of the tiles
+        if (l == -1 || minDist > shapeSideLength)
+            return null;
+        return Position.at(l, c);
+    }
+
     // Returns a copy of the center points
     public Point[][] getPoints() {
         Dimension cirDim = this.model.dimension();
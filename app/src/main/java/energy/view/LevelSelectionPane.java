@@ -4,34 +4,56 @@ import javax.swing.*;
 
 import energy.App;
 import energy.model.LevelConfig;
+import energy.model.LevelPack;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class LevelSelectionPane extends JPanel {
     private final ScreenSwitch switcher;
-    private JPanel levelButtonsPanel;
-    private List<String> playableLevelNames;
-    private List<String> editableLevelNames;
+    private final JList<LevelEntry> levelList;
+    private final DefaultListModel<LevelEntry> playableLevels;
+    private final DefaultListModel<LevelEntry> editableLevels;
+    private final JButton newLevelButton;
     private boolean displayFlag; // true if playable displayed false if editable
 
+    // Workers listing the level directories in the background
+    private final LevelLoader playableLoader;
+    private final LevelLoader editableLoader;
+
     private static final int LEVEL_SELECTION_PANE_WIDTH = 1000;
     private static final int LEVEL_SELECTION_PANE_HEIGHT = 800;
 
+    // Size of a cell of the level list
+    private static final int LEVEL_CELL_WIDTH = LevelThumbnails.SIZE + 24;
+    private static final int LEVEL_CELL_HEIGHT = LevelThumbnails.SIZE + 30;
+
+    // Image displayed while the preview of a level is not ready
+    private static final Icon NO_PREVIEW = new ImageIcon(new BufferedImage(
+        LevelThumbnails.SIZE, LevelThumbnails.SIZE, BufferedImage.TYPE_INT_ARGB
+    ));
+
     public LevelSelectionPane(ScreenSwitch switcher) {
         this.switcher = switcher;
-        ActionListener al1 = createLoadButtonActionListener(true, this);
-        ActionListener al2 = createLoadButtonActionListener(false, this);
+        this.setLayout(new BorderLayout());
+        ActionListener al1 = createLoadButtonActionListener(true);
+        ActionListener al2 = createLoadButtonActionListener(false);
         JButton playableLevelsButton = createNamedButton("Playable", al1);
         JButton editableLevelsButton = createNamedButton("Editable", al2);
-        this.editableLevelNames = new ArrayList<>();
-        this.playableLevelNames = new ArrayList<>();
+        this.newLevelButton = createNamedButton("New level", e ->
+            switcher.next(this.newLevelID(), false));
+        this.playableLevels = new DefaultListModel<>();
+        this.editableLevels = new DefaultListModel<>();
 
         this.setBackground(Color.YELLOW);
         this.setPreferredSize(
@@ -48,17 +70,40 @@ public class LevelSelectionPane extends JPanel {
         loadButtonsPanel.setPreferredSize(loadButtonsPanelDim);
         loadButtonsPanel.add(playableLevelsButton);
         loadButtonsPanel.add(editableLevelsButton);
+        loadButtonsPanel.add(this.newLevelButton);
 
-        // Level buttons panel, show playable first
-        this.loadPlayableLevelNames();
-        this.loadEditableLevelNames();
+        // Level list: only the visible cells are rendered, so it stays fast
+        // whatever the number of levels
+        this.levelList = new JList<>();
+        this.levelList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        this.levelList.setVisibleRowCount(-1);
+        this.levelList.setFixedCellWidth(LEVEL_CELL_WIDTH);
+        this.levelList.setFixedCellHeight(LEVEL_CELL_HEIGHT);
+        this.levelList.setBackground(Color.BLUE);
+        this.levelList.setCellRenderer(new LevelCellRenderer());
+        this.levelList.addMouseListener(new MouseAdapter() {
+            @Override public void mouseClicked(MouseEvent e) {
+                int index = levelList.locationToIndex(e.getPoint());
+                if (index != -1
+                    && levelList.getCellBounds(index, index)
+                                .contains(e.getPoint())) {
+                    LevelEntry entry = levelList.getModel().getElementAt(index);
+                    switcher.next(entry.id, displayFlag);
+                }
+            }
+        });
 
-        // Display playable levels
-        this.displayFlag = true;
-        this.levelButtonsPanel = displayLevelButtonsPanel();
+        // Levels are listed in the background, show playable first
+        this.playableLoader = new LevelLoader(
+            LevelConfig.PLAYABLE_LEVEL_PATH_PREFIX, this.playableLevels);
+        this.editableLoader = new LevelLoader(
+            LevelConfig.EDITABLE_LEVEL_PATH_PREFIX, this.editableLevels);
+        this.playableLoader.execute();
+        this.editableLoader.execute();
+        this.displayLevels(true);
 
         this.add(loadButtonsPanel, BorderLayout.PAGE_START);
-        this.add(levelButtonsPanel, BorderLayout.CENTER);
+        this.add(new JScrollPane(this.levelList), BorderLayout.CENTER);
     }
 
     // Creates a new JButton of given name and action listener
@@ -71,86 +116,175 @@ public class LevelSelectionPane extends JPanel {
     // Creates the action listener corresponding to load button action,
     // depending on flag value: true for playable level names display, editable
     // otherwise
-    private ActionListener createLoadButtonActionListener(
-      boolean flag,
-      JPanel lvlPane
-    ) {
-        return e -> {
-            lvlPane.remove(levelButtonsPanel);
-            displayFlag = flag;
-            levelButtonsPanel = displayLevelButtonsPanel();
-            lvlPane.add(levelButtonsPanel);
-            lvlPane.revalidate();
-            lvlPane.repaint();
-        };
+    private ActionListener createLoadButtonActionListener(boolean flag) {
+        return e -> this.displayLevels(flag);
     }
 
-    // If displayFlag is true, returns a panel with the playable level buttons,
-    // editable level buttons otherwise.
-    private JPanel displayLevelButtonsPanel() {
-        JPanel levelButtonsPanel = new JPanel();
-        Dimension levelButtonsPanelDim = new Dimension(
-          LevelSelectionPane.LEVEL_SELECTION_PANE_WIDTH,
-          (int)(0.9 * LevelSelectionPane.LEVEL_SELECTION_PANE_HEIGHT)
-        );
-        levelButtonsPanel.setPreferredSize(levelButtonsPanelDim);
-        levelButtonsPanel.setBackground(Color.BLUE);
-        List<String> names;
-        if (displayFlag) names = this.playableLevelNames;
-        else names = this.editableLevelNames;
-        for (String name: names) {
-            levelButtonsPanel.add(createLevelButton(name));
-        }
+    // If flag is true, displays the playable levels, the editable levels
+    // otherwise. New levels can only be created once all the playable levels
+    // are known, since the id of a new level follows them.
+    private void displayLevels(boolean flag) {
+        this.displayFlag = flag;
+        this.levelList.setModel(flag ? this.playableLevels
+                                     : this.editableLevels);
+        this.newLevelButton.setVisible(!flag);
+        this.updateNewLevelButton();
+    }
 
-        // add new level button if editable levels are displayed
-        if (!displayFlag) {
-            int newID = this.playableLevelNames.size() + 1;
-            JButton newLevelButton = new JButton("New level [" + newID + "]");
-            newLevelButton.addActionListener(e -> switcher.next(newID, false));
-            levelButtonsPanel.add(newLevelButton);
-        }
-        return levelButtonsPanel;
+    // Returns the id of a new level, following the playable levels
+    private int newLevelID() {
+        return this.playableLevels.size() + 1;
     }
 
-    // name must be of the form "levelINTEGER.nrg" where INTEGER is an integer
-    private JButton createLevelButton(String name) {
-        JButton b = new JButton(name);
-        String idAsString = name.substring(5, name.length() - 4);
-        int id = Integer.parseInt(idAsString);
-        b.addActionListener(
-          e -> switcher.next(id, displayFlag)
-        );
-        return b;
+    // Shows the id of a new level on its button, once it is known
+    private void updateNewLevelButton() {
+        boolean known = this.playableLoader.isDone();
+        this.newLevelButton.setEnabled(known);
+        this.newLevelButton.setText(
+            known ? "New level [" + this.newLevelID() + "]" : "New level");
     }
 
-    // Loads the names of the entries in the given directory name
-    private List<String> loadFileNamesInDirectory(String dirName) {
-        List<String> names = new ArrayList<>();
-        Path dir;
-        try {
-            dir = Paths.get(App.INSTALL_DIR + "/" + dirName);
-        } catch (Exception e) {
-            return new ArrayList<>();
+    // Stops listing the levels once this pane is no longer displayed
+    @Override public void removeNotify() {
+        super.removeNotify();
+        this.playableLoader.cancel(false);
+        this.editableLoader.cancel(false);
+    }
+
+    // A level of the list
+    private static final class LevelEntry {
+        private final int id;
+        private final String name;
+
+        // File of the level, or of the pack holding it
+        private final Path file;
+        private final LevelPack pack;
+
+        private LevelEntry(int id, String name, Path file, LevelPack pack) {
+            this.id = id;
+            this.name = name;
+            this.file = file;
+            this.pack = pack;
         }
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-            for (Path file: stream) {
-                names.add(file.getFileName().toString());
+
+        // Returns the key of the preview of this level
+        private String previewKey() {
+            String key = this.pack == null ? "" : ":" + this.id;
+            try {
+                return this.file + ":" + Files.getLastModifiedTime(this.file)
+                    + key;
+            } catch (Exception e) {
+                return this.file + key;
             }
-        } catch (Exception e) {
-            return new ArrayList<>();
         }
-        return names;
+
+        // Reads this level
+        private LevelConfig load() {
+            if (this.pack != null)
+                return this.pack.get(this.id);
+            return LevelConfig.fromFile(this.file.toString());
+        }
     }
 
-    private void loadPlayableLevelNames() {
-        this.playableLevelNames = this.loadFileNamesInDirectory(
-            LevelConfig.PLAYABLE_LEVEL_PATH_PREFIX + "/"
-        );
+    // Lists the levels of a directory in the background, adding them to the
+    // given model by batches. A level saved in both formats is listed once,
+    // under its .nrg name. The levels of the pack named as the directory, if
+    // any, are listed after those stored in files.
+    private final class LevelLoader extends SwingWorker<Void, LevelEntry> {
+        private final String dirName;
+        private final DefaultListModel<LevelEntry> model;
+
+        // Index in the model of each listed id
+        private final Map<Integer, Integer> indices = new HashMap<>();
+
+        private LevelLoader(String dirName,
+                            DefaultListModel<LevelEntry> model) {
+            this.dirName = dirName;
+            this.model = model;
+        }
+
+        @Override protected Void doInBackground() {
+            Path dir;
+            try {
+                dir = Paths.get(App.INSTALL_DIR + "/" + this.dirName);
+            } catch (Exception e) {
+                return null;
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path file: stream) {
+                    if (this.isCancelled())
+                        return null;
+                    String name = file.getFileName().toString();
+                    int id = LevelConfig.idOf(name);
+                    if (id != -1)
+                        this.publish(new LevelEntry(id, name, file, null));
+                }
+            } catch (Exception e) {
+                return null;
+            }
+
+            Path packPath = Paths.get(dir + LevelPack.FILE_FORMAT);
+            try {
+                // The pack is shared with the game, which reads its levels
+                LevelPack pack = App.levelPackOf(dir.toString());
+                if (pack != null) {
+                    for (int id: pack.ids()) {
+                        String name = LevelConfig.LEVEL_FILE_BASE_NAME + id;
+                        this.publish(
+                            new LevelEntry(id, name, packPath, pack));
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return null;
+        }
+
+        // Adds the given entries to the model, on the event dispatch thread
+        @Override protected void process(List<LevelEntry> entries) {
+            for (LevelEntry entry: entries) {
+                Integer index = this.indices.get(entry.id);
+                if (index == null) {
+                    this.indices.put(entry.id, this.model.size());
+                    this.model.addElement(entry);
+                } else if (entry.pack == null
+                           && entry.name.endsWith(LevelConfig.FILE_FORMAT)) {
+                    this.model.set(index, entry);
+                }
+            }
+        }
+
+        @Override protected void done() {
+            if (this == playableLoader)
+                updateNewLevelButton();
+        }
     }
 
-    private void loadEditableLevelNames() {
-        this.editableLevelNames = this.loadFileNamesInDirectory(
-            LevelConfig.EDITABLE_LEVEL_PATH_PREFIX + "/"
-        );
+    // Displays a level of the list with its preview above its name
+    private final class LevelCellRenderer extends DefaultListCellRenderer {
+        @Override public java.awt.Component getListCellRendererComponent(
+            JList<?> list,
+            Object value,
+            int index,
+            boolean isSelected,
+            boolean cellHasFocus
+        ) {
+            super.getListCellRendererComponent(
+                list, value, index, isSelected, cellHasFocus);
+            LevelEntry entry = (LevelEntry) value;
+            this.setText(entry.name);
+            if (!isSelected)
+                this.setForeground(Color.WHITE);
+            this.setHorizontalAlignment(SwingConstants.CENTER);
+            this.setHorizontalTextPosition(SwingConstants.CENTER);
+            this.setVerticalTextPosition(SwingConstants.BOTTOM);
+            BufferedImage preview = LevelThumbnails.get(
+                entry.previewKey(),
+                entry::load,
+                () -> levelList.repaint()
+            );
+            this.setIcon(preview == null ? NO_PREVIEW : new ImageIcon(preview));
+            return this;
+        }
     }
 }
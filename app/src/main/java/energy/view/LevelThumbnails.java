@@ -0,0 +1,159 @@
+package energy.view;
+
+import energy.model.Component;
+import energy.model.LevelConfig;
+import energy.model.Tile;
+import energy.model.TileShape;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+// Small previews of levels, drawn on a background thread and kept in a cache
+// shared by all the level selection screens. Previews are drawn with plain
+// lines rather than with the tile images, which are only meant to be drawn
+// on the event dispatch thread at full size.
+final class LevelThumbnails {
+
+    // Size of the previews
+    static final int SIZE = 96;
+
+    // Maximum number of previews kept in the cache
+    private static final int CAPACITY = 512;
+
+    // Previews by key, the least recently used ones being dropped first
+    private static final Map<String, BufferedImage> CACHE =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(
+                Map.Entry<String, BufferedImage> eldest) {
+                return this.size() > CAPACITY;
+            }
+        };
+
+    // Keys of the previews being drawn
+    private static final Set<String> PENDING = new HashSet<>();
+
+    // Single background thread drawing the previews
+    private static final ExecutorService EXECUTOR =
+        Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "level-thumbnails");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+    private LevelThumbnails() {}
+
+    // Returns the preview of given key if it is ready, null otherwise. In the
+    // latter case, the level given by the loader is drawn in the background
+    // and onReady is run on the event dispatch thread once it is ready.
+    static BufferedImage get(String key,
+                             Supplier<LevelConfig> loader,
+                             Runnable onReady) {
+        synchronized (CACHE) {
+            BufferedImage res = CACHE.get(key);
+            if (res != null || !PENDING.add(key))
+                return res;
+        }
+        EXECUTOR.execute(() -> {
+            BufferedImage image = null;
+            try {
+                LevelConfig lc = loader.get();
+                if (lc != null)
+                    image = draw(lc);
+            } catch (RuntimeException e) {
+                // invalid levels have no preview
+            }
+            synchronized (CACHE) {
+                PENDING.remove(key);
+                if (image != null)
+                    CACHE.put(key, image);
+            }
+            if (image != null)
+                SwingUtilities.invokeLater(onReady);
+        });
+        return null;
+    }
+
+    // Draws the cables and components of the given level
+    private static BufferedImage draw(LevelConfig lc) {
+        BufferedImage res =
+            new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        int height = 0;
+        int width = 0;
+        for (Tile t: lc.tiles()) {
+            height = Math.max(height, t.getLine() + 1);
+            width = Math.max(width, t.getColumn() + 1);
+        }
+        if (height == 0)
+            return res;
+
+        // Centers are laid out as in CircuitView, with a unit side length
+        boolean hexagons = lc.shape() == TileShape.HEXAGON;
+        double layoutW = hexagons ? 1.5 * width + 0.5 : width;
+        double layoutH = hexagons ? Math.sqrt(3.0) * (height + 0.5) : height;
+        double scale = (SIZE - 4) / Math.max(layoutW, layoutH);
+        double radius = hexagons ? scale * Math.sqrt(3.0) / 2 : scale / 2;
+
+        Graphics2D g = res.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                           RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setStroke(new BasicStroke((float) Math.max(1.0, scale / 6)));
+        for (Tile t: lc.tiles()) {
+            int i = t.getLine();
+            int j = t.getColumn();
+            double x;
+            double y;
+            if (hexagons) {
+                x = 2 + scale * (1.0 + 1.5 * j);
+                y = 2 + scale * Math.sqrt(3.0) * (i + 0.5 + (j % 2) / 2.0);
+            } else {
+                x = 2 + scale * (j + 0.5);
+                y = 2 + scale * (i + 0.5);
+            }
+
+            g.setColor(Color.LIGHT_GRAY);
+            int sides = t.length();
+            for (int s = 0; s < sides; s++) {
+                if (!t.side(s))
+                    continue;
+                // side 0 faces up, the others follow clockwise
+                double angle = Math.toRadians(-90.0 + 360.0 * s / sides);
+                g.drawLine((int) x, (int) y,
+                           (int) (x + radius * Math.cos(angle)),
+                           (int) (y + radius * Math.sin(angle)));
+            }
+
+            Color color = componentColor(t.component());
+            if (color != null) {
+                int d = (int) Math.max(3, radius);
+                g.setColor(color);
+                g.fillOval((int) x - d / 2, (int) y - d / 2, d, d);
+            }
+        }
+        g.dispose();
+        return res;
+    }
+
+    // Returns the color of the given component in the previews, null if it
+    // is not drawn
+    private static Color componentColor(Component component) {
+        switch (component) {
+            case SOURCE:
+                return Color.RED;
+            case LAMP:
+                return Color.ORANGE;
+            case HOTSPOT:
+                return Color.CYAN;
+            default:
+                return null;
+        }
+    }
+}
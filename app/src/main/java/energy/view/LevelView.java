@@ -2,8 +2,10 @@ package energy.view;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 
 import energy.controller.EditorController;
+import energy.controller.GameController;
 import energy.model.*;
 import energy.model.Component;
 
@@ -13,11 +15,13 @@ public class LevelView extends JPanel implements Observer {
     private final CircuitView circuitView;
     private final boolean editorMode;
     private EditorController editorController;
+    private GameController gameController;
 
     // Flag is true when the level is loaded to play, false to edit
     public LevelView(int id, ScreenSwitch switcher, boolean flag) {
         this.model = null;
         this.editorController = null;
+        this.gameController = null;
         this.circuitView = new CircuitView();
         this.switcher = switcher;
         this.editorMode = !flag;
@@ -29,19 +33,31 @@ public class LevelView extends JPanel implements Observer {
         JLabel levelIDLabel = new JLabel("#" + id);
         JButton backButton = new JButton("Back");
         backButton.addActionListener(e -> {
-            if (editorMode
-                    && editorController.isFinished()
+            if (editorMode) {
+                boolean canSave = editorController.isFinished()
                     && editorController.hasChanged()
-                    && editorController.circuitContainsLamp()) {
-                if (askSaveConfirmation()) {
+                    && editorController.circuitContainsLamp();
+                if (canSave && askSaveConfirmation()) {
                     this.model.save();
                 }
+                // Changes that could not be saved are kept for the next
+                // edition of the level
+                editorController.stopAutosave(!canSave
+                                              && editorController.hasChanged());
             }
+            if (gameController != null)
+                gameController.leave();
             this.switcher.back();
         });
         p.setBackground(Color.YELLOW);
         p.add(levelIDLabel);
         p.add(backButton);
+        if (!this.editorMode) {
+            JButton hintButton = new JButton("Hint");
+            hintButton.addActionListener(e -> this.showHint());
+            this.bindKey("H", "hint", this::showHint);
+            p.add(hintButton);
+        }
         this.add(p, BorderLayout.PAGE_END);
         this.add(this.circuitView, BorderLayout.CENTER);
 
@@ -51,11 +67,19 @@ public class LevelView extends JPanel implements Observer {
 
     public void update(Observable observed) {
         if (observed instanceof Level) {
+            boolean sameModel = observed == this.model;
             this.model = (Level)observed;
-            this.circuitView.setModel(
-              new ReadOnlyCircuit(this.model.getCircuit())
-            );
-            this.circuitView.repaint();
+            ReadOnlyCircuit circuit =
+                new ReadOnlyCircuit(this.model.getCircuit());
+            this.circuitView.setModel(circuit);
+            // A hint is shown until the next move
+            this.circuitView.showHint(null);
+            // Only the changed tiles are repainted after an edit of the same
+            // level
+            if (sameModel && !circuit.allTilesChanged())
+                this.circuitView.repaintTiles(circuit.changes());
+            else
+                this.circuitView.repaint();
 
             if (!this.editorMode) {
                 this.displayEndGameDialog();
@@ -69,6 +93,8 @@ public class LevelView extends JPanel implements Observer {
     // to the next game.
     public void displayEndGameDialog() {
         if (this.model.isFinished()) {
+            if (this.gameController != null)
+                this.gameController.leave();
             if (askNextGameConfirmation())
                 this.switcher.next(this.model.getId() + 1, true);
             else
@@ -76,6 +102,12 @@ public class LevelView extends JPanel implements Observer {
         }
     }
 
+    // Shows on the circuit the tile the game controller suggests to rotate
+    private void showHint() {
+        if (this.gameController != null && this.model != null)
+            this.gameController.hint(this.circuitView::showHint);
+    }
+
     public CircuitView getCircuitView() {
         return this.circuitView;
     }
@@ -127,6 +159,17 @@ public class LevelView extends JPanel implements Observer {
             }
         });
         
+        JButton undoButton = new JButton("Undo");
+        undoButton.addActionListener(e -> editorController.undo());
+
+        JButton redoButton = new JButton("Redo");
+        redoButton.addActionListener(e -> editorController.redo());
+
+        this.bindKey("control Z", "undo", () -> editorController.undo());
+        this.bindKey("control Y", "redo", () -> editorController.redo());
+
+        p.add(undoButton);
+        p.add(redoButton);
         p.add(addLineButton);
         p.add(removeLineButton);
         p.add(addColumnButton);
@@ -138,6 +181,18 @@ public class LevelView extends JPanel implements Observer {
         this.add(p, BorderLayout.LINE_END);
     }
 
+    // Runs the given action when the given keystroke is typed in this view
+    private void bindKey(String keyStroke, String name, Runnable action) {
+        this.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+            .put(KeyStroke.getKeyStroke(keyStroke), name);
+        this.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
     // Displays a dialog asking the user to select some Component
     private Component askTileComponent() {
         Object[] possibilities = Component.values();
@@ -181,4 +236,8 @@ public class LevelView extends JPanel implements Observer {
     public void setEditorController(EditorController ec) {
         this.editorController = ec;
     }
+
+    public void setGameController(GameController gc) {
+        this.gameController = gc;
+    }
 }
\ No newline at end of file
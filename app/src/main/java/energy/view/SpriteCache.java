@@ -0,0 +1,132 @@
+package energy.view;
+
+import energy.model.Component;
+import energy.model.Tile;
+import energy.model.TileShape;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// The images of the tiles drawn by a CircuitView, scaled to the current size
+// of the tiles. A tile only depends on its shape, component, border and
+// powered state, so each distinct tile is composed once and then blitted.
+class SpriteCache {
+
+    // Size of the cached images, -1 before the first use
+    private int tileW = -1;
+    private int tileH = -1;
+
+    // Scaled and rotated resources, by resource image and angle in degrees
+    private final Map<BufferedImage, Map<Integer, BufferedImage>> sprites =
+        new IdentityHashMap<>();
+
+    // Composed tiles, by key as computed by tileKey
+    private final Map<Integer, BufferedImage> tiles = new HashMap<>();
+
+    // Sets the size of the images to draw, dropping the cached images if it
+    // changed
+    void setTileSize(int tileW, int tileH) {
+        if (tileW != this.tileW || tileH != this.tileH) {
+            this.tileW = tileW;
+            this.tileH = tileH;
+            this.sprites.clear();
+            this.tiles.clear();
+        }
+    }
+
+    // Returns the image of the given tile, with its border, cables and
+    // component, at the current size
+    BufferedImage tileImage(Tile t) {
+        int key = tileKey(t);
+        BufferedImage res = this.tiles.get(key);
+        if (res == null) {
+            res = this.compose(new TileView(t));
+            this.tiles.put(key, res);
+        }
+        return res;
+    }
+
+    // Returns a key identifying the image of the given tile
+    private static int tileKey(Tile t) {
+        int kind = t.shape().ordinal() * Component.values().length
+            + t.component().ordinal();
+        return (kind << 7) | (t.borderMask() << 1) | (t.isPowered() ? 1 : 0);
+    }
+
+    // Draws the images of the given TileView on a new image
+    private BufferedImage compose(TileView tv) {
+        boolean hexagon = tv.getShape() == TileShape.HEXAGON;
+        BufferedImage res = new BufferedImage(this.tileW,
+                                              this.tileH,
+                                              BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = res.createGraphics();
+        g.drawImage(this.sprite(tv.getBorderImage(), 0, hexagon), 0, 0, null);
+        ArrayList<BufferedImage> cables = tv.getCableImages();
+        for (int i = 0; i < cables.size(); i++) {
+            BufferedImage cable = this.sprite(cables.get(i),
+                                              tv.getAngles().get(i),
+                                              hexagon);
+            g.drawImage(cable, 0, 0, null);
+        }
+        if (tv.getComponentImage() != null) {
+            g.drawImage(this.sprite(tv.getComponentImage(), 0, hexagon),
+                        0, 0, null);
+        }
+        g.dispose();
+        return res;
+    }
+
+    // Returns the given resource scaled to the current size and rotated by
+    // the given angle in degrees around the center of the shape
+    private BufferedImage sprite(BufferedImage source,
+                                 int angle,
+                                 boolean hexagon) {
+        Map<Integer, BufferedImage> byAngle =
+            this.sprites.computeIfAbsent(source, k -> new HashMap<>());
+        int normalized = Math.floorMod(angle, 360);
+        BufferedImage res = byAngle.get(normalized);
+        if (res != null)
+            return res;
+
+        if (normalized == 0) {
+            Image tmp = source.getScaledInstance(this.tileW,
+                                                 this.tileH,
+                                                 Image.SCALE_SMOOTH);
+            res = new BufferedImage(this.tileW,
+                                    this.tileH,
+                                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D gBF = res.createGraphics();
+            gBF.drawImage(tmp, 0, 0, null);
+            gBF.dispose();
+        } else {
+            BufferedImage scaled = this.sprite(source, 0, hexagon);
+            res = new BufferedImage(this.tileW,
+                                    this.tileH,
+                                    BufferedImage.TYPE_INT_ARGB);
+            AffineTransform at = new AffineTransform();
+            if (hexagon) {
+                // Compute proportional height
+                int h = TileView.HEXAGON_IMAGE_SHAPE_HEIGHT * this.tileH
+                    / TileView.HEXAGON_IMAGE_SHAPE_WIDTH;
+                at.rotate(Math.toRadians(normalized),
+                          this.tileW / 2.0,
+                          h / 2.0);
+            } else {
+                at.rotate(Math.toRadians(normalized),
+                          this.tileW / 2.0,
+                          this.tileH / 2.0);
+            }
+            Graphics2D gIm = res.createGraphics();
+            gIm.setTransform(at);
+            gIm.drawImage(scaled, 0, 0, null);
+            gIm.dispose();
+        }
+        byAngle.put(normalized, res);
+        return res;
+    }
+}
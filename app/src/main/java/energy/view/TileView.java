@@ -302,6 +302,10 @@ public class TileView{
         return this.model.position();
     }
 
+    public TileShape getShape() {
+        return this.model.shape();
+    }
+
 	public ArrayList<Integer> getAngles(){
 		return this.angles;
 	}
@@ -0,0 +1,79 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class AutosaveServiceTest {
+    private Path dir;
+    private Path file;
+
+    @BeforeEach void createDirectory() throws IOException {
+        this.dir = Files.createTempDirectory("autosave");
+        this.file = this.dir.resolve("drafts/level3.nrg");
+    }
+
+    @AfterEach void deleteDirectory() throws IOException {
+        Files.deleteIfExists(this.file);
+        Files.deleteIfExists(this.file.getParent());
+        Files.delete(this.dir);
+    }
+
+    // Returns a circuit of a source above an empty tile
+    private static Circuit circuit() {
+        return Circuit.of(List.of(
+            Tile.square(Position.at(0, 0), Component.SOURCE),
+            Tile.square(Position.at(1, 0), Component.EMPTY)));
+    }
+
+    @Test void editsWithinTheDelayAreWrittenOnce() {
+        Circuit circuit = circuit();
+        try (AutosaveService sut = AutosaveService.of(this.file, 60_000)) {
+            sut.schedule(3, circuit.snapshot());
+            circuit.connectSideOfTileAt(Position.origin(), 2);
+            sut.schedule(3, circuit.snapshot());
+            circuit.setTileComponentTo(Position.at(1, 0), Component.LAMP);
+            sut.schedule(3, circuit.snapshot());
+            assertFalse(Files.exists(this.file));
+            sut.flush();
+            assertEquals(1, sut.writes());
+        }
+        LevelConfig lc = LevelConfig.fromFile(this.file.toString());
+        assertEquals(3, lc.id());
+        Circuit read = Level.fromLevelConfig(lc).getCircuit();
+        assertEquals(Component.LAMP,
+                     read.getTileAt(Position.at(1, 0)).component());
+        assertTrue(read.getTileAt(Position.origin()).side(2));
+    }
+
+    @Test void unchangedContentIsNotWrittenAgain() {
+        Circuit circuit = circuit();
+        try (AutosaveService sut = AutosaveService.of(this.file, 0)) {
+            sut.schedule(3, circuit.snapshot());
+            sut.flush();
+            circuit.connectSideOfTileAt(Position.origin(), 2);
+            circuit.disconnectSideOfTileAt(Position.origin(), 2);
+            sut.schedule(3, circuit.snapshot());
+            sut.flush();
+            assertEquals(1, sut.writes());
+            circuit.connectSideOfTileAt(Position.origin(), 2);
+            sut.schedule(3, circuit.snapshot());
+            sut.flush();
+            assertEquals(2, sut.writes());
+        }
+    }
+
+    @Test void discardDeletesTheFile() {
+        AutosaveService sut = AutosaveService.of(this.file, 60_000);
+        sut.schedule(3, circuit().snapshot());
+        sut.flush();
+        assertTrue(Files.exists(this.file));
+        sut.schedule(3, Circuit.empty().snapshot());
+        sut.discard();
+        assertFalse(Files.exists(this.file));
+        assertEquals(1, sut.writes());
+    }
+}
@@ -0,0 +1,43 @@
+package energy.model;
+
+import static energy.model.TestLevels.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class CellBoardTest {
+
+    // The boards tested, built from a LevelConfig
+    private static final List<Function<LevelConfig, CellBoard>> BOARDS =
+        List.of(CircuitState::of, OffHeapCircuit::of);
+
+    @Test void electricityIsPropagatedAsInCircuit() {
+        for (Function<LevelConfig, CellBoard> board: BOARDS) {
+            Random random = new Random(7);
+            for (TileShape shape: TileShape.values()) {
+                LevelConfig lc = LevelGenerator.of(20, 25, shape)
+                    .withHotspotPairs(4)
+                    .generate(1, random);
+                Circuit circuit = Level.fromLevelConfig(lc).getCircuit();
+                CellBoard sut = board.apply(lc);
+                assertEquals(circuit.dimension(), sut.dimension());
+                circuit.propagateElectricity();
+                sut.propagateElectricity();
+                assertTrue(sut.allLampsArePoweredOn());
+                assertSameState(circuit, sut);
+
+                List<Tile> tiles = circuit.getTiles();
+                for (int k = 0; k < 200; k++) {
+                    Position p = tiles.get(random.nextInt(tiles.size()))
+                                      .position();
+                    assertEquals(circuit.rotateTileAt(p),
+                                 sut.rotateTileAt(p));
+                    sut.propagateElectricity();
+                    assertSameState(circuit, sut);
+                }
+            }
+        }
+    }
+}
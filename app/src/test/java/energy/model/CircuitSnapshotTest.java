@@ -0,0 +1,109 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.Dimension;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class CircuitSnapshotTest {
+
+    // Returns a circuit of a source linked to a lamp, on a line of 2 tiles,
+    // above an empty tile
+    private static Circuit sourceAndLamp() {
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        lamp.connect(3);
+        Tile empty = Tile.square(Position.at(1, 0), Component.EMPTY);
+        Circuit res = Circuit.of(List.of(source, lamp, empty));
+        res.propagateElectricity();
+        return res;
+    }
+
+    @Test void snapshotOfEmptyCircuitHasNoTile() {
+        CircuitSnapshot sut = Circuit.empty().snapshot();
+        assertEquals(new Dimension(), sut.dimension());
+        assertEquals(0, sut.tileCount());
+        assertTrue(sut.tiles().isEmpty());
+        assertFalse(sut.allLampsArePoweredOn());
+    }
+
+    @Test void snapshotDescribesTheTiles() {
+        Circuit circuit = sourceAndLamp();
+        CircuitSnapshot sut = circuit.snapshot();
+        assertEquals(new Dimension(2, 2), sut.dimension());
+        assertEquals(3, sut.tileCount());
+        assertTrue(sut.areAllSquaredTiles());
+        assertFalse(sut.areAllHexagonalTiles());
+        assertEquals(Component.LAMP, sut.componentAt(Position.at(0, 1)));
+        assertEquals(1 << 3, sut.borderMaskAt(Position.at(0, 1)));
+        assertTrue(sut.isPoweredAt(Position.at(0, 1)));
+        assertTrue(sut.allLampsArePoweredOn());
+        assertFalse(sut.hasTileAt(Position.at(1, 1)));
+        assertThrows(NoSuchElementException.class,
+                     () -> sut.componentAt(Position.at(1, 1)));
+    }
+
+    @Test void snapshotDoesNotChangeWithItsCircuit() {
+        Circuit circuit = sourceAndLamp();
+        CircuitSnapshot sut = circuit.snapshot();
+        assertTrue(circuit.rotateTileAt(Position.at(0, 1)));
+        assertTrue(sut.isPoweredAt(Position.at(0, 1)));
+        assertEquals(1 << 3, sut.borderMaskAt(Position.at(0, 1)));
+
+        CircuitSnapshot next = circuit.snapshot();
+        assertTrue(next.version() > sut.version());
+        assertFalse(next.isPoweredAt(Position.at(0, 1)));
+        assertFalse(next.allLampsArePoweredOn());
+    }
+
+    @Test void unchangedLinesAreShared() {
+        Circuit circuit = sourceAndLamp();
+        List<Tile> before = circuit.snapshot().tiles();
+        circuit.rotateTileAt(Position.at(1, 0));
+        List<Tile> after = circuit.snapshot().tiles();
+        assertSame(before.get(0), after.get(0));
+        assertSame(before.get(1), after.get(1));
+        assertNotSame(before.get(2), after.get(2));
+    }
+
+    @Test void tilesAreListedLineByLine() {
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        Tile empty = Tile.square(Position.at(1, 0), Component.EMPTY);
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        Circuit circuit = Circuit.of(List.of(lamp, empty, source));
+        List<Tile> tiles = new ReadOnlyCircuit(circuit).tiles();
+        assertEquals(3, tiles.size());
+        assertEquals(Position.at(0, 0), tiles.get(0).position());
+        assertEquals(Position.at(0, 1), tiles.get(1).position());
+        assertEquals(Position.at(1, 0), tiles.get(2).position());
+        assertEquals(lamp, circuit.getTiles().get(0));
+    }
+
+    @Test void snapshotTilesMatchTheCircuit() {
+        LevelConfig lc = LevelGenerator.of(9, 8, TileShape.HEXAGON)
+                                       .withHotspotPairs(2)
+                                       .generate(1, new Random(3));
+        Circuit circuit = Level.fromLevelConfig(lc).getCircuit();
+        circuit.propagateElectricity();
+        Random random = new Random(3);
+        for (int k = 0; k < 50; k++) {
+            List<Tile> tiles = circuit.getTiles();
+            circuit.rotateTileAt(
+                tiles.get(random.nextInt(tiles.size())).position());
+        }
+        CircuitSnapshot sut = circuit.snapshot();
+        assertEquals(circuit.dimension(), sut.dimension());
+        assertEquals(circuit.getTiles().size(), sut.tileCount());
+        for (Tile t: circuit.getTiles()) {
+            Position p = t.position();
+            assertEquals(t.component(), sut.componentAt(p));
+            assertEquals(t.borderMask(), sut.borderMaskAt(p));
+            assertEquals(t.isPowered(), sut.isPoweredAt(p));
+        }
+        assertEquals(circuit.allLampsArePoweredOn(),
+                     sut.allLampsArePoweredOn());
+    }
+}
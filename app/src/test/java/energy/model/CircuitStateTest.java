@@ -0,0 +1,75 @@
+package energy.model;
+
+import static energy.model.TestLevels.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class CircuitStateTest {
+
+    @Test void stateIsReadAsWritten() {
+        for (int id = 1; id <= BASE1_LEVELS; id++) {
+            LevelConfig lc = base1(id);
+            Circuit expected = Level.fromLevelConfig(lc).getCircuit();
+            CircuitState sut = CircuitState.of(lc);
+            assertSameState(expected, sut);
+            assertSameState(expected, CircuitState.of(sut.toLevelConfig(id)));
+        }
+        assertBase1RoundTrips(lc -> CircuitState.of(lc).toLevelConfig(lc.id()));
+    }
+
+    @Test void dimensionIsTheDeclaredOne() {
+        ArrayList<Tile> tiles = new ArrayList<>(List.of(
+            Tile.square(Position.at(0, 0), Component.SOURCE),
+            Tile.square(Position.at(1, 1), Component.LAMP)));
+        CircuitState sut = CircuitState.of(
+            LevelConfig.of(3, 4, 1, TileShape.SQUARE, tiles));
+        assertEquals(new Dimension(4, 3), sut.dimension());
+        assertFalse(sut.hasTileAt(Position.at(2, 3)));
+
+        tiles.add(Tile.square(Position.at(3, 0), Component.EMPTY));
+        assertThrows(IllegalArgumentException.class,
+                     () -> CircuitState.of(LevelConfig.of(
+                         3, 4, 1, TileShape.SQUARE, tiles)));
+    }
+
+    @Test void tilesAreCreatedOnDemand() {
+        LevelConfig lc = LevelGenerator.of(5, 5, TileShape.HEXAGON)
+            .generate(1, new Random(3));
+        CircuitState sut = CircuitState.of(lc);
+        sut.propagateElectricity();
+        Position p = Position.at(2, 3);
+        Tile t = sut.tileAt(p);
+        assertEquals(sut.componentAt(p), t.component());
+        assertEquals(sut.borderMaskAt(p), t.borderMask());
+        assertEquals(sut.isPoweredAt(p), t.isPowered());
+        assertNotSame(t, sut.tileAt(p));
+        assertNull(sut.tileAt(Position.at(5, 0)));
+        assertFalse(sut.hasTileAt(Position.at(0, 5)));
+        assertThrows(NoSuchElementException.class,
+                     () -> sut.componentAt(Position.at(5, 5)));
+    }
+
+    @Test void randomRotationsKeepFixedTiles() {
+        LevelConfig lc = LevelGenerator.of(10, 10, TileShape.SQUARE)
+            .generate(1, new Random(5));
+        CompactLevel sut = CompactLevel.fromLevelConfig(lc, new Random(5));
+        CircuitState state = sut.state();
+        sut.randomRotations();
+        sut.blackout();
+        assertFalse(sut.isFinished());
+        for (Tile t: lc.tiles()) {
+            Position p = t.position();
+            if (!t.canRotate())
+                assertEquals(t.borderMask(), state.borderMaskAt(p));
+            else if (t.borderMask() != 0
+                     && t.borderMask() != TileShape.SQUARE.fullMask())
+                assertEquals(Integer.bitCount(t.borderMask()),
+                             Integer.bitCount(state.borderMaskAt(p)));
+        }
+    }
+}
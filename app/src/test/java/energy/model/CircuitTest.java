@@ -3,6 +3,10 @@ package energy.model;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 public class CircuitTest {
 
@@ -55,5 +59,157 @@ public class CircuitTest {
         assertEquals(new Dimension(3, 4), sut.dimension());
     }
 
-    
+    @Test void getTileAtReturnsTheTileAddedAtThatPosition() {
+        Circuit sut = Circuit.empty();
+        Tile t1 = Tile.square(Position.at(0, 0), Component.SOURCE);
+        Tile t2 = Tile.square(Position.at(4, 7), Component.LAMP);
+        sut.addTile(t1);
+        sut.addTile(t2);
+        assertSame(t1, sut.getTileAt(Position.at(0, 0)));
+        assertSame(t2, sut.getTileAt(Position.at(4, 7)));
+        assertNull(sut.getTileAt(Position.at(7, 4)));
+        assertNull(sut.getTileAt(Position.at(40, 70)));
+    }
+
+    @Test void addTileAtOccupiedPositionFails() {
+        Circuit sut = Circuit.empty();
+        sut.addTile(Tile.square(Position.at(1, 1), Component.SOURCE));
+        assertFalse(sut.addTile(Tile.square(Position.at(1, 1), Component.LAMP)));
+        assertEquals(Component.SOURCE,
+                     sut.getTileAt(Position.at(1, 1)).component());
+    }
+
+    @Test void removedTileIsNoLongerFoundAndDimensionShrinks() {
+        Circuit sut = Circuit.empty();
+        sut.addTile(Tile.square(Position.at(0, 0), Component.SOURCE));
+        sut.addTile(Tile.square(Position.at(0, 1), Component.EMPTY));
+        sut.addTile(Tile.square(Position.at(1, 0), Component.EMPTY));
+        sut.addTile(Tile.square(Position.at(1, 1), Component.LAMP));
+        assertTrue(sut.removeTile(Position.at(1, 1)));
+        assertNull(sut.getTileAt(Position.at(1, 1)));
+        assertEquals(new Dimension(2, 2), sut.dimension());
+        assertTrue(sut.removeTile(Position.at(1, 0)));
+        assertEquals(new Dimension(2, 1), sut.dimension());
+    }
+
+    @Test void tilesKeepTheirInsertionOrder() {
+        Circuit sut = Circuit.empty();
+        Tile t1 = Tile.square(Position.at(2, 0), Component.EMPTY);
+        Tile t2 = Tile.square(Position.at(0, 0), Component.SOURCE);
+        Tile t3 = Tile.square(Position.at(0, 3), Component.LAMP);
+        sut.addTile(t1);
+        sut.addTile(t2);
+        sut.addTile(t3);
+        assertEquals(List.of(t1, t2, t3), sut.getTiles());
+    }
+
+    @Test void rotationUpdatesElectricityAndRecordsChanges() {
+        Circuit sut = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        lamp.connect(3);
+        sut.addTile(source);
+        sut.addTile(lamp);
+        sut.propagateElectricity();
+        assertTrue(sut.allLampsArePoweredOn());
+        sut.clearChanges();
+
+        assertTrue(sut.rotateTileAt(Position.at(0, 1)));
+        assertFalse(lamp.isPowered());
+        assertEquals(Set.of(Position.at(0, 1)), sut.getChanges());
+    }
+
+    @Test void rotationRecordsTheRotatedTileAndThePoweredOnes() {
+        Circuit sut = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        lamp.connect(3);
+        Tile empty = Tile.square(Position.at(1, 0), Component.EMPTY);
+        sut.addTile(source);
+        sut.addTile(lamp);
+        sut.addTile(empty);
+        sut.propagateElectricity();
+        assertTrue(sut.allTilesChanged());
+        sut.clearChanges();
+        assertFalse(sut.allTilesChanged());
+
+        assertTrue(sut.rotateTileAt(Position.at(1, 0)));
+        assertEquals(Set.of(Position.at(1, 0)), sut.getChanges());
+        assertTrue(sut.disconnectSideOfTileAt(Position.at(0, 0), 1));
+        assertEquals(Set.of(Position.at(0, 0), Position.at(0, 1),
+                            Position.at(1, 0)),
+                     sut.getChanges());
+        assertFalse(sut.allTilesChanged());
+    }
+
+    @Test void incrementalPropagationMatchesFullPropagation() {
+        Level level = Level.fromLevelConfig(
+            LevelConfig.fromFile("src/test/resources/Base1/level10.nrg"));
+        Circuit sut = level.getCircuit();
+        sut.propagateElectricity();
+        Random random = new Random(42);
+        List<Tile> tiles = sut.getTiles();
+        for (int k = 0; k < 200; k++) {
+            Tile tile = tiles.get(random.nextInt(tiles.size()));
+            sut.rotateTileAt(tile.position());
+            List<Boolean> incremental = new ArrayList<>();
+            for (Tile t: tiles) incremental.add(t.isPowered());
+            sut.blackout();
+            sut.propagateElectricity();
+            for (int i = 0; i < tiles.size(); i++)
+                assertEquals(tiles.get(i).isPowered(), incremental.get(i));
+        }
+    }
+
+    @Test void hotspotsPowerEachOtherWithoutCables() {
+        Circuit sut = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile near = Tile.square(Position.at(0, 1), Component.HOTSPOT);
+        near.connect(3);
+        Tile far = Tile.square(Position.at(2, 2), Component.HOTSPOT);
+        far.connect(0);
+        Tile lamp = Tile.square(Position.at(1, 2), Component.LAMP);
+        lamp.connect(2);
+        for (Tile t: List.of(source, near, far, lamp))
+            sut.addTile(t);
+        sut.propagateElectricity();
+        assertTrue(lamp.isPowered());
+        assertTrue(sut.allLampsArePoweredOn());
+
+        assertTrue(sut.rotateTileAt(Position.at(0, 1)));
+        assertFalse(far.isPowered());
+        assertFalse(lamp.isPowered());
+        assertFalse(sut.allLampsArePoweredOn());
+        assertEquals(List.of(far), sut.getNeighbors(near));
+
+        assertTrue(sut.setTileComponentTo(Position.at(2, 2), Component.SOURCE));
+        assertTrue(lamp.isPowered());
+        assertFalse(near.isPowered());
+        assertTrue(sut.allLampsArePoweredOn());
+    }
+
+    @Test void allLampsArePoweredOnFollowsEdits() {
+        LevelConfig lc = LevelGenerator.of(12, 12, TileShape.HEXAGON)
+                                       .withHotspotPairs(4)
+                                       .generate(1, new Random(7));
+        Circuit sut = Level.fromLevelConfig(lc).getCircuit();
+        sut.propagateElectricity();
+        assertTrue(sut.allLampsArePoweredOn());
+        Random random = new Random(7);
+        List<Tile> tiles = sut.getTiles();
+        for (int k = 0; k < 300; k++) {
+            Position p = tiles.get(random.nextInt(tiles.size())).position();
+            if (k % 10 == 0)
+                sut.disconnectSideOfTileAt(p, random.nextInt(6));
+            else
+                sut.rotateTileAt(p);
+            boolean expected = true;
+            for (Tile t: tiles)
+                expected &= t.component() != Component.LAMP || t.isPowered();
+            assertEquals(expected, sut.allLampsArePoweredOn());
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.Dimension;
+import java.util.List;
+
+public class EditHistoryTest {
+
+    // Returns a level of a source and a lamp, not linked, on a line of 2
+    // tiles above 2 empty tiles
+    private static Level sourceAndLamp() {
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        Tile empty1 = Tile.square(Position.at(1, 0), Component.EMPTY);
+        Tile empty2 = Tile.square(Position.at(1, 1), Component.EMPTY);
+        Level res = Level.from(1, Circuit.of(
+            List.of(source, lamp, empty1, empty2)));
+        res.propagateElectricity();
+        return res;
+    }
+
+    // Links the source to the lamp, as one step
+    private static void link(Level level) {
+        level.connectSideOfTileAt(Position.at(0, 0), 1);
+        level.connectSideOfTileAt(Position.at(0, 1), 3);
+        level.blackout();
+        level.propagateElectricity();
+        level.notifyObservers();
+    }
+
+    @Test void undoAndRedoOneStep() {
+        Level sut = sourceAndLamp();
+        link(sut);
+        assertTrue(sut.isFinished());
+
+        assertTrue(sut.undo());
+        Tile lamp = sut.getCircuit().getTileAt(Position.at(0, 1));
+        assertEquals(0, lamp.borderMask());
+        assertEquals(0, sut.getCircuit().getTileAt(Position.origin())
+                           .borderMask());
+        assertFalse(lamp.isPowered());
+        assertFalse(sut.isFinished());
+
+        assertTrue(sut.redo());
+        assertTrue(sut.isFinished());
+        assertTrue(sut.getCircuit().getTileAt(Position.origin()).side(1));
+        assertTrue(lamp.side(3));
+    }
+
+    @Test void nothingToUndoOrRedo() {
+        Level sut = sourceAndLamp();
+        assertFalse(sut.undo());
+        assertFalse(sut.redo());
+        link(sut);
+        assertFalse(sut.redo());
+        assertTrue(sut.undo());
+        assertFalse(sut.undo());
+    }
+
+    @Test void stepsAreUndoneInReverseOrder() {
+        Level sut = sourceAndLamp();
+        link(sut);
+        Position p = Position.at(1, 1);
+        sut.setTileComponentTo(p, Component.LAMP);
+        sut.notifyObservers();
+
+        assertTrue(sut.undo());
+        assertEquals(Component.EMPTY,
+                     sut.getCircuit().getTileAt(p).component());
+        assertTrue(sut.isFinished());
+        assertTrue(sut.undo());
+        assertFalse(sut.isFinished());
+        assertTrue(sut.redo());
+        assertTrue(sut.redo());
+        assertEquals(Component.LAMP,
+                     sut.getCircuit().getTileAt(p).component());
+        assertFalse(sut.isFinished());
+    }
+
+    @Test void dragIsUndoneAtOnce() {
+        Level sut = sourceAndLamp();
+        // a drag around the 4 tiles, the observers being notified at each
+        // crossed border
+        Position[] path = {Position.at(0, 0), Position.at(0, 1),
+                           Position.at(1, 1), Position.at(1, 0),
+                           Position.at(0, 0)};
+        int[] sides = {1, 2, 3, 0};
+        sut.beginStep();
+        for (int k = 0; k < sides.length; k++) {
+            sut.connectSideOfTileAt(path[k], sides[k]);
+            sut.connectSideOfTileAt(path[k + 1], (sides[k] + 2) % 4);
+            sut.notifyObservers();
+        }
+        sut.endStep();
+        assertTrue(sut.isFinished());
+
+        assertTrue(sut.undo());
+        for (Tile t: sut.getCircuit().getTiles())
+            assertEquals(0, t.borderMask(), t.position().toString());
+        assertFalse(sut.undo());
+        assertTrue(sut.redo());
+        assertTrue(sut.isFinished());
+        assertEquals(0b0110, sut.getCircuit().getTileAt(Position.origin())
+                                .borderMask());
+    }
+
+    @Test void newEditDiscardsUndoneSteps() {
+        Level sut = sourceAndLamp();
+        link(sut);
+        sut.undo();
+        sut.setTileComponentTo(Position.at(1, 0), Component.LAMP);
+        sut.notifyObservers();
+        assertFalse(sut.redo());
+        assertTrue(sut.undo());
+        assertFalse(sut.undo());
+    }
+
+    @Test void undoAddedLineRestoresDimension() {
+        Level sut = sourceAndLamp();
+        sut.addLine();
+        sut.notifyObservers();
+        assertEquals(new Dimension(2, 3), sut.getCircuit().dimension());
+
+        assertTrue(sut.undo());
+        assertEquals(new Dimension(2, 2), sut.getCircuit().dimension());
+        assertNull(sut.getCircuit().getTileAt(Position.at(2, 0)));
+        assertTrue(sut.redo());
+        assertEquals(new Dimension(2, 3), sut.getCircuit().dimension());
+    }
+
+    @Test void undoClearedCircuit() {
+        Level sut = sourceAndLamp();
+        link(sut);
+        sut.clearCircuit();
+        sut.notifyObservers();
+        assertEquals(Component.EMPTY, sut.getCircuit()
+                                         .getTileAt(Position.at(0, 1))
+                                         .component());
+        assertTrue(sut.undo());
+        assertEquals(Component.LAMP, sut.getCircuit()
+                                        .getTileAt(Position.at(0, 1))
+                                        .component());
+        assertTrue(sut.isFinished());
+    }
+
+    @Test void oldestStepsAreForgotten() {
+        Circuit circuit = sourceAndLamp().getCircuit();
+        EditHistory sut = new EditHistory(4);
+        Position p = Position.at(1, 0);
+        Component[] components = {Component.LAMP, Component.EMPTY};
+        for (int k = 0; k < 6; k++) {
+            sut.record(p, TileShape.SQUARE, components[(k + 1) % 2], 0,
+                       components[k % 2], 0);
+            sut.endStep();
+        }
+        int undone = 0;
+        while (sut.undo(circuit))
+            undone++;
+        assertEquals(4, undone);
+        assertEquals(Component.EMPTY, circuit.getTileAt(p).component());
+    }
+
+    @Test void stepLargerThanHistoryIsForgotten() {
+        Circuit circuit = sourceAndLamp().getCircuit();
+        EditHistory sut = new EditHistory(2);
+        for (int j = 0; j < 2; j++) {
+            sut.record(Position.at(1, j), TileShape.SQUARE,
+                       Component.EMPTY, 0, Component.LAMP, 0);
+        }
+        sut.endStep();
+        assertTrue(sut.canUndo());
+        sut.record(Position.at(0, 0), TileShape.SQUARE,
+                   Component.SOURCE, 0, Component.SOURCE, 2);
+        sut.record(Position.at(0, 1), TileShape.SQUARE,
+                   Component.LAMP, 0, Component.LAMP, 8);
+        sut.record(Position.at(1, 0), TileShape.SQUARE,
+                   Component.LAMP, 0, Component.EMPTY, 0);
+        assertFalse(sut.canUndo());
+        assertFalse(sut.undo(circuit));
+    }
+}
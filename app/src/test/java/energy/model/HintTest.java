@@ -0,0 +1,209 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class HintTest {
+
+    // Waits for the given action to be run by whenReady
+    private static void await(Consumer<Runnable> whenReady) {
+        CountDownLatch ready = new CountDownLatch(1);
+        whenReady.accept(ready::countDown);
+        try {
+            assertTrue(ready.await(30, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Returns the hint given by the given level once it is solved
+    private static Hint hintOf(PlayableLevel level) {
+        await(level::whenHintsReady);
+        return level.hint();
+    }
+
+    // Follows the hints given by the given level until there is none, and
+    // returns the positions of the tiles rotated
+    private static Set<Position> followHints(PlayableLevel level) {
+        Set<Position> res = new HashSet<>();
+        for (Hint h = hintOf(level); h != null; h = level.hint()) {
+            assertTrue(res.add(h.position()), h.toString());
+            for (int k = 0; k < h.rotations(); k++)
+                assertTrue(level.rotateTileAt(h.position()));
+        }
+        return res;
+    }
+
+    @Test void followingHintsSolvesTheLevel() {
+        for (int id = 1; id <= 11; id++) {
+            if (id == 7) continue; // see level7HasNoHint
+            Level level = Level.fromLevelConfig(LevelConfig.fromFile(
+                "src/test/resources/Base1/level" + id + ".nrg"));
+            level.randomRotations();
+            level.blackout();
+            level.propagateElectricity();
+            followHints(level);
+            assertTrue(level.isFinished(), "level" + id);
+        }
+    }
+
+    @Test void level7HasNoHint() {
+        Level level = Level.fromLevelConfig(LevelConfig.fromFile(
+            "src/test/resources/Base1/level7.nrg"));
+        level.propagateElectricity();
+        assertNull(hintOf(level));
+        assertNull(level.hint());
+    }
+
+    @Test void hintsFollowTheRotationsOfThePlayer() {
+        LevelConfig lc = LevelGenerator.of(12, 12, TileShape.HEXAGON)
+            .generate(1, new Random(11));
+        Level level = Level.fromLevelConfig(lc);
+        level.randomRotations();
+        level.propagateElectricity();
+        Hint first = hintOf(level);
+        assertEquals(first, level.hint());
+
+        // once rotated as hinted, the tile is not hinted anymore
+        for (int k = 0; k < first.rotations(); k++)
+            level.rotateTileAt(first.position());
+        Hint second = level.hint();
+        assertNotEquals(first.position(), second.position());
+
+        // a tile rotated away from the solution is hinted again
+        level.rotateTileAt(first.position());
+        level.randomRotations();
+        followHints(level);
+        assertTrue(level.isFinished());
+    }
+
+    @Test void rotationsDuringTheSearchAreTracked() {
+        LevelConfig lc = LevelGenerator.of(20, 20, TileShape.SQUARE)
+            .generate(1, new Random(17));
+        Level level = Level.fromLevelConfig(lc);
+        level.randomRotations();
+        level.propagateElectricity();
+        level.prepareHints();
+        for (Tile t: level.getCircuit().getTiles())
+            level.rotateTileAt(t.position());
+        followHints(level);
+        assertTrue(level.isFinished());
+    }
+
+    @Test void compactLevelGivesHints() {
+        LevelConfig lc = LevelGenerator.of(30, 30, TileShape.SQUARE)
+            .withHotspotPairs(2)
+            .generate(1, new Random(13));
+        CompactLevel level = CompactLevel.fromLevelConfig(lc, new Random(13));
+        level.randomRotations();
+        level.propagateElectricity();
+        assertFalse(level.isFinished());
+        followHints(level);
+        assertTrue(level.isFinished());
+        assertNull(level.hint());
+    }
+
+    @Test void editsDropTheSolution() {
+        Level level = Level.fromLevelConfig(LevelConfig.fromFile(
+            "src/test/resources/Base1/level2.nrg"));
+        level.randomRotations();
+        level.propagateElectricity();
+        assertNotNull(hintOf(level));
+        level.clearCircuit();
+        level.propagateElectricity();
+        assertNull(hintOf(level));
+    }
+
+    @Test void hintsDoNotWaitForTheSearch() throws InterruptedException {
+        LevelConfig lc = LevelConfig.fromFile(
+            "src/test/resources/Base1/level2.nrg");
+        HintTracker tracker = HintTracker.of(CircuitState.of(lc));
+        CountDownLatch release = new CountDownLatch(1);
+        Hints hints = new Hints();
+        hints.start(stop -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return tracker;
+        });
+        assertTrue(hints.isStarted());
+        assertNull(hints.tracker(h -> fail()));
+
+        // the tiles rotated during the search are recorded once, when the
+        // tracker is first returned
+        release.countDown();
+        await(hints::whenReady);
+        int[] updates = new int[1];
+        assertSame(tracker, hints.tracker(h -> updates[0]++));
+        assertSame(tracker, hints.tracker(h -> updates[0]++));
+        assertEquals(1, updates[0]);
+    }
+
+    @Test void resetGivesUpTheSearch() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Hints hints = new Hints();
+        hints.start(stop -> {
+            started.countDown();
+            while (!stop.getAsBoolean())
+                Thread.onSpinWait();
+            stopped.countDown();
+            return null;
+        });
+        assertTrue(started.await(30, TimeUnit.SECONDS));
+        hints.reset();
+        assertTrue(stopped.await(30, TimeUnit.SECONDS));
+        assertFalse(hints.isStarted());
+    }
+
+    @Test void onlyTheLastActionRuns() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Hints hints = new Hints();
+        hints.start(stop -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return null;
+        });
+        AtomicInteger replaced = new AtomicInteger();
+        hints.whenReady(replaced::incrementAndGet);
+        CountDownLatch ready = new CountDownLatch(1);
+        hints.whenReady(ready::countDown);
+        release.countDown();
+        assertTrue(ready.await(30, TimeUnit.SECONDS));
+        assertEquals(0, replaced.get());
+    }
+
+    @Test void failedSearchGivesNoHint() {
+        Hints hints = new Hints();
+        hints.start(stop -> {
+            throw new IllegalStateException();
+        });
+        await(hints::whenReady);
+        assertNull(hints.tracker(h -> fail()));
+        // the search is not started again
+        assertTrue(hints.isStarted());
+    }
+
+    @Test void circuitStatesAreSolvedAsSnapshots() {
+        for (int id = 1; id <= 11; id++) {
+            LevelConfig lc = LevelConfig.fromFile(
+                "src/test/resources/Base1/level" + id + ".nrg");
+            Level level = Level.fromLevelConfig(lc);
+            assertEquals(HintTracker.of(level.snapshot()).next(),
+                         HintTracker.of(CircuitState.of(lc)).next(),
+                         "level" + id);
+        }
+    }
+}
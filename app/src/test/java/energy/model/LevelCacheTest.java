@@ -0,0 +1,125 @@
+package energy.model;
+
+import static energy.model.TestLevels.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+public class LevelCacheTest {
+    private Path dir;
+
+    @BeforeEach void copyLevels() throws IOException {
+        this.dir = Files.createTempDirectory("levels");
+        for (int id = 1; id <= 3; id++) {
+            String name = "level" + id + LevelConfig.FILE_FORMAT;
+            Files.copy(Path.of("src/test/resources/Base1/" + name),
+                       this.dir.resolve(name));
+        }
+    }
+
+    @AfterEach void deleteLevels() throws IOException {
+        for (int id = 1; id <= 3; id++)
+            Files.deleteIfExists(this.dir.resolve("level" + id + ".nrg"));
+        Files.delete(this.dir);
+    }
+
+    @Test void reopenedLevelIsNotReadAgain() {
+        LevelCache sut = LevelCache.of(2);
+        Path file = this.dir.resolve("level1.nrg");
+        LevelConfig first = sut.get(file);
+        LevelConfig second = sut.get(file);
+        assertEquals(1, sut.misses());
+        assertEquals(1, sut.hits());
+        assertNotSame(first, second);
+        assertEquals(text(LevelConfig.fromFile(file.toString())),
+                     text(second));
+        assertEquals(1, second.id());
+
+        // levels returned are copies
+        first.tiles().get(0).rotate();
+        assertEquals(text(second), text(sut.get(file)));
+    }
+
+    @Test void changedFileIsReadAgain() throws IOException {
+        LevelCache sut = LevelCache.of(2);
+        Path file = this.dir.resolve("level1.nrg");
+        long before = sut.fingerprintOf(file);
+        Files.copy(this.dir.resolve("level2.nrg"), file,
+                   StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        assertNotEquals(before, sut.fingerprintOf(file));
+        assertEquals(2, sut.misses());
+    }
+
+    @Test void sameSizeRewriteIsReadAgain() throws IOException {
+        LevelCache sut = LevelCache.of(2);
+        Path file = this.dir.resolve("level1.nrg");
+        Files.write(file,
+                    text(LevelConfig.fromFile(file.toString())).getBytes());
+        FileTime modified = Files.getLastModifiedTime(file);
+        LevelConfig lc = sut.get(file);
+        Tile rotated = null;
+        for (Tile t: lc.tiles()) {
+            if (t.canRotate() && t.borderMask() != 0) {
+                rotated = t;
+                break;
+            }
+        }
+        rotated.rotate();
+        byte[] content = text(lc).getBytes();
+        assertEquals(Files.size(file), content.length);
+
+        // saved again with the same size and modification time
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, modified);
+        assertEquals(text(lc), text(sut.get(file)));
+        assertEquals(2, sut.misses());
+    }
+
+    @Test void leastRecentlyUsedLevelIsForgotten() {
+        LevelCache sut = LevelCache.of(2);
+        Path level1 = this.dir.resolve("level1.nrg");
+        sut.get(level1);
+        sut.get(this.dir.resolve("level2.nrg"));
+        sut.get(level1);
+        sut.get(this.dir.resolve("level3.nrg"));
+        assertEquals(3, sut.misses());
+        sut.get(level1);
+        assertEquals(3, sut.misses());
+        sut.get(this.dir.resolve("level2.nrg"));
+        assertEquals(4, sut.misses());
+    }
+
+    @Test void missingFileGivesNull() {
+        LevelCache sut = LevelCache.of(2);
+        assertNull(sut.get(this.dir.resolve("level4.nrg")));
+        assertThrows(IllegalArgumentException.class,
+                     () -> sut.fingerprintOf(this.dir.resolve("level4.nrg")));
+    }
+
+    @Test void packsAreOpenedOnce() throws IOException {
+        LevelCache sut = LevelCache.of(2);
+        Path pack = this.dir.resolve("levels" + LevelPack.FILE_FORMAT);
+        try {
+            LevelPack.write(pack, List.of(sut.get(
+                this.dir.resolve("level1.nrg"))).iterator());
+            LevelPack first = sut.packOf(pack);
+            assertEquals(List.of(1), first.ids());
+            assertSame(first, sut.packOf(pack));
+
+            // a pack written again is opened again
+            LevelPack.write(pack, List.of(sut.get(
+                this.dir.resolve("level2.nrg")),
+                sut.get(this.dir.resolve("level3.nrg"))).iterator());
+            assertEquals(List.of(2, 3), sut.packOf(pack).ids());
+        } finally {
+            Files.deleteIfExists(pack);
+        }
+        assertNull(sut.packOf(pack));
+    }
+}
@@ -0,0 +1,153 @@
+package energy.model;
+
+import static energy.model.TestLevels.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LevelConfigTest {
+
+    // Parses the given .nrg content as the level 1
+    private static LevelConfig parse(String content) {
+        return parse(content, 1);
+    }
+
+    // Parses the given .nrg content as the level of given id
+    private static LevelConfig parse(String content, int id) {
+        return LevelConfig.fromBytes(
+            ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)), id);
+    }
+
+    @Test void levelFilesAreReadAsWritten() throws IOException {
+        for (int id = 1; id <= BASE1_LEVELS; id++) {
+            Path path = Path.of("src/test/resources/Base1/level" + id + ".nrg");
+            assertEquals(text(base1(id)), text(parse(Files.readString(path))));
+        }
+        assertBase1RoundTrips(lc -> parse(text(lc), lc.id()));
+    }
+
+    @Test void tilesAreBuiltFromTheirLine() {
+        LevelConfig lc = parse("1 2 H\nS 3 W 1 2\n");
+        assertEquals(TileShape.HEXAGON, lc.shape());
+        Tile hotspot = lc.tiles().get(1);
+        assertEquals(Position.at(0, 1), hotspot.position());
+        assertEquals(Component.HOTSPOT, hotspot.component());
+        assertEquals(0b000110, hotspot.borderMask());
+    }
+
+    @Test void windowsLineEndingsAndTrailingSpacesAreAccepted() {
+        LevelConfig lc = parse("2 1 S \r\nL 2 \r\nS 0\r\n\r\n");
+        assertEquals(2, lc.tiles().size());
+        assertEquals(Component.SOURCE, lc.tiles().get(1).component());
+    }
+
+    @Test void errorsAreLocated() {
+        LevelFormatException e = assertThrows(LevelFormatException.class,
+            () -> parse("1 2 S\nS 1 L 4\n"));
+        assertEquals(2, e.line());
+        assertEquals(7, e.column());
+        e = assertThrows(LevelFormatException.class,
+                         () -> parse("1 2 S\nS 1 X\n"));
+        assertEquals(5, e.column());
+        assertThrows(LevelFormatException.class, () -> parse("1 2 S\nS L .\n"));
+        assertThrows(LevelFormatException.class, () -> parse("2 1 S\nS\n"));
+        assertThrows(LevelFormatException.class, () -> parse("1 1 Q\nS\n"));
+        assertThrows(LevelFormatException.class, () -> parse("1 1 S\n2 S\n"));
+    }
+
+    @Test void binaryFormatKeepsTheLevel() {
+        assertBase1RoundTrips(
+            lc -> LevelConfig.fromBinary(ByteBuffer.wrap(lc.toBinary())));
+        LevelConfig large = LevelGenerator.of(50, 50, TileShape.SQUARE)
+            .generate(1, new Random(1));
+        assertTrue(large.toBinary().length * 4 < text(large).length());
+    }
+
+    @Test void formatIsChosenByExtension() throws IOException {
+        LevelConfig lc =
+            LevelConfig.fromFile("src/test/resources/Base1/level10.nrg");
+        Path dir = Files.createTempDirectory("levels");
+        Path binary = dir.resolve("level10.nrgb");
+        Path text = dir.resolve("level10.nrg");
+        lc.saveTo(binary);
+        LevelConfig.fromFile(binary.toString()).saveTo(text);
+        assertArrayEquals(lc.toBinary(), Files.readAllBytes(binary));
+        assertEquals(text(lc), Files.readString(text));
+        Files.delete(binary);
+        Files.delete(text);
+        Files.delete(dir);
+    }
+
+    @Test void invalidBinaryContentIsRejected() {
+        byte[] binary = parse("1 1 S\nS 3\n").toBinary();
+        byte[] truncated = Arrays.copyOf(binary, binary.length - 1);
+        assertThrows(LevelFormatException.class,
+            () -> LevelConfig.fromBinary(ByteBuffer.wrap(truncated)));
+        byte[] badBorder = binary.clone();
+        badBorder[badBorder.length - 1] |= 0b110000;
+        LevelFormatException e = assertThrows(LevelFormatException.class,
+            () -> LevelConfig.fromBinary(ByteBuffer.wrap(badBorder)));
+        assertEquals(0, e.line());
+        assertEquals(binary.length, e.column());
+        assertThrows(LevelFormatException.class,
+            () -> LevelConfig.fromBinary(ByteBuffer.wrap(new byte[32])));
+    }
+
+    @Test void idIsReadFromLevelFileNames() {
+        assertEquals(12, LevelConfig.idOf("level12.nrg"));
+        assertEquals(3, LevelConfig.idOf("level3.nrgb"));
+        assertEquals(-1, LevelConfig.idOf("level.nrg"));
+        assertEquals(-1, LevelConfig.idOf("notes12.txt"));
+        assertEquals(-1, LevelConfig.idOf("level1a.nrg"));
+    }
+
+    @Test void missingFileGivesNull() {
+        assertNull(LevelConfig.fromFile("src/test/resources/no/level1.nrg"));
+    }
+
+    @Test void fingerprintIgnoresRotationsAndId() {
+        LevelConfig lc = parse("2 2 S\nS 1 L 3\n. L 0 1\n");
+        long expected = lc.fingerprint();
+        assertEquals(expected, parse("2 2 S\nS 1 L 0\n. L 2 3\n")
+                                   .fingerprint());
+        assertEquals(expected, LevelConfig.fromBytes(ByteBuffer.wrap(
+            "2 2 S\nS 1 L 3\n. L 0 1\n".getBytes(StandardCharsets.UTF_8)),
+            7).fingerprint());
+        for (int id = 1; id <= BASE1_LEVELS; id++) {
+            LevelConfig base = base1(id);
+            Level level = Level.fromLevelConfig(base);
+            long before = base.fingerprint();
+            level.randomRotations();
+            assertEquals(before, LevelConfig.fromLevel(level).fingerprint());
+        }
+    }
+
+    @Test void fingerprintDistinguishesPuzzles() {
+        long expected = parse("2 2 S\nS 1 L 3\n. L 0 1\n").fingerprint();
+        // sources can not rotate
+        assertNotEquals(expected, parse("2 2 S\nS 2 L 3\n. L 0 1\n")
+                                      .fingerprint());
+        assertNotEquals(expected, parse("2 2 S\nS 1 L 3\n. L 0\n")
+                                      .fingerprint());
+        assertNotEquals(expected, parse("2 2 S\nS 1 L 3\nW L 0 1\n")
+                                      .fingerprint());
+        assertNotEquals(expected, parse("2 2 H\nS 1 L 3\n. L 0 1\n")
+                                      .fingerprint());
+    }
+
+    @Test void samePuzzlesAreComparedTileByTile() {
+        LevelConfig lc = parse("2 2 S\nS 1 L 3\n. L 0 1\n");
+        assertTrue(lc.isSamePuzzle(parse("2 2 S\nS 1 L 0\n. L 2 3\n")));
+        assertTrue(lc.isSamePuzzle(lc));
+        assertFalse(lc.isSamePuzzle(parse("2 2 S\nS 2 L 3\n. L 0 1\n")));
+        assertFalse(lc.isSamePuzzle(parse("2 2 S\nS 1 L 3\nW L 0 1\n")));
+        assertFalse(lc.isSamePuzzle(parse("2 2 H\nS 1 L 3\n. L 0 1\n")));
+        assertFalse(lc.isSamePuzzle(parse("1 2 S\nS 1 L 3\n")));
+    }
+}
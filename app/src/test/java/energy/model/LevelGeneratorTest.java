@@ -0,0 +1,90 @@
+package energy.model;
+
+import static energy.model.TestLevels.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class LevelGeneratorTest {
+
+    // Returns the Circuit of the given LevelConfig, powered from its sources
+    private static Circuit poweredCircuit(LevelConfig lc) {
+        Circuit circuit = Level.fromLevelConfig(lc).getCircuit();
+        circuit.blackout();
+        circuit.propagateElectricity();
+        return circuit;
+    }
+
+    @Test void generatedLevelsAreSolved() {
+        Random random = new Random(42);
+        for (TileShape shape: TileShape.values()) {
+            LevelGenerator generator = LevelGenerator.of(7, 9, shape);
+            for (int k = 0; k < 20; k++) {
+                Circuit circuit = poweredCircuit(generator.generate(1, random));
+                assertEquals(1, circuit.getSources().size());
+                assertTrue(circuit.containsLamp());
+                assertTrue(circuit.allLampsArePoweredOn());
+            }
+        }
+    }
+
+    @Test void everyTileIsLinkedToTheSource() {
+        LevelConfig lc = LevelGenerator.of(10, 10, TileShape.SQUARE)
+            .generate(1, new Random(1));
+        for (Tile t: poweredCircuit(lc).getTiles())
+            assertTrue(t.isPowered(), t.position().toString());
+    }
+
+    @Test void hotspotsKeepTheLevelSolved() {
+        Random random = new Random(3);
+        for (TileShape shape: TileShape.values()) {
+            LevelGenerator generator =
+                LevelGenerator.of(8, 8, shape).withHotspotPairs(2);
+            for (int k = 0; k < 20; k++) {
+                Circuit circuit = poweredCircuit(generator.generate(1, random));
+                assertFalse(circuit.getHotspots().isEmpty());
+                assertTrue(circuit.allLampsArePoweredOn());
+            }
+        }
+    }
+
+    @Test void hexagonalLevelsLeaveTheLastLineOddColumnsEmpty() {
+        LevelConfig lc = LevelGenerator.of(5, 6, TileShape.HEXAGON)
+            .generate(1, new Random(7));
+        for (Tile t: lc.tiles()) {
+            if (t.getLine() == 4 && t.getColumn() % 2 == 1)
+                assertTrue(t.isEmpty());
+        }
+    }
+
+    @Test void sameSeedGivesSameLevels() {
+        LevelGenerator generator = LevelGenerator.of(6, 6, TileShape.HEXAGON);
+        assertEquals(text(generator.generate(1, new Random(5))),
+                     text(generator.generate(1, new Random(5))));
+    }
+
+    @Test void batchFilesHoldTheLevelOfTheirId() throws IOException {
+        Path dir = Files.createTempDirectory("levels");
+        LevelGenerator generator = LevelGenerator.of(4, 5, TileShape.SQUARE);
+        generator.generateTo(dir, 3, 4, 11);
+        for (int id = 3; id < 7; id++) {
+            Path file = dir.resolve("level" + id + ".nrg");
+            LevelConfig lc =
+                generator.generate(id, LevelGenerator.randomFor(11, id));
+            assertEquals(text(lc),
+                         Files.readString(file));
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test void invalidDimensionsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> LevelGenerator.of(0, 3, TileShape.SQUARE));
+        assertThrows(IllegalArgumentException.class,
+                     () -> LevelGenerator.of(1, 3, TileShape.HEXAGON));
+    }
+}
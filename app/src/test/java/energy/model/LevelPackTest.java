@@ -0,0 +1,69 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LevelPackTest {
+
+    private Path pack;
+
+    @BeforeEach void createPackFile() throws IOException {
+        this.pack = Files.createTempFile("levels", LevelPack.FILE_FORMAT);
+        this.pack.toFile().deleteOnExit();
+    }
+
+    // Returns the levels of the test resources with the given ids
+    private static List<LevelConfig> levels(int... ids) {
+        List<LevelConfig> res = new ArrayList<>();
+        for (int id: ids)
+            res.add(TestLevels.base1(id));
+        return res;
+    }
+
+    @Test void levelsAreReadBackById() throws IOException {
+        List<LevelConfig> levels = levels(3, 1, 10, 7);
+        LevelPack.write(this.pack, levels.iterator());
+        LevelPack sut = LevelPack.open(this.pack);
+        assertEquals(List.of(1, 3, 7, 10), sut.ids());
+        for (LevelConfig lc: levels) {
+            assertTrue(sut.contains(lc.id()));
+            assertArrayEquals(lc.toBinary(), sut.get(lc.id()).toBinary());
+        }
+    }
+
+    @Test void missingIdsGiveNull() throws IOException {
+        LevelPack.write(this.pack, levels(2, 5).iterator());
+        LevelPack sut = LevelPack.open(this.pack);
+        assertFalse(sut.contains(3));
+        assertNull(sut.get(3));
+        assertNull(sut.get(0));
+        assertNull(sut.get(6));
+    }
+
+    @Test void emptyPackHasNoLevel() throws IOException {
+        LevelPack.write(this.pack, new ArrayList<LevelConfig>().iterator());
+        assertEquals(List.of(), LevelPack.open(this.pack).ids());
+    }
+
+    @Test void duplicateIdsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> LevelPack.write(this.pack, levels(4, 4).iterator()));
+    }
+
+    @Test void otherFilesAreRejected() throws IOException {
+        Files.write(this.pack, new byte[40]);
+        assertThrows(LevelFormatException.class,
+                     () -> LevelPack.open(this.pack));
+        LevelPack.write(this.pack, levels(1).iterator());
+        byte[] content = Files.readAllBytes(this.pack);
+        Files.write(this.pack, Arrays.copyOf(content, content.length - 1));
+        assertThrows(LevelFormatException.class,
+                     () -> LevelPack.open(this.pack));
+    }
+}
@@ -0,0 +1,70 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+public class OffHeapCircuitTest {
+
+    @Test void positionsWithoutTileAreRejected() {
+        LevelConfig lc = LevelGenerator.of(4, 5, TileShape.HEXAGON)
+            .generate(1, new Random(2));
+        OffHeapCircuit sut = OffHeapCircuit.of(lc);
+        assertEquals(new Dimension(5, 4), sut.dimension());
+        assertTrue(sut.hasTileAt(Position.at(3, 0)));
+        assertFalse(sut.hasTileAt(Position.at(3, 1)));
+        assertFalse(sut.hasTileAt(Position.at(4, 0)));
+        assertFalse(sut.rotateTileAt(Position.at(3, 1)));
+        assertThrows(NoSuchElementException.class,
+                     () -> sut.borderMaskAt(Position.at(0, 5)));
+    }
+
+    @Test void rotationsAreWrittenToTheMappedFile() throws IOException {
+        LevelConfig lc = LevelGenerator.of(8, 8, TileShape.SQUARE)
+            .generate(2, new Random(9));
+        Path file =
+            Files.createTempFile("level", LevelConfig.BINARY_FILE_FORMAT);
+        try {
+            lc.saveTo(file);
+            OffHeapCircuit sut = OffHeapCircuit.open(file);
+            sut.propagateElectricity();
+            assertTrue(sut.allLampsArePoweredOn());
+            Position p = null;
+            for (Tile t: lc.tiles()) {
+                if (t.canRotate() && t.borderMask() != 0
+                    && t.borderMask() != TileShape.SQUARE.fullMask()) {
+                    p = t.position();
+                    break;
+                }
+            }
+            int mask = sut.borderMaskAt(p);
+            assertTrue(sut.rotateTileAt(p));
+            sut.force();
+
+            OffHeapCircuit reopened = OffHeapCircuit.open(file);
+            assertEquals(TileShape.SQUARE.rotate(mask),
+                         reopened.borderMaskAt(p));
+            LevelConfig read = LevelConfig.fromFile(file.toString());
+            assertEquals(2, read.id());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test void invalidFileIsRejected() throws IOException {
+        Path file =
+            Files.createTempFile("level", LevelConfig.BINARY_FILE_FORMAT);
+        try {
+            Files.write(file, new byte[] {'N', 'R', 'G'});
+            assertThrows(LevelFormatException.class,
+                         () -> OffHeapCircuit.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package energy.model;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
+import java.util.List;
 
 public class PositionTest {
 
@@ -67,4 +68,39 @@ public class PositionTest {
         Position o2 = Position.origin();
         assertEquals(o1, o2);
     }
+
+    @Test void positionsAtSameCoordinatesAreShared() {
+        assertSame(Position.at(12, 34), Position.at(12, 34));
+        assertSame(Position.origin(), Position.at(0, 0));
+    }
+
+    @Test void positionsFarFromOriginAreStillEqual() {
+        assertEquals(Position.at(5000, 3), Position.at(5000, 3));
+    }
+
+    @Test void neighborOnTopOfFirstLineIsNull() {
+        assertNull(Position.at(0, 3).neighbor(0, TileShape.SQUARE));
+    }
+
+    @Test void neighborTouchesThisPositionOnTheOppositeSide() {
+        for (TileShape shape: TileShape.values()) {
+            for (int j = 1; j < 3; j++) {
+                Position pos = Position.at(2, j);
+                for (int side = 0; side < shape.sides(); side++) {
+                    Position neighbor = pos.neighbor(side, shape);
+                    assertEquals(side, pos.touchingSide(neighbor, shape));
+                    assertEquals(shape.opposite(side),
+                                 neighbor.touchingSide(pos, shape));
+                }
+            }
+        }
+    }
+
+    @Test void hexagonOnOddColumnHasLowerRightNeighbor() {
+        Position pos = Position.at(1, 1);
+        assertEquals(Position.at(2, 2), pos.neighbor(2, TileShape.HEXAGON));
+        assertEquals(List.of(Position.at(0, 1), Position.at(1, 0)),
+                     Position.neighborPositions(Position.origin(),
+                                                TileShape.HEXAGON));
+    }
 }
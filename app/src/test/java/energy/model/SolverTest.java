@@ -0,0 +1,196 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SolverTest {
+
+    // Applies the rotations found by the Solver to the given Circuit
+    private static void apply(Circuit circuit, Map<Position, Integer> sol) {
+        for (Map.Entry<Position, Integer> entry: sol.entrySet()) {
+            for (int k = 0; k < entry.getValue(); k++)
+                circuit.rotateTileAt(entry.getKey());
+        }
+        circuit.blackout();
+        circuit.propagateElectricity();
+    }
+
+    // Connects one more side of count empty tiles of the given level, away
+    // from each other, so that every solution leaves cable ends unconnected
+    private static void addDanglingEnds(LevelConfig lc,
+                                        int count,
+                                        Random random) {
+        List<Tile> changed = new ArrayList<>();
+        while (changed.size() < count) {
+            Tile t = lc.tiles().get(random.nextInt(lc.tiles().size()));
+            int sides = t.shape().sides();
+            if (t.component() != Component.EMPTY || t.connectedSides() == 0
+                || t.connectedSides() >= sides - 1)
+                continue;
+            boolean near = false;
+            for (Tile other: changed) {
+                near |= Math.abs(other.getLine() - t.getLine()) < 3
+                    && Math.abs(other.getColumn() - t.getColumn()) < 3;
+            }
+            if (near)
+                continue;
+            int s = random.nextInt(sides);
+            while (t.side(s))
+                s = (s + 1) % sides;
+            t.connect(s);
+            changed.add(t);
+        }
+    }
+
+    // Rotates every tile of the given Circuit a random number of times
+    private static void scramble(Circuit circuit, Random random) {
+        for (Tile t: circuit.getTiles()) {
+            if (!t.canRotate())
+                continue;
+            for (int k = random.nextInt(t.length()); k > 0; k--)
+                circuit.rotateTileAt(t.position());
+        }
+    }
+
+    @Test void scrambledLevelsAreSolved() {
+        for (int id = 1; id <= 11; id++) {
+            if (id == 7) continue; // see level7WithTwoLampsInARowIsUnsolvable
+            Level level = Level.fromLevelConfig(LevelConfig.fromFile(
+                "src/test/resources/Base1/level" + id + ".nrg"));
+            Circuit circuit = level.getCircuit();
+            circuit.randomRotations();
+            Map<Position, Integer> sol = Solver.of(circuit).solve();
+            assertNotNull(sol, "level" + id);
+            apply(circuit, sol);
+            assertTrue(circuit.allLampsArePoweredOn(), "level" + id);
+        }
+    }
+
+    @Test void level7WithTwoLampsInARowIsUnsolvable() {
+        LevelConfig lc =
+            LevelConfig.fromFile("src/test/resources/Base1/level7.nrg");
+        assertNull(Solver.of(lc).solve());
+    }
+
+    @Test void solverDoesNotModifyTheCircuit() {
+        Circuit circuit = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        lamp.connect(0);
+        circuit.addTile(source);
+        circuit.addTile(lamp);
+        Map<Position, Integer> sol = Solver.of(circuit).solve();
+        assertEquals(Map.of(Position.at(0, 1), 3), sol);
+        assertEquals(0b0001, lamp.borderMask());
+    }
+
+    @Test void hotspotsPowerLampsWithoutCables() {
+        Circuit circuit = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(2);
+        Tile hotspot1 = Tile.square(Position.at(1, 0), Component.HOTSPOT);
+        hotspot1.connect(1);
+        Tile hotspot2 = Tile.square(Position.at(0, 2), Component.HOTSPOT);
+        hotspot2.connect(0);
+        Tile lamp = Tile.square(Position.at(1, 2), Component.LAMP);
+        lamp.connect(3);
+        circuit.addTile(source);
+        circuit.addTile(hotspot1);
+        circuit.addTile(hotspot2);
+        circuit.addTile(lamp);
+        Map<Position, Integer> sol = Solver.of(circuit).solve();
+        assertNotNull(sol);
+        apply(circuit, sol);
+        assertTrue(circuit.allLampsArePoweredOn());
+    }
+
+    @Test void sourceFacingTheBorderHasNoSolution() {
+        Circuit circuit = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(0);
+        Tile lamp = Tile.square(Position.at(0, 1), Component.LAMP);
+        lamp.connect(3);
+        circuit.addTile(source);
+        circuit.addTile(lamp);
+        assertNull(Solver.of(circuit).solve());
+    }
+
+    @Test void cableEndsMayBeLeftUnconnected() {
+        // the wire has three cables on a line of three tiles: one of them
+        // faces the border whatever the rotation
+        Circuit circuit = Circuit.empty();
+        Tile source = Tile.square(Position.at(0, 0), Component.SOURCE);
+        source.connect(1);
+        Tile wire = Tile.square(Position.at(0, 1), Component.EMPTY);
+        wire.connect(1);
+        wire.connect(2);
+        wire.connect(3);
+        Tile lamp = Tile.square(Position.at(0, 2), Component.LAMP);
+        lamp.connect(3);
+        circuit.addTile(source);
+        circuit.addTile(wire);
+        circuit.addTile(lamp);
+        circuit.propagateElectricity();
+        assertTrue(circuit.allLampsArePoweredOn());
+
+        circuit.rotateTileAt(Position.at(0, 1));
+        circuit.rotateTileAt(Position.at(0, 2));
+        Solver sut = Solver.of(circuit);
+        Map<Position, Integer> sol = sut.solve();
+        assertNotNull(sol);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        assertEquals(sol, sut.solveInParallel(pool, true));
+        assertNotNull(sut.solveInParallel(pool, false));
+        pool.shutdown();
+        apply(circuit, sol);
+        assertTrue(circuit.allLampsArePoweredOn());
+    }
+
+    @Test void generatedLevelsWithDanglingEndsAreSolved() {
+        for (TileShape shape: TileShape.values()) {
+            Random random = new Random(2023);
+            LevelConfig lc = LevelGenerator.of(24, 24, shape)
+                                           .withHotspotPairs(2)
+                                           .generate(1, random);
+            addDanglingEnds(lc, 3, random);
+            Circuit circuit = Level.fromLevelConfig(lc).getCircuit();
+            scramble(circuit, random);
+            Map<Position, Integer> sol = Solver.of(circuit).solve();
+            assertNotNull(sol, shape.name());
+            apply(circuit, sol);
+            assertTrue(circuit.allLampsArePoweredOn(), shape.name());
+        }
+    }
+
+    @Test void deterministicParallelSolutionIsTheSequentialOne() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int id = 1; id <= 11; id++) {
+            Level level = Level.fromLevelConfig(LevelConfig.fromFile(
+                "src/test/resources/Base1/level" + id + ".nrg"));
+            level.randomRotations();
+            Solver sut = Solver.of(level.getCircuit());
+            assertEquals(sut.solve(), sut.solveInParallel(pool, true));
+        }
+        pool.shutdown();
+    }
+
+    @Test void parallelSolutionPowersAllLamps() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        Level level = Level.fromLevelConfig(
+            LevelConfig.fromFile("src/test/resources/Base1/level8.nrg"));
+        Circuit circuit = level.getCircuit();
+        circuit.randomRotations();
+        Map<Position, Integer> sol =
+            Solver.of(circuit).solveInParallel(pool, false);
+        assertNotNull(sol);
+        apply(circuit, sol);
+        assertTrue(circuit.allLampsArePoweredOn());
+        pool.shutdown();
+    }
+}
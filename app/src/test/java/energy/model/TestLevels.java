@@ -0,0 +1,59 @@
+package energy.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+// Levels and assertions shared by the tests of the model
+final class TestLevels {
+
+    // Number of levels of the Base1 test resources
+    static final int BASE1_LEVELS = 11;
+
+    private TestLevels() {}
+
+    // Returns the level of given id of the Base1 test resources
+    static LevelConfig base1(int id) {
+        return LevelConfig.fromFile(
+            "src/test/resources/Base1/level" + id + ".nrg");
+    }
+
+    // Returns the text of the given LevelConfig in the .nrg format
+    static String text(LevelConfig lc) {
+        StringWriter writer = new StringWriter();
+        try {
+            lc.writeTo(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    // Asserts that every level of Base1 has the same text once given to the
+    // given round trip, which also keeps its id
+    static void assertBase1RoundTrips(
+            Function<LevelConfig, LevelConfig> roundTrip) {
+        for (int id = 1; id <= BASE1_LEVELS; id++) {
+            LevelConfig lc = base1(id);
+            LevelConfig copy = roundTrip.apply(lc);
+            assertEquals(id, copy.id());
+            assertEquals(text(lc), text(copy), "level" + id);
+        }
+    }
+
+    // Asserts that every tile of the given Circuit is in the same state in
+    // the given CellBoard
+    static void assertSameState(Circuit expected, CellBoard actual) {
+        assertEquals(expected.getTiles().size(), actual.tileCount());
+        for (Tile t: expected.getTiles()) {
+            Position p = t.position();
+            assertEquals(t.component(), actual.componentAt(p));
+            assertEquals(t.borderMask(), actual.borderMaskAt(p));
+            assertEquals(t.isPowered(), actual.isPoweredAt(p), p.toString());
+        }
+        assertEquals(expected.allLampsArePoweredOn(),
+                     actual.allLampsArePoweredOn());
+    }
+}
@@ -2,6 +2,7 @@ package energy.model;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.*;
+import java.util.List;
 
 public class TileTest {
 
@@ -199,4 +200,37 @@ public class TileTest {
         t2.connect(0, 4);
         assertTrue(t1.isLinkedTo(t2));
     }
+
+    @Test void rotatingSquaredTileMovesEachSideToTheNextOne() {
+        Tile sut = Tile.square(Position.origin(), Component.LAMP);
+        sut.connect(0, 3);
+        sut.rotate();
+        assertTrue(sut.side(0));
+        assertTrue(sut.side(1));
+        assertFalse(sut.side(3));
+        assertEquals(0b0011, sut.borderMask());
+    }
+
+    @Test void rotatingHexagonalTileSixTimesGivesBackSameBorder() {
+        Tile sut = Tile.hexagon(Position.origin(), Component.EMPTY);
+        sut.connect(1, 2, 5);
+        int initial = sut.borderMask();
+        for (int i = 0; i < 6; i++) {
+            if (i > 0) assertNotEquals(initial, sut.borderMask());
+            sut.rotate();
+        }
+        assertEquals(initial, sut.borderMask());
+    }
+
+    @Test void connectedSidesCountsConnectedSides() {
+        Tile sut = Tile.hexagon(Position.origin(), Component.EMPTY);
+        sut.connect(0, 2, 3, 5);
+        assertEquals(4, sut.connectedSides());
+        assertEquals(List.of(1, 4), sut.getDisconnectedSidesAsIndices());
+    }
+
+    @Test void connectingSideOutsideShapeThrows() {
+        Tile sut = Tile.square(Position.origin(), Component.EMPTY);
+        assertThrows(IndexOutOfBoundsException.class, () -> sut.connect(4));
+    }
 }
@@ -0,0 +1,39 @@
+package energy.view;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.*;
+import java.awt.event.ActionEvent;
+import javax.swing.Action;
+
+import energy.controller.EditorController;
+import energy.model.Level;
+import energy.model.LevelConfig;
+
+public class LevelViewTest {
+
+    // A ScreenSwitch doing nothing
+    private static final ScreenSwitch NO_SWITCH = new ScreenSwitch() {
+        @Override public void next(int id, boolean flag) {}
+        @Override public void back() {}
+    };
+
+    @BeforeEach void headless() {
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    @Test void editorIsBuiltBeforeItsController() {
+        LevelView sut = new LevelView(1, NO_SWITCH, false);
+        Level level = Level.fromLevelConfig(
+            LevelConfig.fromFile("src/test/resources/Base1/level1.nrg"));
+        level.addObserver(sut);
+        EditorController ec = new EditorController(level);
+        sut.setEditorController(ec);
+
+        int lines = level.getCircuit().dimension().height;
+        ec.addLine();
+        assertEquals(lines + 1, level.getCircuit().dimension().height);
+        Action undo = sut.getActionMap().get("undo");
+        undo.actionPerformed(new ActionEvent(sut, 0, "undo"));
+        assertEquals(lines, level.getCircuit().dimension().height);
+    }
+}